@@ -0,0 +1,81 @@
+package com.wdwlx.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.redisson.api.RBlockingQueue;
+import org.redisson.api.RedissonClient;
+import redis.embedded.RedisServer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 监听器拉取到期消息：逐条poll与批量poll(limit)排空10000条就绪消息的耗时
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class BatchDrainBenchmark {
+
+    private static final int DUE_MESSAGES = 10_000;
+
+    @Param({"1", "100"})
+    public int batchSize;
+
+    private RedisServer redisServer;
+
+    private RedissonClient redissonClient;
+
+    private RBlockingQueue<String> blockingQueue;
+
+    @Setup(Level.Trial)
+    public void startRedis() {
+        redisServer = BenchmarkEnvironment.startRedis();
+        redissonClient = BenchmarkEnvironment.redissonClient();
+        blockingQueue = redissonClient.getBlockingQueue("benchmark_drain_queue");
+    }
+
+    @Setup(Level.Iteration)
+    public void fillQueue() {
+        blockingQueue.clear();
+        List<String> messageIds = new ArrayList<>(DUE_MESSAGES);
+        for (int i = 0; i < DUE_MESSAGES; i++) {
+            messageIds.add(Long.toString(1_000_000_000_000L + i));
+        }
+        blockingQueue.addAll(messageIds);
+    }
+
+    @Benchmark
+    public int drain() throws InterruptedException {
+        int drained = 0;
+        while (drained < DUE_MESSAGES) {
+            if (batchSize > 1) {
+                drained += blockingQueue.poll(batchSize).size();
+            } else if (blockingQueue.poll(10, TimeUnit.MILLISECONDS) != null) {
+                drained++;
+            }
+        }
+        return drained;
+    }
+
+    @TearDown(Level.Trial)
+    public void stopRedis() {
+        redissonClient.shutdown();
+        BenchmarkEnvironment.stopRedis(redisServer);
+    }
+}
@@ -0,0 +1,83 @@
+package com.wdwlx.benchmark;
+
+import com.wdwlx.Application;
+import org.redisson.Redisson;
+import org.redisson.api.RedissonClient;
+import org.redisson.config.Config;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import redis.embedded.RedisServer;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 基准测试运行环境：嵌入式 Redis 替代 Redis 服务，H2（MySQL 兼容模式）替代 MySQL
+ */
+public final class BenchmarkEnvironment {
+
+    /**
+     * 嵌入式 Redis 端口，可通过 -Dbenchmark.redis.port 指定
+     */
+    public static final int REDIS_PORT = Integer.getInteger("benchmark.redis.port", 6379);
+
+    private BenchmarkEnvironment() {
+    }
+
+    public static RedisServer startRedis() {
+        try {
+            RedisServer redisServer = RedisServer.newRedisServer()
+                    .port(REDIS_PORT)
+                    .setting("save \"\"")
+                    .setting("appendonly no")
+                    .build();
+            redisServer.start();
+            return redisServer;
+        } catch (IOException e) {
+            throw new IllegalStateException("启动嵌入式Redis失败", e);
+        }
+    }
+
+    public static void stopRedis(RedisServer redisServer) {
+        if (redisServer == null) {
+            return;
+        }
+        try {
+            redisServer.stop();
+        } catch (IOException e) {
+            throw new IllegalStateException("停止嵌入式Redis失败", e);
+        }
+    }
+
+    public static RedissonClient redissonClient() {
+        Config config = new Config();
+        config.useSingleServer().setAddress("redis://127.0.0.1:" + REDIS_PORT);
+        return Redisson.create(config);
+    }
+
+    /**
+     * 启动完整的应用上下文（不启动Web服务）
+     *
+     * @param properties 额外的配置项，覆盖默认值
+     */
+    public static ConfigurableApplicationContext startApplication(Map<String, Object> properties) {
+        Map<String, Object> defaults = new LinkedHashMap<>();
+        defaults.put("spring.main.web-application-type", "none");
+        defaults.put("spring.datasource.url", "jdbc:h2:mem:delayed_queue;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1");
+        defaults.put("spring.datasource.driverClassName", "org.h2.Driver");
+        defaults.put("spring.datasource.username", "sa");
+        defaults.put("spring.datasource.password", "");
+        defaults.put("spring.sql.init.mode", "always");
+        defaults.put("spring.sql.init.schema-locations", "classpath:jmh-schema.sql");
+        defaults.put("spring.data.redis.host", "127.0.0.1");
+        defaults.put("spring.data.redis.port", REDIS_PORT);
+        defaults.put("logging.level.com.wdwlx", "WARN");
+        defaults.putAll(properties);
+        // 以命令行参数传入，优先级高于 application.yml
+        String[] args = defaults.entrySet().stream()
+                .map(e -> "--" + e.getKey() + "=" + e.getValue())
+                .toArray(String[]::new);
+        return new SpringApplicationBuilder(Application.class).run(args);
+    }
+}
@@ -0,0 +1,51 @@
+package com.wdwlx.benchmark;
+
+import cn.hutool.core.util.ReflectUtil;
+import com.wdwlx.util.IdManager;
+import com.wdwlx.util.SnowflakeIdWorker;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * IdManager.getId 的字符串转换开销（与直接生成long对比）
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class IdManagerBenchmark {
+
+    private SnowflakeIdWorker worker;
+
+    private IdManager idManager;
+
+    @Setup
+    public void setup() {
+        worker = new SnowflakeIdWorker(1);
+        // IdManager 的 worker 由 Redis 分配 workerId 后创建，这里直接注入，避免依赖 Redis
+        idManager = new IdManager();
+        ReflectUtil.setFieldValue(idManager, "snowflakeIdWorker", worker);
+    }
+
+    @Benchmark
+    public long nextId() {
+        return worker.nextId();
+    }
+
+    @Benchmark
+    public String getId() {
+        return idManager.getId();
+    }
+}
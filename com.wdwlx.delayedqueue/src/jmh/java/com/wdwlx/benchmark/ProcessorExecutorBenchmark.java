@@ -0,0 +1,107 @@
+package com.wdwlx.benchmark;
+
+import com.wdwlx.config.DelayedQueueThreadPoolConfig;
+import com.wdwlx.config.QueueProcessorExecutor;
+import com.wdwlx.config.ThreadPoolQueueProcessorExecutor;
+import com.wdwlx.config.VirtualThreadQueueProcessorExecutor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 平台线程池与虚拟线程两种处理模式下，处理1000条耗时100ms（模拟I/O等待）的消息所需时间
+ * <p>
+ * 按监听器的方式提交：只在执行器有剩余容量时提交。virtual 模式需要 JDK 21
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(1)
+public class ProcessorExecutorBenchmark {
+
+    private static final int MESSAGES = 1000;
+
+    private static final long HANDLER_MILLIS = 100;
+
+    @Param({"platform", "virtual"})
+    public String mode;
+
+    /**
+     * 平台线程模式下的线程数（与默认配置一致），虚拟线程模式下的信号量许可数
+     */
+    @Param({"20"})
+    public int platformConcurrency;
+
+    @Param({"1000"})
+    public int virtualConcurrency;
+
+    private ThreadPoolTaskExecutor threadPool;
+
+    private ExecutorService virtualThreadExecutor;
+
+    private QueueProcessorExecutor executor;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        if ("virtual".equals(mode)) {
+            virtualThreadExecutor = new DelayedQueueThreadPoolConfig().delayedQueueProcessorExecutor();
+            executor = new VirtualThreadQueueProcessorExecutor(virtualThreadExecutor, virtualConcurrency, 60);
+        } else {
+            threadPool = new ThreadPoolTaskExecutor();
+            threadPool.setCorePoolSize(platformConcurrency);
+            threadPool.setMaxPoolSize(platformConcurrency);
+            threadPool.setQueueCapacity(MESSAGES);
+            threadPool.initialize();
+            executor = new ThreadPoolQueueProcessorExecutor(threadPool);
+        }
+    }
+
+    @Benchmark
+    public void process1000SleepingHandlers() throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(MESSAGES);
+        int submitted = 0;
+        while (submitted < MESSAGES) {
+            if (executor.availableSlots() <= 0) {
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+                continue;
+            }
+            executor.execute(() -> {
+                try {
+                    Thread.sleep(HANDLER_MILLIS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    done.countDown();
+                }
+            });
+            submitted++;
+        }
+        done.await();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        executor.shutdown();
+        if (virtualThreadExecutor != null) {
+            virtualThreadExecutor.shutdown();
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package com.wdwlx.benchmark;
+
+import com.wdwlx.util.CompactIdCodec;
+import com.wdwlx.util.RedisKeys;
+import com.wdwlx.util.SnowflakeIdWorker;
+import org.redisson.api.RFuture;
+import org.redisson.api.RQueue;
+import org.redisson.api.RScoredSortedSet;
+import org.redisson.api.RedissonClient;
+import org.redisson.client.codec.Codec;
+import redis.embedded.RedisServer;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 延时队列条目编码的内存报告：默认编解码器（字符串ID）与紧凑8字节ID分别写入相同数量的雪花ID，
+ * 对比调度集合与就绪队列的 MEMORY USAGE，并校验新旧条目混存时均可读取
+ * <p>
+ * mvn -Pjmh compile exec:exec -Djmh.main=com.wdwlx.benchmark.QueueMemoryReport -Djmh.args=100000
+ */
+public final class QueueMemoryReport {
+
+    private QueueMemoryReport() {
+    }
+
+    public static void main(String[] args) {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        RedisServer redisServer = BenchmarkEnvironment.startRedis();
+        RedissonClient redissonClient = BenchmarkEnvironment.redissonClient();
+        try {
+            SnowflakeIdWorker idWorker = new SnowflakeIdWorker(1);
+            List<String> messageIds = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                messageIds.add(Long.toString(idWorker.nextId()));
+            }
+            Codec defaultCodec = redissonClient.getConfig().getCodec();
+            System.out.printf("%d 条消息ID，默认编解码器: %s%n", count, defaultCodec.getClass().getSimpleName());
+            System.out.printf("%-10s %16s %16s %12s%n", "编码", "延时队列(字节)", "就绪队列(字节)", "每条(字节)");
+            long before = report(redissonClient, "memory_report_default", defaultCodec, messageIds);
+            long after = report(redissonClient, "memory_report_compact", new CompactIdCodec(defaultCodec, true), messageIds);
+            System.out.printf("紧凑ID节省: %.1f%%%n", 100.0 * (before - after) / before);
+            verifyMixedEntries(redissonClient, defaultCodec, messageIds.subList(0, Math.min(count, 1000)));
+        } finally {
+            redissonClient.shutdown();
+            BenchmarkEnvironment.stopRedis(redisServer);
+        }
+    }
+
+    /**
+     * 写入调度集合和就绪队列后统计内存，返回两者合计的每条字节数
+     */
+    private static long report(RedissonClient redissonClient, String queueName, Codec codec, List<String> messageIds) {
+        RScoredSortedSet<String> schedule = redissonClient.getScoredSortedSet(RedisKeys.scheduleSet(queueName), codec);
+        long dueMillis = System.currentTimeMillis() + 3_600_000;
+        // 分段异步写入，避免一次占满连接池
+        for (int from = 0; from < messageIds.size(); from += 1000) {
+            List<RFuture<Boolean>> futures = new ArrayList<>(1000);
+            for (String messageId : messageIds.subList(from, Math.min(from + 1000, messageIds.size()))) {
+                futures.add(schedule.addAsync(dueMillis++, messageId));
+            }
+            futures.forEach(RFuture::syncUninterruptibly);
+        }
+        RQueue<String> readyQueue = redissonClient.getQueue(queueName, codec);
+        readyQueue.addAll(messageIds);
+
+        long delayedBytes = schedule.sizeInMemory();
+        long readyBytes = readyQueue.sizeInMemory();
+        long perEntry = (delayedBytes + readyBytes) / messageIds.size();
+        System.out.printf("%-10s %16d %16d %12d%n", codec instanceof CompactIdCodec ? "compact" : "default", delayedBytes, readyBytes, perEntry);
+
+        schedule.delete();
+        readyQueue.delete();
+        return perEntry;
+    }
+
+    /**
+     * 迁移校验：同一队列先以默认编码写入，再以紧凑编码写入，紧凑编解码器应能按原值读出全部条目
+     */
+    private static void verifyMixedEntries(RedissonClient redissonClient, Codec defaultCodec, List<String> messageIds) {
+        String queueName = "memory_report_mixed";
+        int half = messageIds.size() / 2;
+        redissonClient.<String>getQueue(queueName, defaultCodec).addAll(messageIds.subList(0, half));
+        RQueue<String> compactQueue = redissonClient.getQueue(queueName, new CompactIdCodec(defaultCodec, true));
+        compactQueue.addAll(messageIds.subList(half, messageIds.size()));
+
+        Set<String> read = new HashSet<>(compactQueue.poll(messageIds.size()));
+        compactQueue.delete();
+        boolean ok = read.equals(new HashSet<>(messageIds));
+        System.out.printf("新旧条目混存读取: %s (%d/%d)%n", ok ? "通过" : "失败", read.size(), messageIds.size());
+        if (!ok) {
+            throw new IllegalStateException("新旧条目混存读取失败");
+        }
+    }
+}
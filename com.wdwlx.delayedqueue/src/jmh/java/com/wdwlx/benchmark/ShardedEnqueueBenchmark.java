@@ -0,0 +1,77 @@
+package com.wdwlx.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.redisson.api.RDelayedQueue;
+import org.redisson.api.RedissonClient;
+import redis.embedded.RedisServer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 多线程写入延时队列：单个延迟队列与按消息ID哈希到多个分片的吞吐
+ * <p>
+ * 所有分片位于同一个嵌入式Redis实例，测得的是客户端侧的并行度；
+ * Redis Cluster 中各分片落在不同槽位/节点，服务端处理能力随分片数增加
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Threads(8)
+@Fork(1)
+public class ShardedEnqueueBenchmark {
+
+    @Param({"1", "4"})
+    public int shardCount;
+
+    private final AtomicLong sequence = new AtomicLong(1_000_000_000_000L);
+
+    private RedisServer redisServer;
+
+    private RedissonClient redissonClient;
+
+    private List<RDelayedQueue<String>> shards;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        redisServer = BenchmarkEnvironment.startRedis();
+        redissonClient = BenchmarkEnvironment.redissonClient();
+        shards = new ArrayList<>(shardCount);
+        for (int i = 0; i < shardCount; i++) {
+            String name = shardCount == 1 ? "benchmark_sharded_queue" : "{benchmark_sharded_queue:" + i + "}";
+            shards.add(redissonClient.getDelayedQueue(redissonClient.getQueue(name)));
+        }
+    }
+
+    @Benchmark
+    public void offer() {
+        String messageId = Long.toString(sequence.incrementAndGet());
+        shards.get(Math.floorMod(messageId.hashCode(), shards.size()))
+                .offer(messageId, 1 + ThreadLocalRandom.current().nextInt(3_600_000), TimeUnit.MILLISECONDS);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        shards.forEach(RDelayedQueue::destroy);
+        redissonClient.shutdown();
+        BenchmarkEnvironment.stopRedis(redisServer);
+    }
+}
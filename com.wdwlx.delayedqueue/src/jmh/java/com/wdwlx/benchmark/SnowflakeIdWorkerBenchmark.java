@@ -0,0 +1,74 @@
+package com.wdwlx.benchmark;
+
+import com.wdwlx.util.SnowflakeIdWorker;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * SnowflakeIdWorker.nextId 单线程与多线程争用下的吞吐、单次耗时分布，以及突发生成的耗时
+ * <p>
+ * 单个 workerId 每毫秒最多4096个序列号，持续吞吐的上限即为 4096 ops/ms；
+ * 突发场景（16个线程各生成 {@link #BURST} 个ID）反映的是低于持续上限时能否不阻塞地发号
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SnowflakeIdWorkerBenchmark {
+
+    private static final int BURST = 10_000;
+
+    private final SnowflakeIdWorker worker = new SnowflakeIdWorker(1);
+
+    @Benchmark
+    @Threads(1)
+    public long nextIdSingleThread() {
+        return worker.nextId();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public long nextIdContended4() {
+        return worker.nextId();
+    }
+
+    @Benchmark
+    @Threads(16)
+    public long nextIdContended16() {
+        return worker.nextId();
+    }
+
+    @Benchmark
+    @Threads(16)
+    @BenchmarkMode(Mode.SampleTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public long nextIdLatency16() {
+        return worker.nextId();
+    }
+
+    @Benchmark
+    @Threads(16)
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    @Warmup(iterations = 20)
+    @Measurement(iterations = 50)
+    public long burst16() {
+        long last = 0;
+        for (int i = 0; i < BURST; i++) {
+            last = worker.nextId();
+        }
+        return last;
+    }
+}
@@ -0,0 +1,81 @@
+package com.wdwlx.service;
+
+import com.wdwlx.benchmark.BenchmarkEnvironment;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import redis.embedded.RedisServer;
+
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * addDelayedMessage 去重路径：重复bizId被拒绝的耗时，以及新bizId完整入队的耗时，
+ * 分别在开启和关闭本地近端缓存时测量
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DedupeBenchmark {
+
+    private static final String TOPIC = "task";
+
+    private static final String DUPLICATE_BIZ_ID = "bench-duplicate";
+
+    @Param({"true", "false"})
+    public boolean nearCache;
+
+    private final AtomicLong bizIdSequence = new AtomicLong();
+
+    private RedisServer redisServer;
+
+    private ConfigurableApplicationContext context;
+
+    private TaskDelayedQueueService service;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        redisServer = BenchmarkEnvironment.startRedis();
+        context = BenchmarkEnvironment.startApplication(
+                Collections.singletonMap("delayed.queue.dedupe.near-cache.enabled", nearCache));
+        service = context.getBean(TaskDelayedQueueService.class);
+        service.addDelayedMessage("duplicate", LocalDateTime.now().plusHours(1), TOPIC, DUPLICATE_BIZ_ID);
+    }
+
+    @Benchmark
+    public Object duplicateRejected() {
+        try {
+            return service.addDelayedMessage("duplicate", LocalDateTime.now().plusHours(1), TOPIC, DUPLICATE_BIZ_ID);
+        } catch (RuntimeException e) {
+            return e;
+        }
+    }
+
+    @Benchmark
+    public String uniqueAccepted() {
+        String bizId = "bench-" + bizIdSequence.incrementAndGet();
+        return service.addDelayedMessage("unique", LocalDateTime.now().plusHours(1), TOPIC, bizId);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+        BenchmarkEnvironment.stopRedis(redisServer);
+    }
+}
@@ -0,0 +1,82 @@
+package com.wdwlx.service;
+
+import com.wdwlx.benchmark.BenchmarkEnvironment;
+import com.wdwlx.entity.DelayedMessage;
+import com.wdwlx.util.IdManager;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import redis.embedded.RedisServer;
+
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * MessageProcessorTask.run：分布式锁模式与无锁抢占模式下单条消息的处理耗时
+ * <p>
+ * 使用不模拟耗时的任务队列，测得的是框架本身（锁、数据库状态迁移、查询）的开销
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.AverageTime, Mode.Throughput})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MessageProcessorTaskBenchmark {
+
+    @Param({"false", "true"})
+    public boolean lockFreeClaim;
+
+    private RedisServer redisServer;
+
+    private ConfigurableApplicationContext context;
+
+    private TaskDelayedQueueService service;
+
+    private DelayedMessageService delayedMessageService;
+
+    private IdManager idManager;
+
+    private String messageId;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        redisServer = BenchmarkEnvironment.startRedis();
+        context = BenchmarkEnvironment.startApplication(
+                Collections.singletonMap("delayed.queue.processor.lock-free-claim", lockFreeClaim));
+        service = context.getBean(TaskDelayedQueueService.class);
+        delayedMessageService = context.getBean(DelayedMessageService.class);
+        idManager = context.getBean(IdManager.class);
+    }
+
+    @Setup(Level.Invocation)
+    public void prepareMessage() {
+        messageId = idManager.getId();
+        DelayedMessage message = new DelayedMessage(messageId, "benchmark", LocalDateTime.now(), "task", messageId);
+        message.setStatus(0);
+        delayedMessageService.save(message);
+    }
+
+    @Benchmark
+    public void run() {
+        service.processEntry(messageId);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+        BenchmarkEnvironment.stopRedis(redisServer);
+    }
+}
@@ -0,0 +1,18 @@
+-- H2（MySQL 兼容模式）下的 delayed_message 表，与 README 中的 MySQL 表结构保持一致
+CREATE TABLE IF NOT EXISTS delayed_message (
+    id          BIGINT       NOT NULL AUTO_INCREMENT PRIMARY KEY,
+    message_id  VARCHAR(64)  NOT NULL,
+    content     TEXT         NOT NULL,
+    create_time TIMESTAMP(3) NOT NULL,
+    process_time TIMESTAMP(3),
+    status      TINYINT      NOT NULL DEFAULT 0,
+    topic       VARCHAR(100) NOT NULL,
+    expire_time TIMESTAMP(3) NOT NULL,
+    biz_id      VARCHAR(64),
+    attempts    INT          NOT NULL DEFAULT 0,
+    lease_expire_time TIMESTAMP(3),
+    CONSTRAINT uk_message_id UNIQUE (message_id)
+);
+CREATE INDEX IF NOT EXISTS idx_biz_id ON delayed_message (biz_id);
+CREATE INDEX IF NOT EXISTS idx_topic_status ON delayed_message (topic, status);
+CREATE INDEX IF NOT EXISTS idx_topic_status_lease ON delayed_message (topic, status, lease_expire_time);
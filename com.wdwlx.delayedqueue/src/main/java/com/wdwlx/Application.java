@@ -1,10 +1,8 @@
 package com.wdwlx;
 
-import org.mybatis.spring.annotation.MapperScan;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 
-@MapperScan(basePackages = {"com.wdwlx.repository"})
 @SpringBootApplication
 public class Application {
 
@@ -1,10 +1,12 @@
 package com.wdwlx.config;
 
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ThreadFactory;
@@ -13,34 +15,78 @@ import java.util.concurrent.atomic.AtomicInteger;
 @Configuration
 public class DelayedQueueThreadPoolConfig {
 
-    // 处理线程池配置
+    // 处理线程池默认配置（每个队列独立一个线程池）
     @Value("${delayed.queue.processor.thread.pool.core-size:10}")
     private int processorCorePoolSize;
 
-    @Value("${delayed.queue.processor.thread.pool.max-size:20}")
-    private int processorMaxPoolSize;
-
     @Value("${delayed.queue.processor.thread.keepalive.seconds:60}")
     private int processorKeepAliveSeconds;
 
     @Value("${delayed.queue.processor.thread.queue.capacity:1000}")
     private int processorQueueCapacity;
 
+    // 是否使用虚拟线程处理消息（JDK 21+）
+    @Value("${delayed.queue.processor.virtual-threads.enabled:false}")
+    private boolean processorVirtualThreadsEnabled;
+
     // 监听线程池配置
     @Value("${delayed.queue.listener.thread.pool.core-size:4}")
     private int listenerThreadPoolSize;
 
-    @Bean("delayedQueueProcessorExecutor")
-    public ThreadPoolTaskExecutor delayedQueueProcessorExecutor() {
+    public int getProcessorCorePoolSize() {
+        return processorCorePoolSize;
+    }
+
+    public int getProcessorQueueCapacity() {
+        return processorQueueCapacity;
+    }
+
+    /**
+     * 创建队列独立的处理执行器（舱壁隔离）
+     * <p>
+     * 平台线程模式：固定并发数、有界队列，饱和时拒绝而不是由调用方（监听线程）执行；
+     * 虚拟线程模式：共享虚拟线程执行器，按队列用信号量限制并发数。
+     * 监听器在拉取前按剩余容量限流，消息留在Redis中等待下次拉取
+     *
+     * @param queueName     队列名称
+     * @param concurrency   并发处理数
+     * @param queueCapacity 等待队列容量（仅平台线程模式）
+     */
+    public QueueProcessorExecutor createProcessorExecutor(String queueName, int concurrency, int queueCapacity) {
+        if (processorVirtualThreadsEnabled) {
+            return new VirtualThreadQueueProcessorExecutor(delayedQueueProcessorExecutor(), concurrency, processorKeepAliveSeconds);
+        }
         ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
-        executor.setCorePoolSize(processorCorePoolSize);
-        executor.setMaxPoolSize(processorMaxPoolSize);
+        executor.setCorePoolSize(concurrency);
+        executor.setMaxPoolSize(concurrency);
+        executor.setAllowCoreThreadTimeOut(true);
         executor.setKeepAliveSeconds(processorKeepAliveSeconds);
-        executor.setQueueCapacity(processorQueueCapacity);
-        executor.setThreadNamePrefix("DelayedQueueProcessor-");
-        executor.setRejectedExecutionHandler(new java.util.concurrent.ThreadPoolExecutor.CallerRunsPolicy());
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("DelayedQueueProcessor-" + queueName + "-");
+        executor.setRejectedExecutionHandler(new java.util.concurrent.ThreadPoolExecutor.AbortPolicy());
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(processorKeepAliveSeconds);
         executor.initialize();
-        return executor;
+        return new ThreadPoolQueueProcessorExecutor(executor);
+    }
+
+    /**
+     * 虚拟线程处理执行器（JDK 21+），I/O密集型处理逻辑不再受平台线程数限制
+     * <p>
+     * 以反射创建以保持Java 17编译兼容，运行在低于21的JDK上时启动失败
+     */
+    @Bean("delayedQueueProcessorExecutor")
+    @ConditionalOnProperty(name = "delayed.queue.processor.virtual-threads.enabled", havingValue = "true")
+    public ExecutorService delayedQueueProcessorExecutor() {
+        try {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, "DelayedQueueVirtualProcessor-", 1L);
+            ThreadFactory factory = (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+            return (ExecutorService) Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class).invoke(null, factory);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("虚拟线程处理模式需要JDK 21及以上版本，当前版本: " + Runtime.version(), e);
+        }
     }
 
     @Bean("delayedQueueListenerExecutor")
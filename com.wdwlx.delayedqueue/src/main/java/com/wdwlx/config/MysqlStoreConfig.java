@@ -0,0 +1,15 @@
+package com.wdwlx.config;
+
+import org.mybatis.spring.annotation.MapperScan;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * MySQL存储的Mapper扫描，delayed.queue.store=mysql（默认）时才加载；
+ * 数据源与MyBatis-Plus自动配置在 journal 存储下由 {@link StoreEnvironmentPostProcessor} 排除
+ */
+@Configuration
+@ConditionalOnProperty(name = "delayed.queue.store", havingValue = "mysql", matchIfMissing = true)
+@MapperScan(basePackages = {"com.wdwlx.repository"})
+public class MysqlStoreConfig {
+}
@@ -0,0 +1,38 @@
+package com.wdwlx.config;
+
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * 队列独立的消息处理执行器，监听器按剩余容量拉取消息，饱和时消息留在Redis中
+ */
+public interface QueueProcessorExecutor {
+
+    /**
+     * 提交处理任务
+     *
+     * @throws RejectedExecutionException 执行器已饱和或已关闭
+     */
+    void execute(Runnable task);
+
+    /**
+     * 剩余可接收的任务数
+     */
+    int availableSlots();
+
+    /**
+     * 正在处理的任务数
+     */
+    int getActiveCount();
+
+    /**
+     * 等待处理的任务数
+     */
+    int getQueueSize();
+
+    boolean isShutdown();
+
+    /**
+     * 等待已提交的任务处理完成后关闭
+     */
+    void shutdown();
+}
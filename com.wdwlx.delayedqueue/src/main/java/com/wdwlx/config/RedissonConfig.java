@@ -1,23 +1,107 @@
 package com.wdwlx.config;
 
+import cn.hutool.core.collection.CollUtil;
+import cn.hutool.core.util.StrUtil;
 import org.redisson.Redisson;
 import org.redisson.api.RedissonClient;
+import org.redisson.config.BaseConfig;
+import org.redisson.config.BaseMasterSlaveServersConfig;
 import org.redisson.config.Config;
+import org.redisson.config.ReadMode;
+import org.redisson.config.SingleServerConfig;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.data.redis.RedisProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
-import javax.sql.DataSource;
+import java.util.List;
 
+/**
+ * Redisson客户端配置，连接信息取自 spring.data.redis：
+ * 配置了 cluster.nodes 使用集群模式，配置了 sentinel.master 使用哨兵模式，否则使用单节点（host/port 或 url）
+ */
 @Configuration
 public class RedissonConfig {
-    
+
+    // 每个节点的连接池大小（集群/哨兵模式下主从节点各自独立）
+    @Value("${delayed.queue.redis.connection-pool-size:64}")
+    private int connectionPoolSize;
+
+    // 每个节点的最小空闲连接数
+    @Value("${delayed.queue.redis.connection-minimum-idle-size:24}")
+    private int connectionMinimumIdleSize;
+
+    // 每个节点的发布订阅连接池大小
+    @Value("${delayed.queue.redis.subscription-connection-pool-size:50}")
+    private int subscriptionConnectionPoolSize;
+
+    // 读命令的路由：MASTER / SLAVE / MASTER_SLAVE，仅集群和哨兵模式生效
+    @Value("${delayed.queue.redis.read-mode:MASTER}")
+    private ReadMode readMode;
+
     @Bean
-    public RedissonClient redissonClient() {
+    public RedissonClient redissonClient(RedisProperties redisProperties) {
         Config config = new Config();
-        config.useSingleServer()
-              .setAddress("redis://127.0.0.1:6379")
-              .setPassword(null) // 如果有密码需要设置
-              .setDatabase(0);
+        String scheme = redisProperties.getSsl().isEnabled() ? "rediss://" : "redis://";
+        RedisProperties.Cluster cluster = redisProperties.getCluster();
+        RedisProperties.Sentinel sentinel = redisProperties.getSentinel();
+
+        if (cluster != null && CollUtil.isNotEmpty(cluster.getNodes())) {
+            applyMasterSlave(config.useClusterServers()
+                    .addNodeAddress(toAddresses(scheme, cluster.getNodes())), redisProperties);
+        } else if (sentinel != null && StrUtil.isNotBlank(sentinel.getMaster())) {
+            applyMasterSlave(config.useSentinelServers()
+                    .setMasterName(sentinel.getMaster())
+                    .addSentinelAddress(toAddresses(scheme, sentinel.getNodes()))
+                    .setDatabase(redisProperties.getDatabase()), redisProperties);
+        } else {
+            String address = StrUtil.isNotBlank(redisProperties.getUrl())
+                    ? redisProperties.getUrl()
+                    : scheme + redisProperties.getHost() + ":" + redisProperties.getPort();
+            SingleServerConfig single = config.useSingleServer()
+                    .setAddress(address)
+                    .setDatabase(redisProperties.getDatabase())
+                    .setConnectionPoolSize(connectionPoolSize)
+                    .setConnectionMinimumIdleSize(Math.min(connectionMinimumIdleSize, connectionPoolSize))
+                    .setSubscriptionConnectionPoolSize(subscriptionConnectionPoolSize);
+            applyCommon(single, redisProperties);
+        }
         return Redisson.create(config);
     }
+
+    private void applyMasterSlave(BaseMasterSlaveServersConfig<?> serversConfig, RedisProperties redisProperties) {
+        int minimumIdle = Math.min(connectionMinimumIdleSize, connectionPoolSize);
+        serversConfig.setMasterConnectionPoolSize(connectionPoolSize)
+                .setSlaveConnectionPoolSize(connectionPoolSize)
+                .setMasterConnectionMinimumIdleSize(minimumIdle)
+                .setSlaveConnectionMinimumIdleSize(minimumIdle)
+                .setSubscriptionConnectionPoolSize(subscriptionConnectionPoolSize)
+                // 读命令（统计、去重查询、布隆过滤器加载等）可路由到从节点，poll/take/锁等写命令始终在主节点
+                .setReadMode(readMode);
+        applyCommon(serversConfig, redisProperties);
+    }
+
+    private void applyCommon(BaseConfig<?> serversConfig, RedisProperties redisProperties) {
+        if (StrUtil.isNotBlank(redisProperties.getUsername())) {
+            serversConfig.setUsername(redisProperties.getUsername());
+        }
+        if (StrUtil.isNotBlank(redisProperties.getPassword())) {
+            serversConfig.setPassword(redisProperties.getPassword());
+        }
+        if (redisProperties.getTimeout() != null) {
+            serversConfig.setTimeout((int) redisProperties.getTimeout().toMillis());
+        }
+        if (redisProperties.getConnectTimeout() != null) {
+            serversConfig.setConnectTimeout((int) redisProperties.getConnectTimeout().toMillis());
+        }
+        if (StrUtil.isNotBlank(redisProperties.getClientName())) {
+            serversConfig.setClientName(redisProperties.getClientName());
+        }
+    }
+
+    private static String[] toAddresses(String scheme, List<String> nodes) {
+        return nodes.stream()
+                .map(node -> node.contains("://") ? node : scheme + node)
+                .toArray(String[]::new);
+    }
 }
@@ -0,0 +1,52 @@
+package com.wdwlx.config;
+
+import com.baomidou.mybatisplus.autoconfigure.IdentifierGeneratorAutoConfiguration;
+import com.baomidou.mybatisplus.autoconfigure.MybatisPlusAutoConfiguration;
+import com.baomidou.mybatisplus.autoconfigure.MybatisPlusInnerInterceptorAutoConfiguration;
+import com.baomidou.mybatisplus.autoconfigure.MybatisPlusLanguageDriverAutoConfiguration;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceAutoConfiguration;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceTransactionManagerAutoConfiguration;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.env.EnvironmentPostProcessor;
+import org.springframework.core.env.ConfigurableEnvironment;
+import org.springframework.core.env.MapPropertySource;
+
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * delayed.queue.store=journal 时把数据源与MyBatis-Plus自动配置加入 spring.autoconfigure.exclude：
+ * 本地日志存储不访问数据库，不创建连接池，也不需要配置 spring.datasource.url。
+ * 排除项追加在已配置的 spring.autoconfigure.exclude 之后
+ **/
+public class StoreEnvironmentPostProcessor implements EnvironmentPostProcessor {
+
+    private static final String EXCLUDE_PROPERTY = "spring.autoconfigure.exclude";
+
+    private static final List<Class<?>> DATABASE_AUTO_CONFIGURATIONS = List.of(
+            DataSourceAutoConfiguration.class,
+            DataSourceTransactionManagerAutoConfiguration.class,
+            MybatisPlusAutoConfiguration.class,
+            MybatisPlusInnerInterceptorAutoConfiguration.class,
+            IdentifierGeneratorAutoConfiguration.class,
+            MybatisPlusLanguageDriverAutoConfiguration.class);
+
+    @Override
+    public void postProcessEnvironment(ConfigurableEnvironment environment, SpringApplication application) {
+        if (!"journal".equals(environment.getProperty("delayed.queue.store"))) {
+            return;
+        }
+        Set<String> excludes = new LinkedHashSet<>(Binder.get(environment)
+                .bind(EXCLUDE_PROPERTY, Bindable.listOf(String.class))
+                .orElse(List.of()));
+        for (Class<?> autoConfiguration : DATABASE_AUTO_CONFIGURATIONS) {
+            excludes.add(autoConfiguration.getName());
+        }
+        environment.getPropertySources().addFirst(new MapPropertySource("delayedQueueStore",
+                Map.of(EXCLUDE_PROPERTY, String.join(",", excludes))));
+    }
+}
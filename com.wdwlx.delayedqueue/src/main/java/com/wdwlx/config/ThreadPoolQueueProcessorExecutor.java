@@ -0,0 +1,49 @@
+package com.wdwlx.config;
+
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.concurrent.ThreadPoolExecutor;
+
+/**
+ * 基于平台线程池的队列处理执行器：固定并发数、有界等待队列
+ */
+public class ThreadPoolQueueProcessorExecutor implements QueueProcessorExecutor {
+
+    private final ThreadPoolTaskExecutor executor;
+
+    public ThreadPoolQueueProcessorExecutor(ThreadPoolTaskExecutor executor) {
+        this.executor = executor;
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        executor.execute(task);
+    }
+
+    @Override
+    public int availableSlots() {
+        ThreadPoolExecutor threadPool = executor.getThreadPoolExecutor();
+        int idleThreads = Math.max(0, threadPool.getMaximumPoolSize() - threadPool.getActiveCount());
+        return idleThreads + threadPool.getQueue().remainingCapacity();
+    }
+
+    @Override
+    public int getActiveCount() {
+        return executor.getActiveCount();
+    }
+
+    @Override
+    public int getQueueSize() {
+        return executor.getThreadPoolExecutor().getQueue().size();
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return executor.getThreadPoolExecutor().isShutdown();
+    }
+
+    @Override
+    public void shutdown() {
+        executor.shutdown();
+    }
+}
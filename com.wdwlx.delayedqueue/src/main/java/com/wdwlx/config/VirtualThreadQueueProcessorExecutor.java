@@ -0,0 +1,86 @@
+package com.wdwlx.config;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 基于虚拟线程的队列处理执行器：共享虚拟线程执行器，每个队列用信号量限制并发数
+ * <p>
+ * 任务只在拿到许可后才提交，不存在等待队列，饱和时直接拒绝
+ */
+public class VirtualThreadQueueProcessorExecutor implements QueueProcessorExecutor {
+
+    private final ExecutorService executor;
+
+    private final Semaphore permits;
+
+    private final int concurrency;
+
+    private final long awaitTerminationSeconds;
+
+    private volatile boolean shutdown = false;
+
+    public VirtualThreadQueueProcessorExecutor(ExecutorService executor, int concurrency, long awaitTerminationSeconds) {
+        this.executor = executor;
+        this.concurrency = concurrency;
+        this.permits = new Semaphore(concurrency);
+        this.awaitTerminationSeconds = awaitTerminationSeconds;
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        if (shutdown) {
+            throw new RejectedExecutionException("处理执行器已关闭");
+        }
+        if (!permits.tryAcquire()) {
+            throw new RejectedExecutionException("处理并发数已达上限: " + concurrency);
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    task.run();
+                } finally {
+                    permits.release();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    @Override
+    public int availableSlots() {
+        return shutdown ? 0 : permits.availablePermits();
+    }
+
+    @Override
+    public int getActiveCount() {
+        return concurrency - permits.availablePermits();
+    }
+
+    @Override
+    public int getQueueSize() {
+        return 0;
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return shutdown || executor.isShutdown();
+    }
+
+    @Override
+    public void shutdown() {
+        shutdown = true;
+        // 共享执行器由Spring关闭，这里只等待本队列的任务归还全部许可
+        try {
+            if (permits.tryAcquire(concurrency, awaitTerminationSeconds, TimeUnit.SECONDS)) {
+                permits.release(concurrency);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
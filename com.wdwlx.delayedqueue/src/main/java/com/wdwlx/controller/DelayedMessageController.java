@@ -1,7 +1,9 @@
 package com.wdwlx.controller;
 
-import cn.hutool.extra.spring.SpringUtil;
-import com.wdwlx.service.*;
+import com.wdwlx.entity.DelayedMessageRequest;
+import com.wdwlx.entity.DelayedMessageResult;
+import com.wdwlx.service.AbstractDelayedQueueService;
+import com.wdwlx.service.DelayedQueueRegistry;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.bind.annotation.*;
 
@@ -13,46 +15,75 @@ import java.util.*;
 @RequestMapping("/delayed")
 public class DelayedMessageController {
 
-    @Autowired
-    private OrderDelayedQueueService orderDelayedQueueService;
+    // 过期时间格式，毫秒部分可选
+    private static final DateTimeFormatter EXPIRE_TIME_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss[.SSS]");
 
+    // 主题 → 队列服务，包含bean队列和运行时注册的主题
     @Autowired
-    private NotificationDelayedQueueService notificationDelayedQueueService;
-
-    @Autowired
-    private TaskDelayedQueueService taskDelayedQueueService;
-    @Autowired
-    private EmailDelayedQueueService emailDelayedQueueService;
+    private DelayedQueueRegistry delayedQueueRegistry;
 
     @PostMapping("/add")
     public Object sendOrderDelayedMessage(@RequestParam String content, @RequestParam String topic, @RequestParam String expireTimeStr, @RequestParam String bizId) {
 
-        LocalDateTime expireTime = LocalDateTime.parse(expireTimeStr, DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss"));
-        if (Objects.equals(topic, "order")) {
-            return orderDelayedQueueService.addDelayedMessage(content, expireTime, topic, bizId);
+        AbstractDelayedQueueService service = resolveService(topic);
+        if (service == null) {
+            return "未知主题: " + topic;
+        }
+        LocalDateTime expireTime = LocalDateTime.parse(expireTimeStr, EXPIRE_TIME_FORMATTER);
+        return service.addDelayedMessage(content, expireTime, topic, bizId);
+    }
+
+    @PostMapping("/addBatch")
+    public List<DelayedMessageResult> sendDelayedMessageBatch(@RequestBody List<DelayedMessageRequest> requests) {
+        DelayedMessageResult[] results = new DelayedMessageResult[requests.size()];
+
+        // 按主题分组，每个队列一次批量写入
+        Map<String, List<Integer>> indexesByTopic = new LinkedHashMap<>();
+        for (int i = 0; i < requests.size(); i++) {
+            indexesByTopic.computeIfAbsent(requests.get(i).getTopic(), k -> new ArrayList<>()).add(i);
         }
-        if (Objects.equals(topic, "task")) {
-            return taskDelayedQueueService.addDelayedMessage(content, expireTime, topic, bizId);
+
+        for (Map.Entry<String, List<Integer>> entry : indexesByTopic.entrySet()) {
+            AbstractDelayedQueueService service = resolveService(entry.getKey());
+            List<DelayedMessageRequest> topicRequests = new ArrayList<>(entry.getValue().size());
+            for (Integer i : entry.getValue()) {
+                topicRequests.add(requests.get(i));
+            }
+            if (service == null) {
+                for (Integer i : entry.getValue()) {
+                    results[i] = DelayedMessageResult.fail(requests.get(i).getBizId(), "未知主题: " + entry.getKey());
+                }
+                continue;
+            }
+            List<DelayedMessageResult> topicResults = service.addDelayedMessages(topicRequests);
+            for (int j = 0; j < topicResults.size(); j++) {
+                results[entry.getValue().get(j)] = topicResults.get(j);
+            }
         }
-        if (Objects.equals(topic, "notification")) {
-            return notificationDelayedQueueService.addDelayedMessage(content, expireTime, topic, bizId);
+        return Arrays.asList(results);
+    }
+
+    @PostMapping("/cancel")
+    public Object cancelDelayedMessage(@RequestParam String topic, @RequestParam String messageId) {
+        AbstractDelayedQueueService service = resolveService(topic);
+        if (service == null) {
+            return "未知主题: " + topic;
         }
-        return "   异常";
+        return service.cancel(messageId);
     }
 
-    @PostMapping("/addBatch")
-    public String sendOrderDelayedMessageBatch(@RequestParam String expireTimeStr) {
-        LocalDateTime now = LocalDateTime.parse(expireTimeStr, DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss"));
-
-        for (int i = 0; i < 2; i++) {
-            LocalDateTime expireTime = now.plusSeconds(i);
-            orderDelayedQueueService.addDelayedMessage("order" + i, expireTime, "order", "biz" + i);
-            taskDelayedQueueService.addDelayedMessage("task" + i, expireTime, "task", "biz" + i);
-            notificationDelayedQueueService.addDelayedMessage("notification" + i, expireTime, "notification", "biz" + i);
-            emailDelayedQueueService.addDelayedMessage("email" + i, expireTime, "email", "biz" + i);
+    @PostMapping("/reschedule")
+    public Object rescheduleDelayedMessage(@RequestParam String topic, @RequestParam String messageId, @RequestParam String expireTimeStr) {
+        AbstractDelayedQueueService service = resolveService(topic);
+        if (service == null) {
+            return "未知主题: " + topic;
         }
-        return "";
+        LocalDateTime expireTime = LocalDateTime.parse(expireTimeStr, EXPIRE_TIME_FORMATTER);
+        return service.reschedule(messageId, expireTime);
+    }
 
+    private AbstractDelayedQueueService resolveService(String topic) {
+        return delayedQueueRegistry.get(topic);
     }
 
     @GetMapping("/health")
@@ -63,14 +94,10 @@ public class DelayedMessageController {
     @GetMapping("/allStats")
     public List<Map<String, Object>> getAllQueueStats() {
         try {
-            // 获取所有 AbstractDelayedQueueService 类型的 bean
-            Map<String, AbstractDelayedQueueService> services = SpringUtil.getApplicationContext()
-                    .getBeansOfType(AbstractDelayedQueueService.class);
-
             List<Map<String, Object>> allStats = new ArrayList<>();
 
-            // 遍历所有服务实例并收集统计信息
-            for (AbstractDelayedQueueService service : services.values()) {
+            // 遍历所有主题的队列服务（bean队列和运行时注册的主题）并收集统计信息
+            for (AbstractDelayedQueueService service : delayedQueueRegistry.getServices()) {
                 Map<String, Object> stats = service.getQueueStats();
                 allStats.add(stats);
             }
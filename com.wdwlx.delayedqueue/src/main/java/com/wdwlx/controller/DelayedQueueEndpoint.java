@@ -0,0 +1,32 @@
+package com.wdwlx.controller;
+
+import com.wdwlx.service.AbstractDelayedQueueService;
+import com.wdwlx.service.DelayedQueueRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 延时队列监控端点：/actuator/delayedqueue，汇总所有队列的统计信息和指标摘要
+ */
+@Component
+@Endpoint(id = "delayedqueue")
+public class DelayedQueueEndpoint {
+
+    @Autowired
+    private DelayedQueueRegistry delayedQueueRegistry;
+
+    @ReadOperation
+    public List<Map<String, Object>> queues() {
+        List<Map<String, Object>> allStats = new ArrayList<>();
+        for (AbstractDelayedQueueService service : delayedQueueRegistry.getServices()) {
+            allStats.add(service.getQueueStats());
+        }
+        return allStats;
+    }
+}
@@ -23,7 +23,15 @@ public class DelayedMessage {
      * 过期时间
      */
     private LocalDateTime expireTime;
-    private Integer status; // 0:未处理, 1:已处理, 2:处理中
+    private Integer status; // 0:未处理, 1:已处理, 2:处理中, 3:死信, 4:已取消
+    /**
+     * 处理中状态的租约到期时间，过期后由回收任务恢复为未处理
+     */
+    private LocalDateTime leaseExpireTime;
+    /**
+     * 已失败的处理次数
+     */
+    private Integer attempts = 0;
     private String topic;
 
     public DelayedMessage(String messageId, String content, LocalDateTime expireTime, String topic, String bizId) {
@@ -0,0 +1,28 @@
+package com.wdwlx.entity;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * 批量添加延时消息的请求项
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class DelayedMessageRequest {
+    private String content;
+    private String topic;
+    /**
+     * 过期时间，毫秒部分可选
+     */
+    @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss[.SSS]")
+    private LocalDateTime expireTime;
+    /**
+     * 业务ID,用于去重
+     */
+    private String bizId;
+}
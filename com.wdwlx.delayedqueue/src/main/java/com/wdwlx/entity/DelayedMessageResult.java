@@ -0,0 +1,29 @@
+package com.wdwlx.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 批量添加延时消息的单项结果
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class DelayedMessageResult {
+    private String bizId;
+    private String messageId;
+    private boolean success;
+    /**
+     * 失败原因或提示信息
+     */
+    private String message;
+
+    public static DelayedMessageResult success(String bizId, String messageId) {
+        return new DelayedMessageResult(bizId, messageId, true, null);
+    }
+
+    public static DelayedMessageResult fail(String bizId, String message) {
+        return new DelayedMessageResult(bizId, null, false, message);
+    }
+}
@@ -0,0 +1,49 @@
+package com.wdwlx.entity;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 运行时注册的主题配置，可在 delayed.queue.topics.{主题} 下配置，也可在注册时传入
+ */
+@Data
+@NoArgsConstructor
+public class DelayedTopicConfig {
+    private String topic;
+    /**
+     * 队列名，为空时为 {主题}_delayed_queue
+     */
+    private String queueName;
+    /**
+     * 处理逻辑的bean名称（DelayedMessageHandler），配置后启动时自动注册
+     */
+    private String handler;
+    /**
+     * 轮询模式的初始检查间隔（毫秒）
+     */
+    private long checkInterval = 100;
+    /**
+     * 处理并发数，为空时使用 delayed.queue.processor.thread.pool.core-size
+     */
+    private Integer concurrency;
+    /**
+     * 处理执行器等待队列容量，为空时使用 delayed.queue.processor.thread.queue.capacity
+     */
+    private Integer queueCapacity;
+    /**
+     * 是否按bizId去重
+     */
+    private boolean dedupe = false;
+    /**
+     * 启动恢复时已到期的积压消息是否直接写入就绪队列，关闭时经调度集合搬运（两种情况都会恢复）
+     */
+    private boolean processBacklog = true;
+
+    public DelayedTopicConfig(String topic) {
+        this.topic = topic;
+    }
+
+    public String resolveQueueName() {
+        return queueName != null && !queueName.isEmpty() ? queueName : topic + "_delayed_queue";
+    }
+}
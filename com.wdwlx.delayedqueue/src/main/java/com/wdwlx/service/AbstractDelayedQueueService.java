@@ -1,41 +1,75 @@
 package com.wdwlx.service;
 
 import cn.hutool.core.collection.CollUtil;
+import com.wdwlx.config.DelayedQueueThreadPoolConfig;
+import com.wdwlx.config.QueueProcessorExecutor;
 import com.wdwlx.entity.DelayedMessage;
+import com.wdwlx.entity.DelayedMessageRequest;
+import com.wdwlx.entity.DelayedMessageResult;
+import com.wdwlx.util.CompactIdCodec;
+import com.wdwlx.util.DedupeNearCache;
+import com.wdwlx.util.DelayedMessageCodec;
 import com.wdwlx.util.IdManager;
+import com.wdwlx.util.RedisKeys;
+import com.wdwlx.util.RotatingBloomFilter;
+import com.wdwlx.util.TransferScript;
+import io.micrometer.core.instrument.MeterRegistry;
 import jakarta.annotation.PostConstruct;
 import jakarta.annotation.PreDestroy;
 import lombok.NonNull;
 import org.redisson.api.*;
+import org.redisson.api.listener.StatusListener;
+import org.redisson.client.codec.ByteArrayCodec;
+import org.redisson.client.codec.Codec;
+import org.redisson.client.codec.StringCodec;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 
 import java.time.Duration;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
 
 public abstract class AbstractDelayedQueueService {
     private static final Logger logger = LoggerFactory.getLogger(AbstractDelayedQueueService.class);
 
+    // 到期判定允许的提前量，覆盖节点间的时钟偏差；更早到达的条目按消息当前的过期时间重新调度
+    private static final long DUE_TOLERANCE_MILLIS = 100;
+
+    // 不经过队列条目直接处理的消息（写入时已到期）无需确认
+    private static final Runnable NO_ACK = () -> {
+    };
+
     @Autowired
     private RedissonClient redissonClient;
 
     @Autowired
     private DelayedMessageService delayedMessageService;
 
-    // 注入处理线程池
     @Autowired
-    @Qualifier("delayedQueueProcessorExecutor")
-    private ThreadPoolTaskExecutor processorExecutor;
+    private DelayedQueueThreadPoolConfig threadPoolConfig;
+
+    // 队列独立的处理执行器，init时按子类声明的并发数和队列容量创建
+    private QueueProcessorExecutor processorExecutor;
 
     // 注入监听线程池
     @Autowired
@@ -49,25 +83,167 @@ public abstract class AbstractDelayedQueueService {
     @Value("${delayed.queue.lock.lease-timeout-seconds:15}")
     private int lockLeaseTimeoutSeconds;
 
+    // 启动恢复时每页读取的消息数
+    @Value("${delayed.queue.recovery.page-size:1000}")
+    private int recoveryPageSize;
+
+    // 每次检查最多拉取的到期消息数（1表示逐条拉取）
+    @Value("${delayed.queue.listener.batch-size:1}")
+    private int listenerBatchSize;
+
+    // 每次从调度集合搬运到就绪队列的最大条目数
+    @Value("${delayed.queue.schedule.transfer-batch-size:1000}")
+    private int transferBatchSize;
+
+    // 是否使用推送模式监听（异步阻塞take，替代固定间隔轮询）
+    @Value("${delayed.queue.listener.push-enabled:false}")
+    private boolean listenerPushEnabled;
+
+    // 轮询模式下是否由共享派发器统一检查所有队列
+    @Value("${delayed.queue.dispatcher.enabled:true}")
+    private boolean sharedDispatcher;
+
+    // 轮询模式下是否按拉取结果自适应调整检查间隔
+    @Value("${delayed.queue.listener.adaptive.enabled:true}")
+    private boolean adaptivePolling;
+
+    // 持续有消息到达时检查间隔的下限
+    @Value("${delayed.queue.listener.adaptive.min-interval-millis:10}")
+    private long adaptiveMinIntervalMillis;
+
+    // 队列空闲时检查间隔指数退避的上限
+    @Value("${delayed.queue.listener.adaptive.max-interval-millis:1000}")
+    private long adaptiveMaxIntervalMillis;
+
+    // 处理执行器占用率（处理中 + 等待中）/ 总容量达到该值时暂停拉取，消息留在Redis中
+    @Value("${delayed.queue.listener.high-water-mark:0.8}")
+    private double highWaterMark;
+
+    // 已取出条目的确认超时：处理节点在该时间内未确认（宕机、派发失败、结果未送达）的条目由搬运脚本放回就绪队列
+    @Value("${delayed.queue.listener.ack-timeout-seconds:60}")
+    private long ackTimeoutSeconds;
+
+    // 是否使用无锁抢占（数据库条件更新）替代每条消息的分布式锁
+    @Value("${delayed.queue.processor.lock-free-claim:false}")
+    private boolean lockFreeClaim;
+
+    // 处理中消息的租约时长，处理节点宕机后超过该时间的消息由回收任务重新派发
+    @Value("${delayed.queue.lease.duration-seconds:60}")
+    private long leaseSeconds;
+
+    // 是否将处理完成的状态更新缓冲后合并为批量UPDATE
+    @Value("${delayed.queue.status.write-behind.enabled:true}")
+    private boolean statusWriteBehind;
+
+    // 单条批量UPDATE最多合并的消息数
+    @Value("${delayed.queue.status.write-behind.batch-size:200}")
+    private int statusWriteBehindBatchSize;
+
+    // 布隆过滤器期望误判率
+    @Value("${delayed.queue.bloom.false-probability:0.01}")
+    private double bloomFalseProbability;
+
+    // 布隆过滤器轮换的时间窗口（小时），每个窗口一代
+    @Value("${delayed.queue.bloom.window-hours:24}")
+    private long bloomWindowHours;
+
+    // 去重查询覆盖的代数（含当前代），更早的代随TTL过期
+    @Value("${delayed.queue.bloom.generations:2}")
+    private int bloomGenerations;
+
+    // 是否在本地堆内镜像布隆过滤器，查询无需访问Redis
+    @Value("${delayed.queue.bloom.local-mirror:true}")
+    private boolean bloomLocalMirror;
+
+    // 是否在Redis去重缓存前增加本地近端缓存
+    @Value("${delayed.queue.dedupe.near-cache.enabled:true}")
+    private boolean dedupeNearCacheEnabled;
+
+    // 本地近端缓存最大条目数（LRU淘汰）
+    @Value("${delayed.queue.dedupe.near-cache.capacity:10000}")
+    private int dedupeNearCacheCapacity;
+
+    // 本地近端缓存条目存活时间
+    @Value("${delayed.queue.dedupe.near-cache.ttl-seconds:300}")
+    private long dedupeNearCacheTtlSeconds;
+
+    // 每个队列的物理分片数，1表示不分片
+    @Value("${delayed.queue.shard-count:1}")
+    private int shardCount;
+
+    // 是否将消息ID以8字节long写入Redis队列（替代默认编解码器序列化的字符串）
+    @Value("${delayed.queue.compact-ids:false}")
+    private boolean compactIds;
+
+    // 处理失败后的最大尝试次数（含首次），达到后转入死信队列
+    @Value("${delayed.queue.retry.max-attempts:5}")
+    private int retryMaxAttempts;
+
+    // 首次重试的退避时间
+    @Value("${delayed.queue.retry.initial-backoff-millis:1000}")
+    private long retryInitialBackoffMillis;
+
+    // 每次重试退避时间的增长倍数
+    @Value("${delayed.queue.retry.multiplier:2.0}")
+    private double retryMultiplier;
+
+    // 退避时间上限
+    @Value("${delayed.queue.retry.max-backoff-millis:600000}")
+    private long retryMaxBackoffMillis;
+
+    // 随机抖动比例，实际退避时间在 [退避时间 x (1 - jitter), 退避时间] 内均匀分布
+    @Value("${delayed.queue.retry.jitter:0.2}")
+    private double retryJitter;
+
     @Autowired
     private IdManager idManager;
 
-    private RDelayedQueue<String> delayedQueue;
-    private RQueue<String> queue;
-    private RBlockingQueue<String> blockingQueue;
+    @Autowired
+    private DelayedQueueDispatcher dispatcher;
+
+    @Autowired
+    private DelayedQueueHousekeeper housekeeper;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    // 写入分片，消息按ID哈希落到其中一个分片
+    private List<QueueShard> shards;
+    // 监听分片：写入分片，以及分片模式下仍需排空的原未分片队列
+    private List<QueueShard> drainShards;
+    // 死信队列，保存超过最大尝试次数的条目
+    private RQueue<String> deadLetterQueue;
+    private Codec queueCodec;
+    // 搬运脚本的编解码器：参数按字符串写入，取出的条目按队列编解码器读取
+    private Codec transferCodec;
 
-    // 添加定时任务的Future引用
-    private ScheduledFuture<?> listenerTaskFuture;
     private volatile boolean isListening = false;
-    private volatile RBloomFilter<String> bloomFilter;
+    private volatile RotatingBloomFilter bloomFilter;
+    private DedupeNearCache dedupeNearCache;
+    // 去重组件由多个队列共用时为true，由提供方关闭
+    private boolean sharedDedupe;
+    private StatusWriteBehindBuffer statusBuffer;
+    // 本节点处理中的消息ID → 最近一次取得/续约租约的时间
+    private final Map<String, Long> leasedMessages = new ConcurrentHashMap<>();
+    // 在共享维护任务中的登记，租约续约、回收和写后缓冲刷新由维护任务统一执行
+    private final MaintenanceTarget maintenanceTarget = new MaintenanceTarget();
+    private volatile ScheduledFuture<?> bloomRefreshFuture;
+    // 推送模式的调度通知通道，消息格式：到期时间戳,分片名
+    private RTopic scheduleTopic;
+    private int scheduleListenerId = -1;
+    private int scheduleStatusListenerId = -1;
+    private DelayedQueueMetrics metrics;
 
     // 抽象方法，由子类提供队列名称
     protected abstract String getQueueName();
 
+    // 抽象方法，由子类提供队列对应的消息主题
+    protected abstract String getTopic();
+
     // 抽象方法，由子类实现具体的消息处理逻辑
     protected abstract void handleMessage(DelayedMessage message) throws Exception;
 
-    // 抽象方法，由子类定义是否需要处理积压消息
+    // 抽象方法，由子类定义启动恢复时已到期的积压消息是否直接写入就绪队列（否则经调度集合搬运，不影响是否恢复）
     protected abstract boolean shouldProcessBacklogMessages();
 
     // 抽象方法，由子类定义是否需要重复消息
@@ -75,40 +251,191 @@ public abstract class AbstractDelayedQueueService {
 
     protected abstract long getCheckInterval();
 
+    /**
+     * 布隆过滤器单个时间窗口内预计写入的消息数，用于计算位图大小和哈希函数个数
+     */
     protected abstract long getBloomFilterSize();
 
+    /**
+     * 队列独立处理线程池的并发数，子类可按队列覆盖
+     */
+    protected int getProcessorConcurrency() {
+        return threadPoolConfig.getProcessorCorePoolSize();
+    }
+
+    /**
+     * 队列独立处理线程池的等待队列容量，子类可按队列覆盖
+     */
+    protected int getProcessorQueueCapacity() {
+        return threadPoolConfig.getProcessorQueueCapacity();
+    }
+
+    /**
+     * 每次检查最多拉取的到期消息数，大于1时开启批量拉取，子类可按队列覆盖
+     */
+    protected int getBatchSize() {
+        return listenerBatchSize;
+    }
+
+    /**
+     * 是否使用推送模式监听，子类可按队列覆盖
+     */
+    protected boolean usePushListener() {
+        return listenerPushEnabled;
+    }
+
+    /**
+     * 轮询模式下是否由共享派发器检查本队列，子类可按队列覆盖；关闭时本队列的每个分片独立检查
+     */
+    protected boolean useSharedDispatcher() {
+        return sharedDispatcher;
+    }
+
+    /**
+     * 轮询模式下是否自适应调整检查间隔，子类可按队列覆盖；关闭时固定按 getCheckInterval() 检查，
+     * 使用共享派发器时由派发器统一自适应
+     */
+    protected boolean useAdaptivePolling() {
+        return adaptivePolling;
+    }
+
+    /**
+     * 处理中消息的租约时长（秒），子类可按队列覆盖；处理时间超过租约的消息会被自动续约
+     */
+    protected long getLeaseSeconds() {
+        return leaseSeconds;
+    }
+
+    /**
+     * 是否缓冲处理完成的状态更新并合并为批量UPDATE，子类可按队列覆盖
+     */
+    protected boolean useStatusWriteBehind() {
+        return statusWriteBehind;
+    }
+
+    /**
+     * 是否使用无锁抢占模式，子类可按队列覆盖
+     */
+    protected boolean useLockFreeClaim() {
+        return lockFreeClaim;
+    }
+
+    /**
+     * 是否在Redis队列条目中内联消息内容（content、topic、bizId、expireTime），
+     * 开启后派发时无需按消息ID查询数据库，代价是Redis内存占用随消息内容增长
+     */
+    protected boolean inlinePayload() {
+        return false;
+    }
+
+    /**
+     * 是否将消息ID以8字节long写入Redis队列，子类可按队列覆盖；内联模式下条目不是消息ID，此设置不生效。
+     * 已有的字符串条目仍可正常读取，关闭后已写入的8字节条目同样可读，切换无需迁移
+     */
+    protected boolean compactIds() {
+        return compactIds;
+    }
+
+    /**
+     * 多个队列共用的去重布隆过滤器（已启动），默认返回 null，按队列创建；
+     * 去重键带主题前缀，共用不影响判定，共用的实例由提供方关闭
+     */
+    protected RotatingBloomFilter sharedBloomFilter() {
+        return null;
+    }
+
+    /**
+     * 与 {@link #sharedBloomFilter()} 配套共用的去重近端缓存（已启动），返回 null 时不使用近端缓存
+     */
+    protected DedupeNearCache sharedDedupeNearCache() {
+        return null;
+    }
+
+    /**
+     * 队列的物理分片数，子类可按队列覆盖。大于1时每个分片是独立的延迟队列和就绪队列，
+     * 键名带 {队列名:分片号} 哈希标签，同一分片的键位于同一集群槽位，不同分片分散到不同槽位
+     */
+    protected int getShardCount() {
+        return shardCount;
+    }
+
+    /**
+     * 处理失败后的最大尝试次数（含首次），子类可按队列覆盖；1表示不重试，失败即转入死信队列
+     */
+    protected int getMaxAttempts() {
+        return retryMaxAttempts;
+    }
+
+    /**
+     * 第 attempts 次失败后的重试退避时间（毫秒），默认指数退避并带随机抖动，
+     * 避免同一批失败的消息在同一时刻集中重试，子类可按队列覆盖
+     */
+    protected long getRetryBackoffMillis(int attempts) {
+        double backoff = retryInitialBackoffMillis * Math.pow(retryMultiplier, attempts - 1);
+        long capped = (long) Math.min(backoff, retryMaxBackoffMillis);
+        long jitter = (long) (capped * Math.min(Math.max(retryJitter, 0), 1));
+        return capped - (jitter > 0 ? ThreadLocalRandom.current().nextLong(jitter + 1) : 0);
+    }
+
     @PostConstruct
     public void init() {
         // 初始化队列
         String queueName = getQueueName();
         logger.info("初始化队列：{}", queueName);
-        queue = redissonClient.getQueue(queueName);
-        blockingQueue = redissonClient.getBlockingQueue(queueName);
-        // 将普通队列绑定为延迟队列
-        delayedQueue = redissonClient.getDelayedQueue(queue);
+        queueCodec = new CompactIdCodec(redissonClient.getConfig().getCodec(), compactIds() && !inlinePayload());
+        transferCodec = TransferScript.codec(queueCodec);
+        int count = Math.max(1, getShardCount());
+        shards = new ArrayList<>(count);
+        if (count == 1) {
+            shards.add(new QueueShard(queueName));
+        } else {
+            for (int i = 0; i < count; i++) {
+                shards.add(new QueueShard(RedisKeys.shardQueue(queueName, i)));
+            }
+        }
+        drainShards = new ArrayList<>(shards);
+        if (count > 1) {
+            // 由不分片切换为分片后，原队列中的消息仍需到期派发，只监听不再写入
+            drainShards.add(new QueueShard(queueName));
+        }
+        deadLetterQueue = redissonClient.getQueue(RedisKeys.deadLetterQueue(queueName), queueCodec);
+
+        // 创建队列独立的处理执行器，慢队列饱和时不影响其他队列
+        processorExecutor = threadPoolConfig.createProcessorExecutor(queueName, getProcessorConcurrency(), getProcessorQueueCapacity());
+
+        metrics = new DelayedQueueMetrics(meterRegistry, queueName, () -> processorExecutor);
+
+        if (useStatusWriteBehind()) {
+            statusBuffer = new StatusWriteBehindBuffer(delayedMessageService, queueName, statusWriteBehindBatchSize,
+                    () -> processorExecutor.getActiveCount());
+        }
+
+        if (!repeatedMessage() && sharedBloomFilter() != null) {
+            bloomFilter = sharedBloomFilter();
+            dedupeNearCache = sharedDedupeNearCache();
+            sharedDedupe = true;
+        } else if (!repeatedMessage()) {
+            // 按队列容量配置计算大小，按时间窗口轮换，旧代过期后误判率不再累积
+            bloomFilter = new RotatingBloomFilter(redissonClient, queueName, getBloomFilterSize(), bloomFalseProbability,
+                    Duration.ofHours(bloomWindowHours), bloomGenerations, bloomLocalMirror);
+            bloomFilter.start();
+            if (dedupeNearCacheEnabled) {
+                dedupeNearCache = new DedupeNearCache(redissonClient, queueName, dedupeNearCacheCapacity, Duration.ofSeconds(dedupeNearCacheTtlSeconds));
+                dedupeNearCache.start();
+            }
+        }
 
         // 启动消息监听器
         startMessageListener();
 
         // 恢复未处理消息
         recoverUnprocessedMessages();
-        if (!repeatedMessage()) {
-            String bloomFilterName = "delayed_queue_bloom_filter:" + queueName;
-            bloomFilter = redissonClient.getBloomFilter(bloomFilterName);
-
-            // 根据历史数据和业务增长预估
-            long expectedInsertions = 1_000_000; // 动态预估
-            double falseProbability = 0.01; // 1%误判率
 
-            if (!bloomFilter.isExists()) {
-                bloomFilter.tryInit(expectedInsertions, falseProbability);
-            }
-        }
+        // 租约续约、过期回收与写后缓冲刷新由共享维护任务执行，注册后立即回收一次，接管宕机节点遗留的处理中消息
+        housekeeper.register(maintenanceTarget);
 
-        // 处理积压消息（如果需要）
-        if (shouldProcessBacklogMessages()) {
-            processBacklogMessages();
-        }
+        // 布隆过滤器每进入新一代，把未处理消息的bizId写入新一代
+        scheduleBloomRefresh();
     }
 
     /**
@@ -117,101 +444,568 @@ public abstract class AbstractDelayedQueueService {
     private void startMessageListener() {
         String queueName = getQueueName();
 
-        // 根据队列重要性调整检查频率
-        long checkInterval = getCheckInterval(); // 可以由子类定义
+        if (usePushListener()) {
+            isListening = true;
+            subscribeScheduleChannel();
+            // 每个分片挂起各自的take，分片间并行派发；到期条目由搬运任务按最早到期时间定时写入就绪队列
+            for (QueueShard shard : drainShards) {
+                scheduleTransfer(shard, 0);
+                awaitNextMessage(shard);
+            }
+            logger.info("注册队列推送监听器: {}, shards: {}", queueName, drainShards.size());
+            return;
+        }
 
-        listenerTaskFuture = listenerExecutor.scheduleWithFixedDelay(this::checkQueueMessages, 0, checkInterval, TimeUnit.MILLISECONDS);
         isListening = true;
-        logger.info("注册队列监听器: {}", queueName);
+        if (useSharedDispatcher()) {
+            // 所有队列的分片由共享派发器在一次脚本调用中检查
+            for (QueueShard shard : drainShards) {
+                dispatcher.register(shard);
+            }
+            logger.info("注册队列到共享派发器: {}, shards: {}", queueName, drainShards.size());
+            return;
+        }
+        // 每个分片独立的检查任务，在监听线程池上并行拉取；每次检查后按结果重新调度，
+        // 以 getCheckInterval() 为初始间隔，有消息时缩短、空闲时退避
+        for (QueueShard shard : drainShards) {
+            shard.intervalMillis = getCheckInterval();
+            schedulePoll(shard, 0);
+        }
+        logger.info("注册队列监听器: {}, shards: {}, adaptive: {}", queueName, drainShards.size(), useAdaptivePolling());
+    }
+
+    private void schedulePoll(QueueShard shard, long delayMillis) {
+        if (!isListening) {
+            return;
+        }
+        try {
+            shard.listenerTaskFuture = listenerExecutor.schedule(() -> pollShard(shard), delayMillis, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            logger.info("监听线程池已关闭，停止检查, queue: {}", shard.name);
+        }
     }
 
+    private void pollShard(QueueShard shard) {
+        int pulled = 0;
+        try {
+            pulled = checkQueueMessages(shard);
+        } finally {
+            schedulePoll(shard, nextInterval(shard, pulled));
+        }
+    }
 
     /**
-     * 恢复未处理消息
+     * 按本次检查结果计算下次检查间隔：取满一批时降到下限，取到部分时减半，
+     * 空闲或异常时加倍直至上限，但不晚于分片中最早一条未到期消息的到期时间；
+     * 背压暂停期间按初始间隔复查执行器占用率（不访问Redis）
+     *
+     * @param pulled 本次拉取的消息数，负数表示因背压暂停未拉取
      */
-    private void recoverUnprocessedMessages() {
-        List<DelayedMessage> messages = delayedMessageService.findUnprocessedMessages();
-        LocalDateTime now = LocalDateTime.now();
+    private long nextInterval(QueueShard shard, int pulled) {
+        long baseInterval = getCheckInterval();
+        if (!useAdaptivePolling()) {
+            return baseInterval;
+        }
+        long minInterval = Math.min(adaptiveMinIntervalMillis, baseInterval);
+        long maxInterval = Math.max(adaptiveMaxIntervalMillis, baseInterval);
+        long interval;
+        if (pulled < 0) {
+            return baseInterval;
+        } else if (pulled >= Math.max(1, getBatchSize())) {
+            interval = minInterval;
+        } else if (pulled > 0) {
+            interval = Math.max(minInterval, shard.intervalMillis / 2);
+        } else {
+            interval = Math.min(maxInterval, Math.max(1, shard.intervalMillis) * 2);
+            if (interval > minInterval) {
+                interval = Math.max(minInterval, Math.min(interval, millisUntilNextDue(shard)));
+            }
+        }
+        shard.intervalMillis = interval;
+        return interval;
+    }
 
-        for (DelayedMessage message : messages) {
-            long delay = Duration.between(now, message.getExpireTime()).getSeconds();
-            if (delay <= 0) {
-                // 过期消息直接处理
-                if (!queue.contains(message.getMessageId())) {
-                    queue.offer(message.getMessageId());
-                    logger.info("恢复已过期消息，立即处理，queue: {}, messageId: {}", getQueueName(), message.getMessageId());
+    /**
+     * 分片中最早一条未到期消息距到期的毫秒数，取自最近一次搬运的返回值，没有未到期消息时返回 Long.MAX_VALUE
+     */
+    private long millisUntilNextDue(QueueShard shard) {
+        long nextDue = shard.nextDueMillis;
+        return nextDue == Long.MAX_VALUE ? Long.MAX_VALUE : nextDue - System.currentTimeMillis();
+    }
+
+    /**
+     * 取出的条目须在该时间前确认，否则由搬运脚本放回就绪队列
+     */
+    private long ackDeadline(long now) {
+        return now + TimeUnit.SECONDS.toMillis(ackTimeoutSeconds);
+    }
+
+    /**
+     * 单个分片的到期条目搬运，并从就绪队列最多取出 limit 条（0表示只搬运），取出的条目写入待确认集合
+     *
+     * @return 取出的条目，同时更新分片的最早到期时间
+     */
+    private List<String> transfer(QueueShard shard, int limit) {
+        List<Object> keys = new ArrayList<>(5);
+        TransferScript.addKeys(keys, shard.name);
+        long now = System.currentTimeMillis();
+        List<Object> result = redissonClient.getScript(transferCodec).eval(RScript.Mode.READ_WRITE, TransferScript.SCRIPT, RScript.ReturnType.MULTI, keys,
+                now, Math.max(1, transferBatchSize), ackDeadline(now), limit);
+        shard.nextDueMillis = TransferScript.nextDue(result, 0);
+        return TransferScript.entries(result, 0);
+    }
+
+    /**
+     * 推送模式：搬运分片中已到期的条目，并在剩余条目最早到期时再次执行；调度集合为空时不再调度，
+     * 之后写入的条目由写入节点发布的调度通知唤醒（见 {@link #armTransfer}），空闲队列不产生Redis请求
+     */
+    private void transferShard(QueueShard shard) {
+        synchronized (shard) {
+            shard.transferTaskFuture = null;
+            shard.nextTransferAt = Long.MAX_VALUE;
+        }
+        long delayMillis;
+        try {
+            transfer(shard, 0);
+            delayMillis = Math.max(0, millisUntilNextDue(shard));
+        } catch (Exception e) {
+            logger.error("搬运到期消息异常, queue: {}", shard.name, e);
+            delayMillis = getCheckInterval();
+        }
+        if (delayMillis != Long.MAX_VALUE) {
+            scheduleTransfer(shard, delayMillis);
+        }
+    }
+
+    /**
+     * 推送模式：订阅队列的调度通知；订阅建立（含断线重连）后立即搬运所有分片，
+     * 补齐订阅中断期间错过的通知，并从搬运结果得到最早到期时间
+     */
+    private void subscribeScheduleChannel() {
+        scheduleTopic = redissonClient.getTopic(RedisKeys.scheduleChannel(getQueueName()), StringCodec.INSTANCE);
+        scheduleListenerId = scheduleTopic.addListener(String.class, (channel, message) -> onScheduleNotified(message));
+        scheduleStatusListenerId = scheduleTopic.addListener(new StatusListener() {
+            @Override
+            public void onSubscribe(String channel) {
+                for (QueueShard shard : drainShards) {
+                    scheduleTransfer(shard, 0);
                 }
+            }
+
+            @Override
+            public void onUnsubscribe(String channel) {
+            }
+        });
+    }
+
+    private void onScheduleNotified(String message) {
+        try {
+            int separator = message.indexOf(',');
+            long dueMillis = Long.parseLong(message.substring(0, separator));
+            String shardName = message.substring(separator + 1);
+            for (QueueShard shard : drainShards) {
+                if (shard.name.equals(shardName)) {
+                    if (dueMillis < shard.nextTransferAt) {
+                        scheduleTransfer(shard, Math.max(0, dueMillis - System.currentTimeMillis()));
+                    }
+                    return;
+                }
+            }
+        } catch (RuntimeException e) {
+            logger.warn("处理调度通知失败, queue: {}, message: {}", getQueueName(), message, e);
+        }
+    }
+
+    /**
+     * 调度分片的下一次搬运，已有更早的调度时保留原调度，保证每个分片只有一个待执行的搬运任务
+     */
+    private void scheduleTransfer(QueueShard shard, long delayMillis) {
+        if (!isListening) {
+            return;
+        }
+        synchronized (shard) {
+            long transferAt = System.currentTimeMillis() + delayMillis;
+            ScheduledFuture<?> scheduled = shard.transferTaskFuture;
+            if (scheduled != null && !scheduled.isDone()) {
+                if (shard.nextTransferAt <= transferAt || !scheduled.cancel(false)) {
+                    return;
+                }
+            }
+            try {
+                shard.nextTransferAt = transferAt;
+                shard.transferTaskFuture = listenerExecutor.schedule(() -> transferShard(shard), delayMillis, TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException e) {
+                logger.info("监听线程池已关闭，停止搬运, queue: {}", shard.name);
+            }
+        }
+    }
+
+    /**
+     * 写入调度集合，到期时间早于已调度的搬运/检查时间时提前（推送模式和共享派发器）
+     */
+    private void scheduleEntry(QueueShard shard, String entry, long dueMillis) {
+        await(shard.schedule.addAsync(dueMillis, entry));
+        armTransfer(shard, dueMillis);
+    }
+
+    /**
+     * 推送模式下早于本节点下一次搬运的到期时间同时发布到调度通知通道：各节点收到后按同样的规则提前搬运，
+     * 因此各节点的下一次搬运都不晚于全局最早的到期时间，晚于它的写入无需发布。发布异步进行，
+     * 失败时本节点的定时搬运照常执行
+     */
+    private void armTransfer(QueueShard shard, long dueMillis) {
+        if (usePushListener()) {
+            if (dueMillis < shard.nextTransferAt) {
+                scheduleTransfer(shard, Math.max(0, dueMillis - System.currentTimeMillis()));
+                scheduleTopic.publishAsync(dueMillis + "," + shard.name).onComplete((receivers, e) -> {
+                    if (e != null) {
+                        logger.warn("发布调度通知失败, queue: {}", shard.name, e);
+                    }
+                });
+            }
+        } else if (useSharedDispatcher()) {
+            dispatcher.wakeAt(dueMillis);
+        }
+    }
+
+    /**
+     * 等待Redisson异步调用的结果，处理任务中的Redis调用都经由此方法：结果转交 CompletableFuture 后等待（LockSupport.park），
+     * 虚拟线程等待期间可卸载；Redisson 3.13 的同步API等待Netty promise（synchronized + Object.wait），会钉住载体线程
+     */
+    private static <T> T await(RFuture<T> future) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        future.onComplete((value, e) -> {
+            if (e != null) {
+                result.completeExceptionally(e);
             } else {
-                // 未过期消息添加到延时队列（即使已存在也不影响）
-                delayedQueue.offer(message.getMessageId(), delay, TimeUnit.SECONDS);
-                logger.info("恢复未处理消息，queue: {}, messageId: {}, delay: {}s", getQueueName(), message.getMessageId(), delay);
+                result.complete(value);
             }
+        });
+        try {
+            return result.join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
         }
     }
 
+    private static long toEpochMilli(LocalDateTime time) {
+        return time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
     /**
-     * 检查队列中的消息（增强版）
+     * 是否需要暂停拉取：执行器已无剩余容量，或占用率达到高水位
      */
-    private void checkQueueMessages() {
-        // 避免在关闭过程中继续检查
+    private boolean isSaturated() {
+        int available = availableSlots();
+        if (available <= 0) {
+            return true;
+        }
+        int used = processorExecutor.getActiveCount() + processorExecutor.getQueueSize();
+        return used >= highWaterMark * (used + available);
+    }
+
+
+    /**
+     * 推送模式：挂起一个异步阻塞take，消息到期时立即唤醒，空闲时不产生轮询请求
+     */
+    private void awaitNextMessage(QueueShard shard) {
         if (!isListening) {
             return;
         }
+        shard.paused = isSaturated();
+        if (shard.paused) {
+            // 处理执行器达到高水位，暂不取消息，让消息留在Redis中
+            listenerExecutor.schedule(() -> awaitNextMessage(shard), getCheckInterval(), TimeUnit.MILLISECONDS);
+            return;
+        }
+        RFuture<String> future = shard.blockingQueue.takeAsync();
+        shard.pendingTakeFuture = future;
+        future.onComplete((messageId, e) -> {
+            if (!isListening) {
+                // 关闭过程中取到的消息放回队列，由其他节点或下次启动处理
+                if (messageId != null) {
+                    shard.queue.offer(messageId);
+                }
+                return;
+            }
+            if (e != null) {
+                logger.error("等待队列消息异常, queue: {}", shard.name, e);
+                // 连接异常时按检查间隔延迟后重新挂起，避免空转
+                listenerExecutor.schedule(() -> awaitNextMessage(shard), getCheckInterval(), TimeUnit.MILLISECONDS);
+                return;
+            }
+            // 回调运行在Redisson的IO线程上，切换到监听线程池派发，受监听线程数上限约束
+            listenerExecutor.execute(() -> onMessageArrived(shard, messageId));
+        });
+    }
 
+    /**
+     * 推送模式：派发唤醒消息及同时到期的其余消息，然后重新挂起take。
+     * take 取出的条目先写入待确认集合再派发（写入前宕机的这一条只能由重启恢复补写），其余条目由搬运脚本取出并写入；
+     * 确认截止时间经 {@link #armTransfer} 安排搬运，本节点宕机时由其他节点放回就绪队列
+     */
+    private void onMessageArrived(QueueShard shard, String entry) {
         try {
-            // 使用带超时的poll避免阻塞
-            String messageId = blockingQueue.poll(10, TimeUnit.MILLISECONDS);
-            if (messageId != null) {
-                // 检查线程池是否已关闭
-                if (!processorExecutor.getThreadPoolExecutor().isShutdown()) {
-                    // 提交到处理线程池
-                    processorExecutor.submit(new MessageProcessorTask(messageId));
+            long deadline = ackDeadline(System.currentTimeMillis());
+            await(shard.inflight.addAsync(deadline, entry));
+            dispatchMessage(shard, entry);
+            int limit = Math.min(getBatchSize(), availableSlots()) - 1;
+            if (limit > 0) {
+                for (String dueEntry : transfer(shard, limit)) {
+                    dispatchMessage(shard, dueEntry);
+                }
+            }
+            armTransfer(shard, deadline);
+        } catch (Exception e) {
+            logger.error("派发队列消息异常, queue: {}", shard.name, e);
+        } finally {
+            awaitNextMessage(shard);
+        }
+    }
+
+    /**
+     * 恢复本主题全部未处理消息：未到期的按过期时间写入调度集合；已到期的（宕机期间到期、Redis数据丢失、
+     * 取出后抢占前宕机）开启积压处理时整页直接写入就绪队列，否则以原过期时间写入调度集合，由下一次搬运派发
+     */
+    private void recoverUnprocessedMessages() {
+        boolean backlogToReady = shouldProcessBacklogMessages();
+        long lastId = 0;
+        int total = 0;
+        int overdue = 0;
+        List<DelayedMessage> messages;
+        do {
+            // 按主题过滤，按id游标分页流式恢复，内存占用与分页大小成正比
+            messages = delayedMessageService.findUnprocessedMessages(getTopic(), lastId, recoveryPageSize);
+            if (messages.isEmpty()) {
+                break;
+            }
+            long nowMillis = System.currentTimeMillis();
+            // 条目已在调度集合中时只更新score，重启恢复不会产生重复条目
+            List<DelayedMessage> scheduled = new ArrayList<>(messages.size());
+            List<RFuture<Boolean>> futures = new ArrayList<>(messages.size());
+            Map<QueueShard, List<String>> readyEntries = new HashMap<>();
+            for (DelayedMessage message : messages) {
+                long dueMillis = toEpochMilli(message.getExpireTime());
+                if (dueMillis <= nowMillis) {
+                    overdue++;
+                    if (backlogToReady) {
+                        readyEntries.computeIfAbsent(shardOf(message.getMessageId()), s -> new ArrayList<>()).add(toQueueEntry(message));
+                        continue;
+                    }
+                }
+                scheduled.add(message);
+                futures.add(shardOf(message.getMessageId()).schedule.addAsync(dueMillis, toQueueEntry(message)));
+            }
+            // 已到期消息按分片整页一次写入就绪队列；重复条目由处理时的状态检查/抢占过滤
+            readyEntries.forEach((shard, shardEntries) -> shard.queue.addAll(shardEntries));
+            if (bloomFilter != null) {
+                // 未处理消息的bizId写入当前代，延时超过去重窗口的消息重启后仍可去重
+                List<String> checkKeys = new ArrayList<>(messages.size());
+                for (DelayedMessage message : messages) {
+                    checkKeys.add(message.getTopic() + ":" + message.getBizId());
+                }
+                bloomFilter.addAll(checkKeys);
+            }
+            // 整页异步写入后统一等待，避免逐条往返；每个分片按本页最早的到期时间提前一次搬运
+            Map<QueueShard, Long> earliestDue = new HashMap<>();
+            for (int i = 0; i < futures.size(); i++) {
+                RFuture<Boolean> future = futures.get(i);
+                future.awaitUninterruptibly();
+                DelayedMessage message = scheduled.get(i);
+                if (future.isSuccess()) {
+                    earliestDue.merge(shardOf(message.getMessageId()), toEpochMilli(message.getExpireTime()), Math::min);
                 } else {
-                    logger.warn("处理线程池已关闭，丢弃消息: {}", messageId);
+                    logger.warn("恢复未处理消息失败，queue: {}, messageId: {}", getQueueName(), message.getMessageId(), future.cause());
+                }
+            }
+            earliestDue.forEach(this::armTransfer);
+            lastId = messages.get(messages.size() - 1).getId();
+            total += messages.size();
+        } while (messages.size() == recoveryPageSize);
+        logger.info("恢复未处理消息完成，queue: {}, count: {}, overdue: {}", getQueueName(), total, overdue);
+    }
+
+    private void scheduleBloomRefresh() {
+        if (bloomFilter == null || !isListening) {
+            return;
+        }
+        try {
+            // 稍晚于窗口边界触发，保证读到的是新一代的序号
+            bloomRefreshFuture = listenerExecutor.schedule(this::refreshBloomFilter, bloomFilter.millisUntilNextWindow() + 1000, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            logger.info("监听线程池已关闭，停止回写布隆过滤器, queue: {}", getQueueName());
+        }
+    }
+
+    /**
+     * 布隆过滤器进入新一代后，把本主题未处理消息的bizId写入新一代：键只在写入的代中保留 窗口 x (代数+1)，
+     * 延时更长的消息若不回写，等待期间会从过滤器中老化，重复提交跳过缓存和数据库检查直接入队。
+     * 各节点在同一时刻轮换，按代抢占Redis标记，每个主题每代只由一个节点按id游标分页扫描
+     */
+    private void refreshBloomFilter() {
+        try {
+            long window = bloomFilter.currentWindow();
+            RBucket<String> marker = redissonClient.getBucket(RedisKeys.bloomRefresh(getQueueName(), window));
+            if (!marker.trySet(String.valueOf(System.currentTimeMillis()), bloomFilter.getWindowMillis(), TimeUnit.MILLISECONDS)) {
+                return;
+            }
+            long lastId = 0;
+            int total = 0;
+            List<DelayedMessage> messages;
+            do {
+                messages = delayedMessageService.findUnprocessedMessages(getTopic(), lastId, recoveryPageSize);
+                if (messages.isEmpty()) {
+                    break;
+                }
+                List<String> checkKeys = new ArrayList<>(messages.size());
+                for (DelayedMessage message : messages) {
+                    checkKeys.add(message.getTopic() + ":" + message.getBizId());
                 }
+                bloomFilter.addAll(checkKeys);
+                lastId = messages.get(messages.size() - 1).getId();
+                total += messages.size();
+            } while (isListening && messages.size() == recoveryPageSize);
+            logger.info("布隆过滤器新一代已回写未处理消息，queue: {}, window: {}, count: {}", getQueueName(), window, total);
+        } catch (Exception e) {
+            logger.error("回写布隆过滤器失败，queue: {}", getQueueName(), e);
+        } finally {
+            scheduleBloomRefresh();
+        }
+    }
+
+    /**
+     * 检查队列中的消息（增强版）
+     *
+     * @return 拉取的消息数，因背压暂停未拉取时返回-1
+     */
+    private int checkQueueMessages(QueueShard shard) {
+        // 避免在关闭过程中继续检查
+        if (!isListening) {
+            return 0;
+        }
+
+        try {
+            // 执行器达到高水位时本次不拉取，消息留在Redis中；否则按剩余容量限流
+            shard.paused = isSaturated();
+            if (shard.paused) {
+                return -1;
+            }
+            int limit = Math.min(getBatchSize(), availableSlots());
+            // 到期条目搬运与拉取在一次脚本调用中完成：先把调度集合中已到期的条目搬入就绪队列，再最多取出limit条
+            List<String> messageIds = transfer(shard, limit);
+            for (String messageId : messageIds) {
+                dispatchMessage(shard, messageId);
             }
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
-            logger.info("检查队列消息被中断, queue: {}", getQueueName());
+            return messageIds.size();
         } catch (Exception e) {
-            logger.error("检查队列消息异常, queue: {}", getQueueName(), e);
+            logger.error("检查队列消息异常, queue: {}", shard.name, e);
         }
+        return 0;
+    }
+
+    /**
+     * 提交消息到处理线程池
+     */
+    private void dispatchMessage(QueueShard shard, String entry) {
+        // 检查线程池是否已关闭
+        if (!processorExecutor.isShutdown()) {
+            try {
+                // 提交到处理线程池
+                processorExecutor.execute(new MessageProcessorTask(shard, entry));
+            } catch (RejectedExecutionException e) {
+                // 线程池已满，放回Redis队列等待下次拉取，不在监听线程上执行
+                shard.queue.offer(entry);
+                shard.ack(entry);
+                logger.warn("处理线程池已满，消息放回队列, queue: {}, entry: {}", shard.name, entry);
+            }
+        } else {
+            logger.warn("处理线程池已关闭，条目在确认超时后重新投递: {}", entry);
+        }
+    }
+
+    /**
+     * 消息所在的写入分片，按消息ID哈希
+     */
+    private QueueShard shardOf(String messageId) {
+        return shards.size() == 1 ? shards.get(0) : shards.get(Math.floorMod(messageId.hashCode(), shards.size()));
     }
 
     /**
-     * 消息处理任务
+     * 处理执行器剩余可接收的任务数
+     */
+    private int availableSlots() {
+        return processorExecutor.availableSlots();
+    }
+
+    /**
+     * 在当前线程同步处理一个队列条目，与监听器派发的处理任务一致，供基准测试使用
+     */
+    void processEntry(String entry) {
+        new MessageProcessorTask(null, entry).run();
+    }
+
+    /**
+     * 消息处理任务：处理到可持久化的结果（已抢占、已终结或已重新调度）后确认条目，异常退出时不确认，
+     * 条目在确认超时后重新投递
      */
     private class MessageProcessorTask implements Runnable {
+        // 条目所在的分片，不经过待确认集合时（基准测试）为null
+        private final QueueShard shard;
+        private final String entry;
         private final String messageId;
+        // 内联模式下随队列条目携带的消息内容，纯ID条目为null
+        private final DelayedMessage inlineMessage;
+
+        public MessageProcessorTask(QueueShard shard, String entry) {
+            this.shard = shard;
+            this.entry = entry;
+            this.inlineMessage = DelayedMessageCodec.decode(entry);
+            this.messageId = inlineMessage != null ? inlineMessage.getMessageId() : entry;
+        }
 
-        public MessageProcessorTask(String messageId) {
-            this.messageId = messageId;
+        private void ack() {
+            if (shard != null) {
+                shard.ack(entry);
+            }
         }
 
         @Override
         public void run() {
-            String lockName = String.format("delayed_queue_processor_lock:%s:%s", getQueueName(), messageId);
+            if (useLockFreeClaim()) {
+                // 无锁抢占模式：所有权由数据库条件更新保证
+                try {
+                    processMessage(messageId, inlineMessage, this::ack);
+                } catch (Exception e) {
+                    logger.error("处理消息异常, queue: {}, messageId: {}", getQueueName(), messageId, e);
+                }
+                return;
+            }
+
+            String lockName = RedisKeys.processorLock(getQueueName(), messageId);
             RLock lock = redissonClient.getLock(lockName);
+            // 以任务线程ID异步加锁、解锁，等待方式见 await
+            long threadId = Thread.currentThread().getId();
             boolean acquired = false;
 
             try {
                 // 使用看门狗机制：不设置租约时间（传-1），Redisson会自动续期
-                acquired = lock.tryLock(lockWaitTimeoutSeconds, -1, TimeUnit.SECONDS);
+                long lockStart = System.nanoTime();
+                acquired = await(lock.tryLockAsync(lockWaitTimeoutSeconds, -1, TimeUnit.SECONDS, threadId));
+                metrics.lockWait().record(System.nanoTime() - lockStart, TimeUnit.NANOSECONDS);
                 if (acquired) {
-                    processMessage(messageId);
+                    processMessage(messageId, inlineMessage, this::ack);
                 } else {
+                    // 锁由处理同一消息的其他任务持有，由其负责该消息
                     logger.warn("获取分布式锁超时, queue: {}, messageId: {}", getQueueName(), messageId);
+                    ack();
                 }
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
-                logger.warn("获取分布式锁被中断, queue: {}, messageId: {}", getQueueName(), messageId);
             } catch (Exception e) {
                 logger.error("获取分布式锁异常, queue: {}, messageId: {}", getQueueName(), messageId, e);
             } finally {
-                // 确保只有持有锁的线程才能释放锁
-                if (acquired && lock.isHeldByCurrentThread()) {
+                // 只释放本任务持有的锁
+                if (acquired) {
                     try {
-                        lock.unlock();
+                        await(lock.unlockAsync(threadId));
                     } catch (Exception e) {
                         logger.warn("释放分布式锁异常, queue: {}, messageId: {}", getQueueName(), messageId, e);
                     }
@@ -225,7 +1019,7 @@ public abstract class AbstractDelayedQueueService {
     public String addDelayedMessage(String content, @NonNull LocalDateTime expireTime, String topic, String bizId) {
         LocalDateTime now = LocalDateTime.now();
         if (expireTime.isBefore(now)) {
-            logger.warn("消息已过期, queue: {}, expireTime: {}", queue, topic);
+            logger.warn("消息已过期, queue: {}, expireTime: {}", getQueueName(), expireTime);
             return null;
         }
 
@@ -236,12 +1030,23 @@ public abstract class AbstractDelayedQueueService {
 
             // 第一层：布隆过滤器快速过滤（极低内存占用）
             if (bloomFilter.contains(checkKey)) {
-                // 第二层：Redis缓存精确检查（避免大部分数据库查询）
-                String cacheKey = "delayed_msg_cache:" + checkKey;
+                // 第二层：本地近端缓存，重复提交的热点bizId无需访问Redis和数据库
+                String nearResult = getNearCached(checkKey);
+                if (nearResult != null) {
+                    if ("EXISTS".equals(nearResult)) {
+                        logger.warn("消息已存在（本地缓存命中），bizId: {}", bizId);
+                        throw new RuntimeException("消息已存在");
+                    }
+                    return nearResult;
+                }
+
+                // 第三层：Redis缓存精确检查（避免大部分数据库查询）
+                String cacheKey = RedisKeys.dedupeCache(checkKey);
                 RBucket<String> cacheBucket = redissonClient.getBucket(cacheKey);
                 String cacheResult = cacheBucket.get();
 
                 if (cacheResult != null) {
+                    putNearCached(checkKey, cacheResult);
                     if ("EXISTS".equals(cacheResult)) {
                         logger.warn("消息已存在（缓存命中），bizId: {}", bizId);
                         throw new RuntimeException("消息已存在");
@@ -249,11 +1054,12 @@ public abstract class AbstractDelayedQueueService {
                     return cacheResult; // 返回已存在的messageId
                 }
 
-                // 第三层：数据库精确查询（最终确认）
+                // 第四层：数据库精确查询（最终确认）
                 List<DelayedMessage> list = delayedMessageService.findByBizId(bizId, topic);
                 if (CollUtil.isNotEmpty(list)) {
                     // 更新缓存
                     cacheBucket.set("EXISTS", 5, TimeUnit.MINUTES);
+                    putNearCached(checkKey, "EXISTS");
                     logger.warn("消息已存在，bizId: {}", bizId);
                     throw new RuntimeException("消息已存在");
                 }
@@ -264,12 +1070,14 @@ public abstract class AbstractDelayedQueueService {
 
 
         if (expireTime.isBefore(now)) {
-            logger.warn("消息已过期, queue: {}, expireTime: {}", queue, topic);
+            logger.warn("消息已过期, queue: {}, expireTime: {}", getQueueName(), expireTime);
             return null;
         }
         String messageId = idManager.getId();
 
-        long delay = Duration.between(now, expireTime).getSeconds();
+        // 过期时间截断到毫秒，与数据库 datetime(3) 和内联条目的编码一致，取消/改期时可按数据库记录重建条目
+        expireTime = expireTime.truncatedTo(ChronoUnit.MILLIS);
+        long delay = Duration.between(now, expireTime).toMillis();
 
         // 创建消息实体
         DelayedMessage message = new DelayedMessage(messageId, content, expireTime, topic, bizId);
@@ -285,22 +1093,25 @@ public abstract class AbstractDelayedQueueService {
         // 添加重试机制
         while (retryCount > 0 && !queueAdded) {
             try {
-                if (expireTime.isEqual(now)) {
-                    logger.warn("消息到期，立即触发, queue: {}, expireTime: {}", queue, topic);
-                    processMessage(messageId);
+                if (delay <= 0) {
+                    logger.warn("消息到期，立即触发, queue: {}, expireTime: {}", getQueueName(), expireTime);
+                    processMessage(messageId, message, NO_ACK);
                     queueAdded = true;
                 } else {
-                    // 添加到延时队列
-                    delayedQueue.offer(messageId, delay, TimeUnit.SECONDS);
+                    // 添加到调度集合
+                    scheduleEntry(shardOf(messageId), toQueueEntry(message), toEpochMilli(expireTime));
                     queueAdded = true;
-                    logger.info("添加延时消息成功，queue: {}, messageId: {}, delay: {} {}", getQueueName(), messageId, delay, TimeUnit.SECONDS);
+                    logger.info("添加延时消息成功，queue: {}, messageId: {}, delay: {} {}", getQueueName(), messageId, delay, TimeUnit.MILLISECONDS);
                 }
             } catch (Exception e) {
                 retryCount--;
                 logger.warn("添加消息到延时队列失败，剩余重试次数: {}, messageId: {}", retryCount, messageId, e);
                 if (retryCount == 0) {
-                    // 重试失败，回滚数据库操作
+                    // 重试失败，回滚数据库操作，并撤销其他节点可能已缓存的"已存在"判定
                     delayedMessageService.deleteByMessageId(messageId);
+                    if (!repeatedMessage()) {
+                        invalidateDedupe(checkKey);
+                    }
                     logger.error("添加消息到延时队列最终失败，已回滚数据库记录，messageId: {}", messageId, e);
                     return null;
                 }
@@ -314,78 +1125,505 @@ public abstract class AbstractDelayedQueueService {
             }
         }
 
+        if (queueAdded) {
+            metrics.recordEnqueued(1);
+            if (!repeatedMessage()) {
+                // 客户端重试同一bizId时在本节点直接判定为重复
+                putNearCached(checkKey, "EXISTS");
+            }
+        }
         return messageId;
     }
 
     /**
-     * 处理消息
+     * 批量添加延时消息：去重缓存检查和入队各走一次RBatch，数据库一次多行insert，
+     * 已到期消息直接进入就绪队列，其余写入调度集合
      *
-     * @param messageId 消息ID
+     * @param requests 请求项
+     * @return 与请求顺序一致的单项结果
      */
-    private void processMessage(String messageId) {
-        // 从数据库获取消息详情
-        DelayedMessage message = delayedMessageService.findByMessageId(messageId);
-        if (message == null) {
-            logger.warn("消息不存在，queue: {}, messageId: {}", getQueueName(), messageId);
-            return;
+    public List<DelayedMessageResult> addDelayedMessages(List<DelayedMessageRequest> requests) {
+        LocalDateTime now = LocalDateTime.now();
+        DelayedMessageResult[] results = new DelayedMessageResult[requests.size()];
+        // 待写入的请求下标
+        List<Integer> accepted = new ArrayList<>();
+        Set<String> seenKeys = new HashSet<>();
+
+        for (int i = 0; i < requests.size(); i++) {
+            DelayedMessageRequest request = requests.get(i);
+            if (request.getExpireTime() == null || request.getExpireTime().isBefore(now)) {
+                results[i] = DelayedMessageResult.fail(request.getBizId(), "消息已过期");
+                continue;
+            }
+            if (!repeatedMessage() && !seenKeys.add(request.getTopic() + ":" + request.getBizId())) {
+                results[i] = DelayedMessageResult.fail(request.getBizId(), "消息重复");
+                continue;
+            }
+            accepted.add(i);
         }
 
-        // 检查消息状态，避免重复处理
-        if (message.getStatus() == 1) {
-            logger.info("消息已处理，queue: {}, messageId: {}, status: {}", getQueueName(), messageId, message.getStatus());
-            return;
+        // 不允许重复消息：布隆过滤器 → 批量缓存检查 → 批量数据库检查
+        if (!repeatedMessage() && !accepted.isEmpty()) {
+            List<Integer> bloomHits = new ArrayList<>();
+            for (Integer i : accepted) {
+                DelayedMessageRequest request = requests.get(i);
+                if (bloomFilter.contains(request.getTopic() + ":" + request.getBizId())) {
+                    bloomHits.add(i);
+                }
+            }
+            // 本地近端缓存命中的不再访问Redis
+            bloomHits.removeIf(i -> {
+                DelayedMessageRequest request = requests.get(i);
+                String nearResult = getNearCached(request.getTopic() + ":" + request.getBizId());
+                if (nearResult == null) {
+                    return false;
+                }
+                results[i] = "EXISTS".equals(nearResult)
+                        ? DelayedMessageResult.fail(request.getBizId(), "消息已存在")
+                        : new DelayedMessageResult(request.getBizId(), nearResult, true, "消息已存在");
+                return true;
+            });
+            if (!bloomHits.isEmpty()) {
+                RBatch cacheBatch = redissonClient.createBatch();
+                List<RFuture<String>> cacheFutures = new ArrayList<>(bloomHits.size());
+                for (Integer i : bloomHits) {
+                    DelayedMessageRequest request = requests.get(i);
+                    RBucketAsync<String> bucket = cacheBatch.getBucket(RedisKeys.dedupeCache(request.getTopic() + ":" + request.getBizId()));
+                    cacheFutures.add(bucket.getAsync());
+                }
+                cacheBatch.execute();
+
+                Map<String, List<Integer>> uncachedByTopic = new HashMap<>();
+                for (int j = 0; j < bloomHits.size(); j++) {
+                    Integer i = bloomHits.get(j);
+                    DelayedMessageRequest request = requests.get(i);
+                    String cacheResult = cacheFutures.get(j).getNow();
+                    if (cacheResult != null) {
+                        putNearCached(request.getTopic() + ":" + request.getBizId(), cacheResult);
+                    }
+                    if ("EXISTS".equals(cacheResult)) {
+                        results[i] = DelayedMessageResult.fail(request.getBizId(), "消息已存在");
+                    } else if (cacheResult != null) {
+                        results[i] = new DelayedMessageResult(request.getBizId(), cacheResult, true, "消息已存在");
+                    } else {
+                        uncachedByTopic.computeIfAbsent(request.getTopic(), k -> new ArrayList<>()).add(i);
+                    }
+                }
+
+                for (Map.Entry<String, List<Integer>> entry : uncachedByTopic.entrySet()) {
+                    Set<String> bizIds = new HashSet<>();
+                    for (Integer i : entry.getValue()) {
+                        bizIds.add(requests.get(i).getBizId());
+                    }
+                    Set<String> existing = new HashSet<>();
+                    for (DelayedMessage message : delayedMessageService.findByBizIds(bizIds, entry.getKey())) {
+                        existing.add(message.getBizId());
+                    }
+                    for (Integer i : entry.getValue()) {
+                        if (existing.contains(requests.get(i).getBizId())) {
+                            putNearCached(entry.getKey() + ":" + requests.get(i).getBizId(), "EXISTS");
+                            results[i] = DelayedMessageResult.fail(requests.get(i).getBizId(), "消息已存在");
+                        }
+                    }
+                }
+                accepted.removeIf(i -> results[i] != null);
+            }
         }
 
-        // 更新消息状态为处理中
-        if (!delayedMessageService.updateStatus(messageId, 2)) {
-            logger.warn("更新消息状态失败，queue: {}, messageId: {}", getQueueName(), messageId);
-            return;
+        if (accepted.isEmpty()) {
+            return Arrays.asList(results);
         }
 
+        // 一次多行insert保存所有消息
+        List<DelayedMessage> messages = new ArrayList<>(accepted.size());
+        for (Integer i : accepted) {
+            DelayedMessageRequest request = requests.get(i);
+            DelayedMessage message = new DelayedMessage(idManager.getId(), request.getContent(),
+                    request.getExpireTime().truncatedTo(ChronoUnit.MILLIS), request.getTopic(), request.getBizId());
+            message.setStatus(0);
+            messages.add(message);
+        }
         try {
-            // 记录处理开始时间
-            long processStartTime = System.currentTimeMillis();
+            delayedMessageService.saveAll(messages);
+        } catch (Exception e) {
+            logger.error("批量保存延时消息失败, queue: {}, size: {}", getQueueName(), messages.size(), e);
+            for (Integer i : accepted) {
+                results[i] = DelayedMessageResult.fail(requests.get(i).getBizId(), "保存消息失败");
+            }
+            return Arrays.asList(results);
+        }
+        if (!repeatedMessage()) {
+            List<String> checkKeys = new ArrayList<>(messages.size());
+            for (DelayedMessage message : messages) {
+                checkKeys.add(message.getTopic() + ":" + message.getBizId());
+            }
+            bloomFilter.addAll(checkKeys);
+        }
+
+        // 已到期消息直接进入就绪队列，其余消息写入调度集合，一次RBatch发送
+        RBatch offerBatch = redissonClient.createBatch();
+        Map<QueueShard, RQueueAsync<String>> readyQueues = new HashMap<>();
+        Map<QueueShard, RScoredSortedSetAsync<String>> schedules = new HashMap<>();
+        List<RFuture<?>> offerFutures = new ArrayList<>(messages.size());
+        long nowMillis = System.currentTimeMillis();
+        for (DelayedMessage message : messages) {
+            QueueShard shard = shardOf(message.getMessageId());
+            long dueMillis = toEpochMilli(message.getExpireTime());
+            if (dueMillis <= nowMillis) {
+                RQueueAsync<String> readyQueue = readyQueues.computeIfAbsent(shard, s -> offerBatch.getQueue(s.name, queueCodec));
+                offerFutures.add(readyQueue.offerAsync(toQueueEntry(message)));
+            } else {
+                RScoredSortedSetAsync<String> schedule = schedules.computeIfAbsent(shard, s -> offerBatch.getScoredSortedSet(s.schedule.getName(), queueCodec));
+                offerFutures.add(schedule.addAsync(dueMillis, toQueueEntry(message)));
+            }
+        }
+        offerBatch.executeAsync();
+
+        List<DelayedMessage> failedMessages = new ArrayList<>();
+        Map<QueueShard, Long> earliestDue = new HashMap<>();
+        for (int j = 0; j < messages.size(); j++) {
+            DelayedMessage message = messages.get(j);
+            Integer i = accepted.get(j);
+            RFuture<?> future = offerFutures.get(j);
+            future.awaitUninterruptibly();
+            if (future.isSuccess()) {
+                results[i] = DelayedMessageResult.success(message.getBizId(), message.getMessageId());
+                earliestDue.merge(shardOf(message.getMessageId()), toEpochMilli(message.getExpireTime()), Math::min);
+                metrics.recordEnqueued(1);
+                if (!repeatedMessage()) {
+                    putNearCached(message.getTopic() + ":" + message.getBizId(), "EXISTS");
+                }
+            } else {
+                failedMessages.add(message);
+                results[i] = DelayedMessageResult.fail(message.getBizId(), "添加到延时队列失败");
+                logger.warn("批量添加消息到延时队列失败, queue: {}, messageId: {}", getQueueName(), message.getMessageId(), future.cause());
+            }
+        }
+        earliestDue.forEach(this::armTransfer);
+        // 入队失败的消息回滚数据库记录
+        for (DelayedMessage message : failedMessages) {
+            delayedMessageService.deleteByMessageId(message.getMessageId());
+            if (!repeatedMessage()) {
+                invalidateDedupe(message.getTopic() + ":" + message.getBizId());
+            }
+        }
+        logger.info("批量添加延时消息完成，queue: {}, total: {}, accepted: {}, failed: {}", getQueueName(), requests.size(), messages.size(), failedMessages.size());
+        return Arrays.asList(results);
+    }
+
+    /**
+     * 查询本地近端缓存中的去重判定，未开启时返回null
+     */
+    private String getNearCached(String checkKey) {
+        if (dedupeNearCache == null) {
+            return null;
+        }
+        String result = dedupeNearCache.get(checkKey);
+        metrics.recordDedupeCache(result != null);
+        return result;
+    }
+
+    private void putNearCached(String checkKey, String result) {
+        if (dedupeNearCache != null) {
+            dedupeNearCache.put(checkKey, result);
+        }
+    }
+
+    /**
+     * 撤销"已存在"判定：删除Redis去重缓存，并通知所有节点删除本地近端缓存条目
+     */
+    private void invalidateDedupe(String checkKey) {
+        redissonClient.getBucket(RedisKeys.dedupeCache(checkKey)).delete();
+        if (dedupeNearCache != null) {
+            dedupeNearCache.invalidate(checkKey);
+        }
+    }
+
+    /**
+     * 获取写入Redis队列的条目：内联模式为紧凑序列化的消息，否则为消息ID
+     */
+    private String toQueueEntry(DelayedMessage message) {
+        return inlinePayload() ? DelayedMessageCodec.encode(message) : message.getMessageId();
+    }
+
+    /**
+     * 处理消息
+     *
+     * @param messageId     消息ID
+     * @param inlineMessage 已携带的消息内容，为null时从数据库获取
+     * @param ack           消息的后续处理不再依赖队列条目时调用：已抢占（之后由租约保证）、已终结或已重新调度
+     */
+    private void processMessage(String messageId, DelayedMessage inlineMessage, Runnable ack) {
+        DelayedMessage message;
+        // 过期时间晚于该时间的消息已被改期，旧条目不处理
+        LocalDateTime dueTime = LocalDateTime.now().plus(Duration.ofMillis(DUE_TOLERANCE_MILLIS));
+        if (useLockFreeClaim() || inlineMessage != null) {
+            // 条件状态迁移（0 → 2）抢占消息，影响行数即所有权，无需分布式锁
+            if (!metrics.dbClaim().record(() -> delayedMessageService.claim(messageId, dueTime, nextLeaseExpireTime()))) {
+                DelayedMessage current = delayedMessageService.findByMessageId(messageId);
+                if (current != null && current.getStatus() == 0 && current.getExpireTime().isAfter(dueTime)) {
+                    if (rescheduleEntry(current)) {
+                        ack.run();
+                    }
+                    return;
+                }
+                logger.info("消息已被抢占、已处理或已取消，queue: {}, messageId: {}", getQueueName(), messageId);
+                ack.run();
+                return;
+            }
+            ack.run();
+            // 内联模式直接使用队列条目携带的内容，数据库只用于状态迁移
+            message = inlineMessage != null ? inlineMessage : metrics.dbLookup().record(() -> delayedMessageService.findByMessageId(messageId));
+            if (message == null) {
+                logger.warn("消息不存在，queue: {}, messageId: {}", getQueueName(), messageId);
+                return;
+            }
+            message.setStatus(2);
+        } else {
+            // 从数据库获取消息详情
+            message = metrics.dbLookup().record(() -> delayedMessageService.findByMessageId(messageId));
+            if (message == null) {
+                logger.warn("消息不存在，queue: {}, messageId: {}", getQueueName(), messageId);
+                ack.run();
+                return;
+            }
+
+            // 检查消息状态，避免重复处理已完成、已转入死信或已取消的消息
+            if (message.getStatus() == 1 || message.getStatus() == 3 || message.getStatus() == 4) {
+                logger.info("消息已处理或已取消，queue: {}, messageId: {}, status: {}", getQueueName(), messageId, message.getStatus());
+                ack.run();
+                return;
+            }
+            if (message.getStatus() == 0 && message.getExpireTime().isAfter(dueTime)) {
+                if (rescheduleEntry(message)) {
+                    ack.run();
+                }
+                return;
+            }
+
+            // 更新消息状态为处理中，并带上租约到期时间；条件更新与取消、改期互斥
+            if (!delayedMessageService.acquireLease(messageId, dueTime, nextLeaseExpireTime())) {
+                logger.warn("更新消息状态失败，queue: {}, messageId: {}", getQueueName(), messageId);
+                ack.run();
+                return;
+            }
+            ack.run();
+        }
+        if (message.getExpireTime() != null) {
+            metrics.recordDispatchLag(Duration.between(message.getExpireTime(), LocalDateTime.now()).toMillis());
+        }
 
+        // 处理期间由续约任务延长租约，处理时间超过租约的消息不会被回收
+        leasedMessages.put(messageId, System.currentTimeMillis());
+        // 记录处理开始时间
+        long processStartTime = System.nanoTime();
+        try {
             // 执行业务逻辑
             handleMessage(message);
 
-            // 记录处理结束时间
-            long processEndTime = System.currentTimeMillis();
+            // 记录处理耗时
+            long processNanos = System.nanoTime() - processStartTime;
+            metrics.recordHandler(processNanos, true);
 
-            // 更新消息状态为已处理
-            delayedMessageService.updateStatus(messageId, 1);
-            logger.info("处理延时消息成功，queue: {}, messageId: {}, 处理耗时: {}ms", getQueueName(), messageId, (processEndTime - processStartTime));
+            // 更新消息状态为已处理，持久化后任务才结束
+            markProcessed(messageId);
+            logger.info("处理延时消息成功，queue: {}, messageId: {}, 处理耗时: {}ms", getQueueName(), messageId, TimeUnit.NANOSECONDS.toMillis(processNanos));
         } catch (Exception e) {
-            // 处理失败，恢复状态为未处理，便于重试
-            delayedMessageService.updateStatus(messageId, 0);
+            metrics.recordHandler(System.nanoTime() - processStartTime, false);
             logger.error("处理延时消息失败，queue: {}, messageId: {}", getQueueName(), messageId, e);
+            // 处理失败，按退避时间重新写入延时队列，超过最大尝试次数转入死信队列
+            retryOrDeadLetter(message);
+        } finally {
+            leasedMessages.remove(messageId);
         }
     }
 
     /**
-     * 处理积压消息（服务启动时调用）
+     * 条目早于消息当前的过期时间到达（消息已改期，或节点间时钟偏差）：按当前过期时间重新写入调度集合，
+     * 条目与改期时写入的一致，已存在时只更新score
+     *
+     * @return 是否写入成功，失败时不确认原条目，确认超时后重新投递
      */
-    private void processBacklogMessages() {
-        List<DelayedMessage> messages = delayedMessageService.findPendingMessages(LocalDateTime.now());
-        for (DelayedMessage message : messages) {
-            // 检查消息是否已存在于队列中，避免重复添加
-            if (!queue.contains(message.getMessageId()) && !delayedQueue.contains(message.getMessageId())) {
-                queue.offer(message.getMessageId());
-                logger.info("处理积压消息，queue: {}, messageId: {}", getQueueName(), message.getMessageId());
+    private boolean rescheduleEntry(DelayedMessage message) {
+        try {
+            scheduleEntry(shardOf(message.getMessageId()), toQueueEntry(message), toEpochMilli(message.getExpireTime()));
+            logger.info("消息未到期，按当前过期时间重新调度，queue: {}, messageId: {}, expireTime: {}", getQueueName(), message.getMessageId(), message.getExpireTime());
+            return true;
+        } catch (Exception e) {
+            logger.error("重新调度未到期消息失败，queue: {}, messageId: {}", getQueueName(), message.getMessageId(), e);
+            return false;
+        }
+    }
+
+    private LocalDateTime nextLeaseExpireTime() {
+        return LocalDateTime.now().plusSeconds(getLeaseSeconds());
+    }
+
+    /**
+     * 标记处理完成：开启写后缓冲时等待所在批次提交，批次失败时改为逐条更新
+     */
+    private void markProcessed(String messageId) {
+        if (statusBuffer == null) {
+            delayedMessageService.updateStatus(messageId, 1);
+            return;
+        }
+        try {
+            statusBuffer.markProcessed(messageId).join();
+        } catch (CompletionException e) {
+            delayedMessageService.updateStatus(messageId, 1);
+        }
+    }
+
+    /**
+     * 处理失败后的重试调度：数据库记录失败次数和下次重试时间后，按退避时间重新写入消息所在分片的调度集合，
+     * 无需等待重启恢复扫描全表。写入延时队列失败时消息保持未处理状态，由重启恢复按新的过期时间补写
+     */
+    private void retryOrDeadLetter(DelayedMessage message) {
+        String messageId = message.getMessageId();
+        int attempts = (message.getAttempts() == null ? 0 : message.getAttempts()) + 1;
+        message.setAttempts(attempts);
+        try {
+            if (attempts >= getMaxAttempts()) {
+                if (!delayedMessageService.markDead(messageId, attempts)) {
+                    logger.warn("标记死信失败，消息状态已变更，queue: {}, messageId: {}", getQueueName(), messageId);
+                    return;
+                }
+                message.setStatus(3);
+                await(deadLetterQueue.addAsync(toQueueEntry(message)));
+                metrics.recordDeadLettered();
+                logger.error("消息超过最大尝试次数，转入死信队列，queue: {}, messageId: {}, attempts: {}", getQueueName(), messageId, attempts);
+                return;
+            }
+
+            long backoffMillis = getRetryBackoffMillis(attempts);
+            LocalDateTime retryTime = LocalDateTime.now().plus(Duration.ofMillis(backoffMillis)).truncatedTo(ChronoUnit.MILLIS);
+            if (!delayedMessageService.scheduleRetry(messageId, attempts, retryTime)) {
+                logger.warn("安排重试失败，消息状态已变更，queue: {}, messageId: {}", getQueueName(), messageId);
+                return;
+            }
+            message.setStatus(0);
+            message.setExpireTime(retryTime);
+            scheduleEntry(shardOf(messageId), toQueueEntry(message), toEpochMilli(retryTime));
+            metrics.recordRetried();
+            logger.info("消息将在 {}ms 后重试，queue: {}, messageId: {}, attempts: {}", backoffMillis, getQueueName(), messageId, attempts);
+        } catch (Exception e) {
+            logger.error("安排消息重试失败，queue: {}, messageId: {}, attempts: {}", getQueueName(), messageId, attempts, e);
+        }
+    }
+
+    /**
+     * 取消未处理的消息：数据库条件更新（0 → 4）后按条目从调度集合中删除（ZREM，O(log n)）。
+     * 已搬入就绪队列或删除失败的条目在派发时按已取消状态跳过
+     *
+     * @return 是否取消成功，消息不存在、不属于本主题或已开始处理时返回false
+     */
+    public boolean cancel(String messageId) {
+        // 内联模式的条目是序列化的消息，按数据库记录重建
+        DelayedMessage message = inlinePayload() ? delayedMessageService.findByMessageId(messageId) : null;
+        if (inlinePayload() && message == null) {
+            logger.warn("取消消息失败，消息不存在，queue: {}, messageId: {}", getQueueName(), messageId);
+            return false;
+        }
+        if (!delayedMessageService.cancel(messageId, getTopic())) {
+            logger.warn("取消消息失败，消息不存在或已不是未处理状态，queue: {}, messageId: {}", getQueueName(), messageId);
+            return false;
+        }
+        try {
+            shardOf(messageId).schedule.remove(message != null ? toQueueEntry(message) : messageId);
+        } catch (Exception e) {
+            logger.warn("从调度集合删除已取消消息失败，到期时按已取消状态跳过，queue: {}, messageId: {}", getQueueName(), messageId, e);
+        }
+        metrics.recordCancelled();
+        logger.info("取消延时消息成功，queue: {}, messageId: {}", getQueueName(), messageId);
+        return true;
+    }
+
+    /**
+     * 修改未处理消息的过期时间：数据库条件更新后按条目修改调度集合中的score（ZADD，O(log n)），
+     * 内联模式下条目携带过期时间，原子地删除旧条目并写入新条目。写入Redis失败时，旧条目到达后按新的过期时间重新调度
+     *
+     * @return 是否修改成功，消息不存在、不属于本主题或已开始处理时返回false
+     */
+    public boolean reschedule(String messageId, @NonNull LocalDateTime newExpireTime) {
+        LocalDateTime expireTime = newExpireTime.truncatedTo(ChronoUnit.MILLIS);
+        DelayedMessage message = inlinePayload() ? delayedMessageService.findByMessageId(messageId) : null;
+        if (inlinePayload() && message == null) {
+            logger.warn("修改过期时间失败，消息不存在，queue: {}, messageId: {}", getQueueName(), messageId);
+            return false;
+        }
+        if (!delayedMessageService.reschedule(messageId, getTopic(), expireTime)) {
+            logger.warn("修改过期时间失败，消息不存在或已不是未处理状态，queue: {}, messageId: {}", getQueueName(), messageId);
+            return false;
+        }
+        QueueShard shard = shardOf(messageId);
+        long dueMillis = toEpochMilli(expireTime);
+        try {
+            if (message == null) {
+                scheduleEntry(shard, messageId, dueMillis);
             } else {
-                logger.info("积压消息已存在于队列中，跳过: {}", message.getMessageId());
+                String oldEntry = toQueueEntry(message);
+                message.setExpireTime(expireTime);
+                RBatch batch = redissonClient.createBatch(BatchOptions.defaults().executionMode(BatchOptions.ExecutionMode.IN_MEMORY_ATOMIC));
+                RScoredSortedSetAsync<String> schedule = batch.getScoredSortedSet(shard.schedule.getName(), queueCodec);
+                schedule.removeAsync(oldEntry);
+                schedule.addAsync(dueMillis, toQueueEntry(message));
+                batch.execute();
+                armTransfer(shard, dueMillis);
             }
+        } catch (Exception e) {
+            logger.warn("修改调度集合失败，原条目到达后按新的过期时间重新调度，queue: {}, messageId: {}", getQueueName(), messageId, e);
         }
+        metrics.recordRescheduled();
+        logger.info("修改过期时间成功，queue: {}, messageId: {}, expireTime: {}", getQueueName(), messageId, expireTime);
+        return true;
     }
 
     @PreDestroy
     public void destroy() {
-        // 取消定时任务
-        if (listenerTaskFuture != null && !listenerTaskFuture.isCancelled()) {
-            listenerTaskFuture.cancel(false);
-        }
-
         isListening = false;
+        ScheduledFuture<?> bloomRefresh = bloomRefreshFuture;
+        if (bloomRefresh != null) {
+            bloomRefresh.cancel(false);
+        }
+        if (scheduleTopic != null && scheduleListenerId != -1) {
+            scheduleTopic.removeListener(scheduleListenerId, scheduleStatusListenerId);
+        }
+        if (drainShards != null) {
+            for (QueueShard shard : drainShards) {
+                dispatcher.unregister(shard);
+                // 取消定时任务
+                if (shard.listenerTaskFuture != null && !shard.listenerTaskFuture.isCancelled()) {
+                    shard.listenerTaskFuture.cancel(false);
+                }
+                ScheduledFuture<?> transferTaskFuture = shard.transferTaskFuture;
+                if (transferTaskFuture != null) {
+                    transferTaskFuture.cancel(false);
+                }
+                // 取消挂起的异步take
+                if (shard.pendingTakeFuture != null && !shard.pendingTakeFuture.isDone()) {
+                    shard.pendingTakeFuture.cancel(true);
+                }
+            }
+        }
+        // 等待已提交的消息处理完成后关闭处理线程池
+        if (processorExecutor != null) {
+            processorExecutor.shutdown();
+        }
+        // 处理任务已全部结束，写入缓冲中剩余的状态更新
+        // 处理任务结束前仍需续约和刷新，此时才注销
+        housekeeper.unregister(maintenanceTarget);
+        if (statusBuffer != null) {
+            statusBuffer.flush();
+        }
+        if (bloomFilter != null && !sharedDedupe) {
+            bloomFilter.close();
+        }
+        if (dedupeNearCache != null && !sharedDedupe) {
+            dedupeNearCache.close();
+        }
+        if (metrics != null) {
+            metrics.close();
+        }
         logger.info("销毁队列监听器: {}", getQueueName());
     }
 
@@ -394,8 +1632,7 @@ public abstract class AbstractDelayedQueueService {
      * 检查服务健康状态
      */
     public boolean isHealthy() {
-        return isListening && !processorExecutor.getThreadPoolExecutor()
-                .isShutdown() && !processorExecutor.getThreadPoolExecutor().isTerminated();
+        return isListening && !processorExecutor.isShutdown();
     }
 
     /**
@@ -404,11 +1641,207 @@ public abstract class AbstractDelayedQueueService {
     public Map<String, Object> getQueueStats() {
         Map<String, Object> stats = new HashMap<>();
         stats.put("queueName", getQueueName());
+        stats.put("topic", getTopic());
+        stats.put("sharedDedupe", sharedDedupe);
         stats.put("isListening", isListening);
+        stats.put("pushListener", usePushListener());
+        stats.put("lockFreeClaim", useLockFreeClaim());
+        stats.put("inlinePayload", inlinePayload());
+        stats.put("compactIds", compactIds() && !inlinePayload());
         stats.put("processorActiveCount", processorExecutor.getActiveCount());
-        stats.put("processorQueueSize", processorExecutor.getThreadPoolExecutor().getQueue().size());
-        stats.put("blockingQueueSize", blockingQueue.size());
-        stats.put("delayedQueueSize", delayedQueue.size());
+        stats.put("processorQueueSize", processorExecutor.getQueueSize());
+        stats.put("processorConcurrency", getProcessorConcurrency());
+        stats.put("processorAvailableSlots", availableSlots());
+        // 各分片大小及汇总
+        int blockingQueueSize = 0;
+        int delayedQueueSize = 0;
+        long effectiveInterval = Long.MAX_VALUE;
+        boolean paused = false;
+        List<Map<String, Object>> shardStats = new ArrayList<>(drainShards.size());
+        for (QueueShard shard : drainShards) {
+            Map<String, Object> shardStat = new LinkedHashMap<>();
+            int shardBlockingSize = shard.blockingQueue.size();
+            int shardDelayedSize = shard.schedule.size() + shard.legacyTimeoutSet.size();
+            shardStat.put("name", shard.name);
+            shardStat.put("blockingQueueSize", shardBlockingSize);
+            shardStat.put("delayedQueueSize", shardDelayedSize);
+            if (!usePushListener() && !useSharedDispatcher()) {
+                shardStat.put("intervalMillis", shard.intervalMillis);
+            }
+            shardStat.put("paused", shard.paused);
+            shardStats.add(shardStat);
+            blockingQueueSize += shardBlockingSize;
+            delayedQueueSize += shardDelayedSize;
+            effectiveInterval = Math.min(effectiveInterval, shard.intervalMillis);
+            paused |= shard.paused;
+        }
+        // 轮询模式下各分片中最短的当前检查间隔，使用共享派发器时为派发器的检查间隔
+        if (!usePushListener() && useSharedDispatcher()) {
+            Map<String, Object> dispatcherStats = dispatcher.getStats();
+            stats.put("effectiveCheckIntervalMillis", dispatcherStats.get("intervalMillis"));
+            stats.put("sharedDispatcher", dispatcherStats);
+        } else if (!usePushListener()) {
+            stats.put("effectiveCheckIntervalMillis", effectiveInterval);
+        }
+        stats.put("listenerPaused", paused);
+        stats.put("shardCount", shards.size());
+        stats.put("shards", shardStats);
+        stats.put("blockingQueueSize", blockingQueueSize);
+        stats.put("delayedQueueSize", delayedQueueSize);
+        stats.put("deadLetterQueueSize", deadLetterQueue.size());
+        stats.put("maxAttempts", getMaxAttempts());
+        stats.put("leaseSeconds", getLeaseSeconds());
+        stats.put("leasedMessages", leasedMessages.size());
+        stats.put("housekeeper", housekeeper.getStats());
+        stats.put("memoryUsage", getMemoryUsage());
+        if (bloomFilter != null) {
+            stats.put("bloomFilter", bloomFilter.getStats());
+        }
+        if (dedupeNearCache != null) {
+            stats.put("dedupeNearCacheSize", dedupeNearCache.size());
+        }
+        if (statusBuffer != null) {
+            stats.put("statusWriteBehind", statusBuffer.getStats());
+        }
+        stats.put("metrics", metrics.snapshot());
         return stats;
     }
+
+    /**
+     * 队列相关Redis键的内存占用（MEMORY USAGE，字节），用于评估条目编码的内存开销
+     */
+    private Map<String, Object> getMemoryUsage() {
+        Map<String, Object> usage = new LinkedHashMap<>();
+        try {
+            long readyQueueBytes = 0;
+            long delayedQueueBytes = 0;
+            for (QueueShard shard : drainShards) {
+                // 调度集合，以及升级前写入的 RDelayedQueue 内部键（到期时间有序集合与按写入顺序的列表），与就绪队列同属一个槽
+                readyQueueBytes += shard.queue.sizeInMemory();
+                delayedQueueBytes += shard.schedule.sizeInMemory()
+                        + redissonClient.getScoredSortedSet(RedisKeys.delayQueueTimeout(shard.name)).sizeInMemory()
+                        + redissonClient.getList(RedisKeys.delayQueue(shard.name)).sizeInMemory();
+            }
+            usage.put("readyQueueBytes", readyQueueBytes);
+            usage.put("delayedQueueBytes", delayedQueueBytes);
+            usage.put("totalBytes", readyQueueBytes + delayedQueueBytes);
+        } catch (Exception e) {
+            logger.debug("获取队列内存占用失败，queue: {}", getQueueName(), e);
+        }
+        return usage;
+    }
+
+    /**
+     * 本队列在共享维护任务中的登记
+     */
+    private class MaintenanceTarget implements DelayedQueueHousekeeper.Target {
+
+        @Override
+        public String getTopic() {
+            return AbstractDelayedQueueService.this.getTopic();
+        }
+
+        @Override
+        public long getLeaseSeconds() {
+            return AbstractDelayedQueueService.this.getLeaseSeconds();
+        }
+
+        @Override
+        public Map<String, Long> leasedMessages() {
+            return leasedMessages;
+        }
+
+        /**
+         * 租约过期后已恢复为未处理的消息按分片批量写回就绪队列
+         */
+        @Override
+        public void requeue(List<DelayedMessage> messages) {
+            Map<QueueShard, List<String>> entries = new HashMap<>();
+            for (DelayedMessage message : messages) {
+                entries.computeIfAbsent(shardOf(message.getMessageId()), s -> new ArrayList<>()).add(toQueueEntry(message));
+            }
+            entries.forEach((shard, shardEntries) -> shard.queue.addAll(shardEntries));
+            metrics.recordReaped(messages.size());
+            logger.warn("回收租约过期的处理中消息，queue: {}, count: {}", getQueueName(), messages.size());
+        }
+
+        @Override
+        public StatusWriteBehindBuffer statusBuffer() {
+            return statusBuffer;
+        }
+    }
+
+    /**
+     * 一个物理分片：就绪队列、调度集合、待确认集合，以及分片上的监听状态
+     */
+    private class QueueShard implements DelayedQueueDispatcher.Target {
+        private final String name;
+        private final RQueue<String> queue;
+        private final RBlockingQueue<String> blockingQueue;
+        // 调度集合，成员为队列条目，score 为到期时间戳
+        private final RScoredSortedSet<String> schedule;
+        // 待确认集合，成员为已取出的队列条目，score 为确认截止时间
+        private final RScoredSortedSet<String> inflight;
+        // 升级前写入的 RDelayedQueue 到期时间集合，由搬运脚本排空，只读取大小
+        private final RScoredSortedSet<byte[]> legacyTimeoutSet;
+        // 最近一次搬运返回的最早到期时间，没有未到期条目时为 Long.MAX_VALUE
+        private volatile long nextDueMillis = Long.MAX_VALUE;
+        // 推送模式下一次搬运的定时任务及其执行时间
+        private volatile ScheduledFuture<?> transferTaskFuture;
+        private volatile long nextTransferAt = Long.MAX_VALUE;
+        // 轮询模式下一次检查的定时任务
+        private volatile ScheduledFuture<?> listenerTaskFuture;
+        // 轮询模式当前生效的检查间隔
+        private volatile long intervalMillis;
+        // 是否因执行器达到高水位暂停拉取
+        private volatile boolean paused;
+        // 推送模式下挂起的异步take
+        private volatile RFuture<String> pendingTakeFuture;
+
+        QueueShard(String name) {
+            this.name = name;
+            this.queue = redissonClient.getQueue(name, queueCodec);
+            this.blockingQueue = redissonClient.getBlockingQueue(name, queueCodec);
+            this.schedule = redissonClient.getScoredSortedSet(RedisKeys.scheduleSet(name), queueCodec);
+            this.inflight = redissonClient.getScoredSortedSet(RedisKeys.inflightSet(name), queueCodec);
+            this.legacyTimeoutSet = redissonClient.getScoredSortedSet(RedisKeys.delayQueueTimeout(name), ByteArrayCodec.INSTANCE);
+        }
+
+        @Override
+        public String getReadyQueueName() {
+            return name;
+        }
+
+        @Override
+        public int pullLimit() {
+            // 执行器达到高水位时本次不拉取，消息留在Redis中；否则按剩余容量限流
+            paused = !isListening || isSaturated();
+            return paused ? -1 : Math.min(getBatchSize(), availableSlots());
+        }
+
+        @Override
+        public long pausedRecheckMillis() {
+            return getCheckInterval();
+        }
+
+        @Override
+        public void onPulled(List<String> entries, long nextDueMillis) {
+            this.nextDueMillis = nextDueMillis;
+            for (String entry : entries) {
+                try {
+                    dispatchMessage(this, entry);
+                } catch (Exception e) {
+                    // 未派发的条目留在待确认集合中，确认超时后由搬运脚本放回就绪队列
+                    logger.error("派发队列消息异常, queue: {}, entry: {}", name, entry, e);
+                }
+            }
+        }
+
+        /**
+         * 确认条目：从待确认集合删除，不等待结果；删除失败的条目确认超时后重新投递，按消息状态跳过
+         */
+        void ack(String entry) {
+            inflight.removeAsync(entry);
+        }
+    }
 }
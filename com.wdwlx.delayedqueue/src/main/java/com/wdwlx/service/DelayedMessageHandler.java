@@ -0,0 +1,12 @@
+package com.wdwlx.service;
+
+import com.wdwlx.entity.DelayedMessage;
+
+/**
+ * 注册到 {@link DelayedQueueRegistry} 的主题处理逻辑，抛出异常时按队列的重试策略重试或转入死信队列
+ */
+@FunctionalInterface
+public interface DelayedMessageHandler {
+
+    void handle(DelayedMessage message) throws Exception;
+}
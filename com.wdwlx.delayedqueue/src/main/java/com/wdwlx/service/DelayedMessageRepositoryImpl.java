@@ -5,24 +5,39 @@ import com.baomidou.mybatisplus.core.conditions.update.LambdaUpdateWrapper;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
 import com.wdwlx.entity.DelayedMessage;
 import com.wdwlx.repository.DelayedMessageRepository;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 
 @Service
+@ConditionalOnProperty(name = "delayed.queue.store", havingValue = "mysql", matchIfMissing = true)
 public class DelayedMessageRepositoryImpl extends ServiceImpl<DelayedMessageRepository, DelayedMessage> implements DelayedMessageService {
 
     private final DelayedMessageRepository delayedMessageRepository;
 
     @Override
-    public List findByBizId(String bizId, String topic) {
+    public List<DelayedMessage> findByBizId(String bizId, String topic) {
         return delayedMessageRepository.selectList(
                 new LambdaQueryWrapper<DelayedMessage>()
                 .eq(DelayedMessage::getBizId, bizId)
                 .eq(DelayedMessage::getTopic, topic));
     }
 
+    @Override
+    public List<DelayedMessage> findByBizIds(Collection<String> bizIds, String topic) {
+        if (bizIds == null || bizIds.isEmpty()) {
+            return Collections.emptyList();
+        }
+        return delayedMessageRepository.selectList(
+                new LambdaQueryWrapper<DelayedMessage>()
+                .in(DelayedMessage::getBizId, bizIds)
+                .eq(DelayedMessage::getTopic, topic));
+    }
+
     @Override
     public boolean deleteByMessageId(String messageId) {
 
@@ -39,6 +54,14 @@ public class DelayedMessageRepositoryImpl extends ServiceImpl<DelayedMessageRepo
         return baseMapper.insert(message) > 0;
     }
 
+    @Override
+    public boolean saveAll(List<DelayedMessage> messages) {
+        if (messages.isEmpty()) {
+            return true;
+        }
+        return saveBatch(messages, messages.size());
+    }
+
     @Override
     public DelayedMessage findByMessageId(String messageId) {
         if (messageId == null) {
@@ -49,20 +72,121 @@ public class DelayedMessageRepositoryImpl extends ServiceImpl<DelayedMessageRepo
     }
 
     @Override
-    public List<DelayedMessage> findUnprocessedMessages() {
-        return delayedMessageRepository.selectList(new LambdaQueryWrapper<DelayedMessage>().eq(DelayedMessage::getStatus, 0));
+    public List<DelayedMessage> findUnprocessedMessages(String topic, long lastId, int limit) {
+        return delayedMessageRepository.selectList(new LambdaQueryWrapper<DelayedMessage>()
+                .eq(DelayedMessage::getTopic, topic)
+                .eq(DelayedMessage::getStatus, 0)
+                .gt(DelayedMessage::getId, lastId)
+                .orderByAsc(DelayedMessage::getId)
+                .last(" limit " + limit));
     }
 
     @Override
     public boolean updateStatus(String messageId, int status) {
-        baseMapper.update(new LambdaUpdateWrapper<DelayedMessage>().eq(DelayedMessage::getMessageId, messageId)
+        return baseMapper.update(new LambdaUpdateWrapper<DelayedMessage>().eq(DelayedMessage::getMessageId, messageId)
                 .set(DelayedMessage::getStatus, status)
+                .set(DelayedMessage::getProcessTime, LocalDateTime.now())) > 0;
+    }
+
+    @Override
+    public int markProcessed(Collection<String> messageIds) {
+        if (messageIds == null || messageIds.isEmpty()) {
+            return 0;
+        }
+        return baseMapper.update(new LambdaUpdateWrapper<DelayedMessage>().in(DelayedMessage::getMessageId, messageIds)
+                .eq(DelayedMessage::getStatus, 2)
+                .set(DelayedMessage::getStatus, 1)
                 .set(DelayedMessage::getProcessTime, LocalDateTime.now()));
-        return true;
     }
 
     @Override
-    public List<DelayedMessage> findPendingMessages(LocalDateTime beforeTime) {
-        return baseMapper.selectList(new LambdaQueryWrapper<DelayedMessage>().eq(DelayedMessage::getStatus, 0));
+    public boolean scheduleRetry(String messageId, int attempts, LocalDateTime retryTime) {
+        return baseMapper.update(new LambdaUpdateWrapper<DelayedMessage>().eq(DelayedMessage::getMessageId, messageId)
+                .eq(DelayedMessage::getStatus, 2)
+                .set(DelayedMessage::getStatus, 0)
+                .set(DelayedMessage::getAttempts, attempts)
+                .set(DelayedMessage::getExpireTime, retryTime)
+                .set(DelayedMessage::getProcessTime, LocalDateTime.now())) > 0;
+    }
+
+    @Override
+    public boolean markDead(String messageId, int attempts) {
+        return baseMapper.update(new LambdaUpdateWrapper<DelayedMessage>().eq(DelayedMessage::getMessageId, messageId)
+                .eq(DelayedMessage::getStatus, 2)
+                .set(DelayedMessage::getStatus, 3)
+                .set(DelayedMessage::getAttempts, attempts)
+                .set(DelayedMessage::getProcessTime, LocalDateTime.now())) > 0;
+    }
+
+    @Override
+    public boolean claim(String messageId, LocalDateTime dueTime, LocalDateTime leaseExpireTime) {
+        return baseMapper.update(new LambdaUpdateWrapper<DelayedMessage>().eq(DelayedMessage::getMessageId, messageId)
+                .eq(DelayedMessage::getStatus, 0)
+                .le(DelayedMessage::getExpireTime, dueTime)
+                .set(DelayedMessage::getStatus, 2)
+                .set(DelayedMessage::getLeaseExpireTime, leaseExpireTime)
+                .set(DelayedMessage::getProcessTime, LocalDateTime.now())) > 0;
+    }
+
+    @Override
+    public boolean acquireLease(String messageId, LocalDateTime dueTime, LocalDateTime leaseExpireTime) {
+        return baseMapper.update(new LambdaUpdateWrapper<DelayedMessage>().eq(DelayedMessage::getMessageId, messageId)
+                .in(DelayedMessage::getStatus, 0, 2)
+                .le(DelayedMessage::getExpireTime, dueTime)
+                .set(DelayedMessage::getStatus, 2)
+                .set(DelayedMessage::getLeaseExpireTime, leaseExpireTime)
+                .set(DelayedMessage::getProcessTime, LocalDateTime.now())) > 0;
+    }
+
+    @Override
+    public boolean cancel(String messageId, String topic) {
+        return baseMapper.update(new LambdaUpdateWrapper<DelayedMessage>().eq(DelayedMessage::getMessageId, messageId)
+                .eq(DelayedMessage::getTopic, topic)
+                .eq(DelayedMessage::getStatus, 0)
+                .set(DelayedMessage::getStatus, 4)
+                .set(DelayedMessage::getProcessTime, LocalDateTime.now())) > 0;
+    }
+
+    @Override
+    public boolean reschedule(String messageId, String topic, LocalDateTime expireTime) {
+        return baseMapper.update(new LambdaUpdateWrapper<DelayedMessage>().eq(DelayedMessage::getMessageId, messageId)
+                .eq(DelayedMessage::getTopic, topic)
+                .eq(DelayedMessage::getStatus, 0)
+                .set(DelayedMessage::getExpireTime, expireTime)) > 0;
+    }
+
+    @Override
+    public int renewLeases(Collection<String> messageIds, LocalDateTime leaseExpireTime) {
+        if (messageIds == null || messageIds.isEmpty()) {
+            return 0;
+        }
+        return baseMapper.update(new LambdaUpdateWrapper<DelayedMessage>().in(DelayedMessage::getMessageId, messageIds)
+                .eq(DelayedMessage::getStatus, 2)
+                .set(DelayedMessage::getLeaseExpireTime, leaseExpireTime));
+    }
+
+    @Override
+    public List<DelayedMessage> findExpiredLeases(Collection<String> topics, LocalDateTime now, int limit) {
+        if (topics == null || topics.isEmpty()) {
+            return Collections.emptyList();
+        }
+        return baseMapper.selectList(new LambdaQueryWrapper<DelayedMessage>()
+                .in(DelayedMessage::getTopic, topics)
+                .eq(DelayedMessage::getStatus, 2)
+                .lt(DelayedMessage::getLeaseExpireTime, now)
+                .orderByAsc(DelayedMessage::getLeaseExpireTime)
+                .last(" limit " + limit));
+    }
+
+    @Override
+    public int releaseExpiredLeases(Collection<String> messageIds, LocalDateTime now) {
+        if (messageIds == null || messageIds.isEmpty()) {
+            return 0;
+        }
+        return baseMapper.update(new LambdaUpdateWrapper<DelayedMessage>().in(DelayedMessage::getMessageId, messageIds)
+                .eq(DelayedMessage::getStatus, 2)
+                .lt(DelayedMessage::getLeaseExpireTime, now)
+                .set(DelayedMessage::getStatus, 0)
+                .set(DelayedMessage::getLeaseExpireTime, null));
     }
 }
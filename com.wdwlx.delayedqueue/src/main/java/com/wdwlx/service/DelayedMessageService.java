@@ -1,22 +1,122 @@
 package com.wdwlx.service;
 
-import com.baomidou.mybatisplus.extension.service.IService;
 import com.wdwlx.entity.DelayedMessage;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 
-public interface DelayedMessageService extends IService<DelayedMessage> {
+/**
+ * 消息存储，按 delayed.queue.store 选择实现：mysql（默认，{@link DelayedMessageRepositoryImpl}）
+ * 或 journal（本地消息日志，{@link JournalDelayedMessageService}）
+ **/
+public interface DelayedMessageService {
+
+    /**
+     * 保存消息，消息ID已存在时抛出 DuplicateKeyException
+     */
+    boolean save(DelayedMessage message);
 
     DelayedMessage findByMessageId(String messageId);
 
-    List<DelayedMessage> findUnprocessedMessages();
+    /**
+     * 按主题分页查询未处理的消息（id游标分页），包含已到期的
+     *
+     * @param lastId 上一页最后一条记录的id，首页传0
+     */
+    List<DelayedMessage> findUnprocessedMessages(String topic, long lastId, int limit);
 
+    /**
+     * @return 是否更新成功（影响行数大于0）
+     */
     boolean updateStatus(String messageId, int status);
 
-    List<DelayedMessage> findPendingMessages(LocalDateTime beforeTime);
+    /**
+     * 批量标记处理完成：一条 UPDATE ... WHERE message_id IN (...) AND status = 2
+     *
+     * @return 影响行数
+     */
+    int markProcessed(Collection<String> messageIds);
+
+    /**
+     * 安排重试：仅当状态为处理中时恢复为未处理，记录失败次数并把过期时间推迟到下次重试时间，
+     * 重启恢复时按新的过期时间重新写入延时队列
+     *
+     * @return 是否更新成功（影响行数大于0）
+     */
+    boolean scheduleRetry(String messageId, int attempts, LocalDateTime retryTime);
+
+    /**
+     * 标记为死信（状态3），不再被启动恢复读取；仅当状态为处理中时更新，
+     * 租约过期后已被回收或重新抢占的消息不会被旧的处理节点标记
+     *
+     * @return 是否更新成功（影响行数大于0）
+     */
+    boolean markDead(String messageId, int attempts);
+
+    /**
+     * 抢占消息：仅当状态为未处理且已到期时原子地更新为处理中，并记录租约到期时间。
+     * 已被取消或改期到更晚时间的消息不会被旧的队列条目抢占
+     *
+     * @param dueTime 到期判定时间，过期时间晚于该时间的消息视为未到期
+     * @return 是否抢占成功（影响行数大于0）
+     */
+    boolean claim(String messageId, LocalDateTime dueTime, LocalDateTime leaseExpireTime);
+
+    /**
+     * 更新为处理中并记录租约到期时间（分布式锁模式，处理节点间的所有权由锁保证），
+     * 仅当状态为未处理/处理中且已到期时更新，与取消、改期的条件更新互斥
+     *
+     * @param dueTime 到期判定时间，过期时间晚于该时间的消息视为未到期
+     * @return 是否更新成功（影响行数大于0）
+     */
+    boolean acquireLease(String messageId, LocalDateTime dueTime, LocalDateTime leaseExpireTime);
+
+    /**
+     * 取消消息：仅当属于该主题且状态为未处理时更新为已取消（状态4）
+     *
+     * @return 是否取消成功（影响行数大于0）
+     */
+    boolean cancel(String messageId, String topic);
+
+    /**
+     * 修改过期时间：仅当属于该主题且状态为未处理时更新
+     *
+     * @return 是否更新成功（影响行数大于0）
+     */
+    boolean reschedule(String messageId, String topic, LocalDateTime expireTime);
+
+    /**
+     * 批量续约仍处于处理中的消息
+     *
+     * @return 影响行数
+     */
+    int renewLeases(Collection<String> messageIds, LocalDateTime leaseExpireTime);
+
+    /**
+     * 查询一组主题下租约已过期的处理中消息，按租约到期时间排序（(topic, status, lease_expire_time) 索引范围扫描），
+     * 所有主题一次查询
+     */
+    List<DelayedMessage> findExpiredLeases(Collection<String> topics, LocalDateTime now, int limit);
+
+    /**
+     * 将租约仍处于过期状态的处理中消息恢复为未处理，期间已被续约或处理完成的消息不受影响
+     *
+     * @return 影响行数
+     */
+    int releaseExpiredLeases(Collection<String> messageIds, LocalDateTime now);
 
     boolean deleteByMessageId(String messageId);
 
-    List findByBizId(String bizId, String topic);
+    List<DelayedMessage> findByBizId(String bizId, String topic);
+
+    /**
+     * 批量查询同一主题下已存在的业务ID对应的消息
+     */
+    List<DelayedMessage> findByBizIds(Collection<String> bizIds, String topic);
+
+    /**
+     * 批量保存消息（批量执行器 + rewriteBatchedStatements 合并为多行insert）
+     */
+    boolean saveAll(List<DelayedMessage> messages);
 }
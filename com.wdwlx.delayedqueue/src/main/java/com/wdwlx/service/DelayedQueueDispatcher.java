@@ -0,0 +1,318 @@
+package com.wdwlx.service;
+
+import com.wdwlx.util.CompactIdCodec;
+import com.wdwlx.util.TransferScript;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.redisson.Redisson;
+import org.redisson.api.RFuture;
+import org.redisson.api.RScript;
+import org.redisson.api.RedissonClient;
+import org.redisson.client.codec.Codec;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 轮询模式的共享派发器：所有注册的队列分片共用一个检查任务，每次检查按槽位分组，
+ * 每组一次 {@link TransferScript} 调用完成所有队列的到期搬运和拉取，并按队列返回取出的条目。
+ * 单节点/哨兵模式下每次检查只有一次Redis调用，调用次数不再随队列数增长；
+ * 集群模式下各槽位组的调用异步并发发送、分别等待结果，某个节点失败或超时不影响其他组已取出条目的派发
+ * <p>
+ * 检查间隔按结果自适应：有队列取满一批时降到下限，取到部分时减半，空闲时加倍直至上限，
+ * 但不晚于所有队列中最早一条未到期消息的到期时间；本节点写入更早到期的消息时提前检查
+ **/
+@Component
+public class DelayedQueueDispatcher {
+
+    private static final Logger logger = LoggerFactory.getLogger(DelayedQueueDispatcher.class);
+
+    /**
+     * 注册到派发器的队列分片
+     */
+    public interface Target {
+
+        /**
+         * 就绪队列名，其余键按 {@link TransferScript#addKeys} 规则生成
+         */
+        String getReadyQueueName();
+
+        /**
+         * 本次最多取出的条目数，负数表示因背压暂停、不搬运也不取出
+         */
+        int pullLimit();
+
+        /**
+         * 暂停期间复查执行器占用率的间隔
+         */
+        long pausedRecheckMillis();
+
+        /**
+         * 派发本次取出的条目
+         *
+         * @param nextDueMillis 剩余条目中最早的到期时间，没有时为 Long.MAX_VALUE
+         */
+        void onPulled(List<String> entries, long nextDueMillis);
+    }
+
+    @Autowired
+    private RedissonClient redissonClient;
+
+    @Autowired
+    @Qualifier("delayedQueueListenerExecutor")
+    private ScheduledExecutorService listenerExecutor;
+
+    // 持续有消息到达时检查间隔的下限
+    @Value("${delayed.queue.listener.adaptive.min-interval-millis:10}")
+    private long minIntervalMillis;
+
+    // 空闲时检查间隔指数退避的上限
+    @Value("${delayed.queue.listener.adaptive.max-interval-millis:1000}")
+    private long maxIntervalMillis;
+
+    // 每个队列每次从调度集合搬运到就绪队列的最大条目数
+    @Value("${delayed.queue.schedule.transfer-batch-size:1000}")
+    private int transferBatchSize;
+
+    // 已取出条目的确认超时，超时未确认的条目由搬运脚本放回就绪队列
+    @Value("${delayed.queue.listener.ack-timeout-seconds:60}")
+    private long ackTimeoutSeconds;
+
+    private final List<Registration> registrations = new CopyOnWriteArrayList<>();
+
+    // 各队列的条目编解码器只在写入时不同，解码规则一致（8字节为紧凑ID，其余交给默认编解码器），启动时创建
+    private Codec scriptCodec;
+
+    private volatile boolean running = true;
+
+    private volatile ScheduledFuture<?> tickFuture;
+
+    private volatile long nextTickAt = Long.MAX_VALUE;
+
+    private volatile long intervalMillis;
+
+    private final LongAdder ticks = new LongAdder();
+
+    private final LongAdder scriptCalls = new LongAdder();
+
+    private final LongAdder dispatched = new LongAdder();
+
+    @PostConstruct
+    public void init() {
+        scriptCodec = TransferScript.codec(new CompactIdCodec(redissonClient.getConfig().getCodec(), false));
+    }
+
+    /**
+     * 注册分片并立即检查一次，可在任意线程调用（运行时注册主题）
+     */
+    public void register(Target target) {
+        registrations.add(new Registration(target, slotOf(target.getReadyQueueName())));
+        intervalMillis = minIntervalMillis;
+        wakeAt(System.currentTimeMillis());
+    }
+
+    public void unregister(Target target) {
+        registrations.removeIf(registration -> registration.target == target);
+    }
+
+    /**
+     * 本节点写入了 dueMillis 到期的消息，下次检查晚于该时间时提前
+     */
+    public void wakeAt(long dueMillis) {
+        if (dueMillis < nextTickAt) {
+            scheduleTick(Math.max(0, dueMillis - System.currentTimeMillis()));
+        }
+    }
+
+    @PreDestroy
+    public void destroy() {
+        running = false;
+        ScheduledFuture<?> scheduled = tickFuture;
+        if (scheduled != null) {
+            scheduled.cancel(false);
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("targets", registrations.size());
+        stats.put("slotGroups", groupBySlot(registrations).size());
+        stats.put("intervalMillis", intervalMillis);
+        stats.put("ticks", ticks.sum());
+        stats.put("scriptCalls", scriptCalls.sum());
+        stats.put("dispatched", dispatched.sum());
+        return stats;
+    }
+
+    /**
+     * 调度下一次检查，已有更早的调度时保留原调度，保证只有一个待执行的检查任务
+     */
+    private void scheduleTick(long delayMillis) {
+        if (!running || registrations.isEmpty()) {
+            return;
+        }
+        synchronized (this) {
+            long tickAt = System.currentTimeMillis() + delayMillis;
+            ScheduledFuture<?> scheduled = tickFuture;
+            if (scheduled != null && !scheduled.isDone()) {
+                if (nextTickAt <= tickAt || !scheduled.cancel(false)) {
+                    return;
+                }
+            }
+            try {
+                nextTickAt = tickAt;
+                tickFuture = listenerExecutor.schedule(this::tick, delayMillis, TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException e) {
+                logger.info("监听线程池已关闭，共享派发器停止检查");
+            }
+        }
+    }
+
+    private void tick() {
+        synchronized (this) {
+            tickFuture = null;
+            nextTickAt = Long.MAX_VALUE;
+        }
+        long delayMillis;
+        try {
+            delayMillis = dispatchDue();
+        } catch (Exception e) {
+            logger.error("共享派发器检查异常", e);
+            delayMillis = maxIntervalMillis;
+        }
+        scheduleTick(delayMillis);
+    }
+
+    /**
+     * 一次检查：每个槽位组一次脚本调用，全部异步发出后逐组等待。
+     * 成功的组照常派发；失败或超时的组记录日志后跳过，脚本若已在服务端执行，取出的条目留在待确认集合中，
+     * 确认超时后由下一次搬运放回就绪队列
+     *
+     * @return 下次检查的间隔
+     */
+    private long dispatchDue() {
+        List<List<Registration>> groups = groupBySlot(registrations);
+        if (groups.isEmpty()) {
+            return maxIntervalMillis;
+        }
+        long now = System.currentTimeMillis();
+        RScript script = redissonClient.getScript(scriptCodec);
+        List<RFuture<List<Object>>> futures = new ArrayList<>(groups.size());
+        List<int[]> limits = new ArrayList<>(groups.size());
+        for (List<Registration> group : groups) {
+            List<Object> keys = new ArrayList<>(group.size() * 5);
+            Object[] args = new Object[group.size() + 3];
+            int[] groupLimits = new int[group.size()];
+            args[0] = now;
+            args[1] = Math.max(1, transferBatchSize);
+            args[2] = now + TimeUnit.SECONDS.toMillis(ackTimeoutSeconds);
+            for (int i = 0; i < group.size(); i++) {
+                Registration registration = group.get(i);
+                TransferScript.addKeys(keys, registration.target.getReadyQueueName());
+                groupLimits[i] = registration.target.pullLimit();
+                args[i + 3] = groupLimits[i];
+            }
+            futures.add(script.evalAsync(RScript.Mode.READ_WRITE, TransferScript.SCRIPT, RScript.ReturnType.MULTI, keys, args));
+            limits.add(groupLimits);
+        }
+        ticks.increment();
+        scriptCalls.add(groups.size());
+
+        boolean full = false;
+        boolean pulled = false;
+        long nextDue = Long.MAX_VALUE;
+        long pausedRecheck = Long.MAX_VALUE;
+        for (int g = 0; g < groups.size(); g++) {
+            List<Registration> group = groups.get(g);
+            RFuture<List<Object>> future = futures.get(g);
+            future.awaitUninterruptibly();
+            if (!future.isSuccess()) {
+                logger.error("共享派发器检查失败, queue: {}, groupSize: {}", group.get(0).target.getReadyQueueName(), group.size(), future.cause());
+                continue;
+            }
+            List<Object> result = future.getNow();
+            int[] groupLimits = limits.get(g);
+            for (int i = 0; i < group.size(); i++) {
+                Target target = group.get(i).target;
+                if (groupLimits[i] < 0) {
+                    pausedRecheck = Math.min(pausedRecheck, target.pausedRecheckMillis());
+                }
+                List<String> entries = TransferScript.entries(result, i);
+                long targetNextDue = TransferScript.nextDue(result, i);
+                nextDue = Math.min(nextDue, targetNextDue);
+                if (!entries.isEmpty()) {
+                    pulled = true;
+                    full |= entries.size() >= groupLimits[i];
+                    dispatched.add(entries.size());
+                }
+                try {
+                    target.onPulled(entries, targetNextDue);
+                } catch (Exception e) {
+                    logger.error("共享派发器派发异常, queue: {}", target.getReadyQueueName(), e);
+                }
+            }
+        }
+        return nextInterval(full, pulled, nextDue, pausedRecheck);
+    }
+
+    private long nextInterval(boolean full, boolean pulled, long nextDue, long pausedRecheck) {
+        long interval;
+        if (full) {
+            interval = minIntervalMillis;
+        } else if (pulled) {
+            interval = Math.max(minIntervalMillis, intervalMillis / 2);
+        } else {
+            interval = Math.min(maxIntervalMillis, Math.max(1, intervalMillis) * 2);
+            if (nextDue != Long.MAX_VALUE) {
+                interval = Math.max(minIntervalMillis, Math.min(interval, nextDue - System.currentTimeMillis()));
+            }
+        }
+        intervalMillis = interval;
+        // 背压暂停的队列按各自的间隔复查执行器占用率
+        return Math.min(interval, pausedRecheck);
+    }
+
+    /**
+     * 按槽位分组，单节点/哨兵模式下所有键位于同一槽位
+     */
+    private static List<List<Registration>> groupBySlot(List<Registration> registrations) {
+        Map<Integer, List<Registration>> groups = new LinkedHashMap<>();
+        for (Registration registration : registrations) {
+            groups.computeIfAbsent(registration.slot, k -> new ArrayList<>()).add(registration);
+        }
+        return new ArrayList<>(groups.values());
+    }
+
+    private int slotOf(String queueName) {
+        if (redissonClient instanceof Redisson) {
+            return ((Redisson) redissonClient).getConnectionManager().calcSlot(queueName);
+        }
+        return 0;
+    }
+
+    private static final class Registration {
+
+        private final Target target;
+
+        private final int slot;
+
+        Registration(Target target, int slot) {
+            this.target = target;
+            this.slot = slot;
+        }
+    }
+}
@@ -0,0 +1,312 @@
+package com.wdwlx.service;
+
+import com.wdwlx.entity.DelayedMessage;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 所有队列共用的后台维护任务：处理中租约的续约与过期回收、处理完成状态写后缓冲的定时刷新。
+ * 续约每次检查按租约时长分组，每组一条 UPDATE；回收每次一条 topic IN (...) 查询覆盖所有注册的主题，
+ * 按主题交给各队列写回就绪队列；写后缓冲由一个定时任务依次刷新。定时任务数不随队列和主题数增长
+ **/
+@Component
+public class DelayedQueueHousekeeper {
+
+    private static final Logger logger = LoggerFactory.getLogger(DelayedQueueHousekeeper.class);
+
+    /**
+     * 注册到维护任务的队列
+     */
+    public interface Target {
+
+        /**
+         * 消息主题，回收查询按主题过滤，一个主题只注册一个队列
+         */
+        String getTopic();
+
+        /**
+         * 处理中消息的租约时长（秒）
+         */
+        long getLeaseSeconds();
+
+        /**
+         * 本节点处理中的消息ID → 最近一次取得/续约租约的时间，续约后由维护任务更新
+         */
+        Map<String, Long> leasedMessages();
+
+        /**
+         * 租约过期的消息已恢复为未处理，写回就绪队列
+         */
+        void requeue(List<DelayedMessage> messages);
+
+        /**
+         * 处理完成状态的写后缓冲，未开启时为null
+         */
+        StatusWriteBehindBuffer statusBuffer();
+    }
+
+    @Autowired
+    private DelayedMessageService delayedMessageService;
+
+    @Autowired
+    @Qualifier("delayedQueueListenerExecutor")
+    private ScheduledExecutorService listenerExecutor;
+
+    // 默认租约时长，没有注册队列时按它计算续约间隔
+    @Value("${delayed.queue.lease.duration-seconds:60}")
+    private long defaultLeaseSeconds;
+
+    // 租约回收任务的执行间隔
+    @Value("${delayed.queue.lease.reaper-interval-seconds:5}")
+    private long reaperIntervalSeconds;
+
+    // 回收任务每页读取的消息数
+    @Value("${delayed.queue.lease.reaper-batch-size:500}")
+    private int reaperBatchSize;
+
+    // 状态更新在写后缓冲中的最长等待时间，即定时刷新的间隔
+    @Value("${delayed.queue.status.write-behind.max-delay-millis:5}")
+    private long flushIntervalMillis;
+
+    // 主题 → 队列
+    private final Map<String, Target> targets = new ConcurrentHashMap<>();
+
+    private volatile boolean running = true;
+
+    private ScheduledFuture<?> reaperFuture;
+
+    private ScheduledFuture<?> flushFuture;
+
+    private ScheduledFuture<?> renewFuture;
+
+    private long nextRenewAt = Long.MAX_VALUE;
+
+    // 已有待执行的立即回收时为true，启动时连续注册的队列合并为一次回收
+    private final AtomicBoolean reapRequested = new AtomicBoolean();
+
+    private final LongAdder renewed = new LongAdder();
+
+    private final LongAdder reaped = new LongAdder();
+
+    private final LongAdder reaperQueries = new LongAdder();
+
+    @PostConstruct
+    public void init() {
+        reaperFuture = listenerExecutor.scheduleWithFixedDelay(this::reapExpiredLeases, reaperIntervalSeconds, reaperIntervalSeconds, TimeUnit.SECONDS);
+        long flushMillis = Math.max(1, flushIntervalMillis);
+        flushFuture = listenerExecutor.scheduleWithFixedDelay(this::flushStatusBuffers, flushMillis, flushMillis, TimeUnit.MILLISECONDS);
+        scheduleRenew(renewIntervalMillis());
+    }
+
+    /**
+     * 注册队列并立即回收一次，接管宕机节点遗留的处理中消息；可在任意线程调用（运行时注册主题）
+     */
+    public void register(Target target) {
+        Target previous = targets.put(target.getTopic(), target);
+        if (previous != null && previous != target) {
+            logger.warn("主题重复注册到维护任务，以后注册的队列为准，topic: {}", target.getTopic());
+        }
+        // 租约更短的队列需要更早续约
+        scheduleRenew(renewIntervalMillis());
+        if (reapRequested.compareAndSet(false, true)) {
+            try {
+                listenerExecutor.execute(() -> {
+                    reapRequested.set(false);
+                    reapExpiredLeases();
+                });
+            } catch (RejectedExecutionException e) {
+                reapRequested.set(false);
+            }
+        }
+    }
+
+    public void unregister(Target target) {
+        targets.remove(target.getTopic(), target);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        running = false;
+        if (reaperFuture != null) {
+            reaperFuture.cancel(false);
+        }
+        if (flushFuture != null) {
+            flushFuture.cancel(false);
+        }
+        synchronized (this) {
+            if (renewFuture != null) {
+                renewFuture.cancel(false);
+            }
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("targets", targets.size());
+        stats.put("renewIntervalMillis", renewIntervalMillis());
+        stats.put("reaperIntervalSeconds", reaperIntervalSeconds);
+        stats.put("flushIntervalMillis", Math.max(1, flushIntervalMillis));
+        stats.put("renewed", renewed.sum());
+        stats.put("reaped", reaped.sum());
+        stats.put("reaperQueries", reaperQueries.sum());
+        return stats;
+    }
+
+    /**
+     * 续约间隔：注册队列中最短租约的三分之一
+     */
+    private long renewIntervalMillis() {
+        long leaseSeconds = defaultLeaseSeconds;
+        for (Target target : targets.values()) {
+            leaseSeconds = Math.min(leaseSeconds, target.getLeaseSeconds());
+        }
+        return Math.max(1, TimeUnit.SECONDS.toMillis(leaseSeconds) / 3);
+    }
+
+    /**
+     * 调度下一次续约，已有更早的调度时保留原调度
+     */
+    private void scheduleRenew(long delayMillis) {
+        if (!running) {
+            return;
+        }
+        synchronized (this) {
+            long renewAt = System.currentTimeMillis() + delayMillis;
+            if (renewFuture != null && !renewFuture.isDone()) {
+                if (nextRenewAt <= renewAt || !renewFuture.cancel(false)) {
+                    return;
+                }
+            }
+            try {
+                nextRenewAt = renewAt;
+                renewFuture = listenerExecutor.schedule(this::renewLeases, delayMillis, TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException e) {
+                logger.info("监听线程池已关闭，停止续约");
+            }
+        }
+    }
+
+    /**
+     * 续约各队列处理中、且已持有超过三分之一租约时长的消息，租约时长相同的队列合并为一条 UPDATE
+     */
+    private void renewLeases() {
+        synchronized (this) {
+            renewFuture = null;
+            nextRenewAt = Long.MAX_VALUE;
+        }
+        try {
+            long now = System.currentTimeMillis();
+            Map<Long, Map<Target, List<String>>> due = new HashMap<>();
+            for (Target target : targets.values()) {
+                long leaseSeconds = target.getLeaseSeconds();
+                long threshold = now - TimeUnit.SECONDS.toMillis(leaseSeconds) / 3;
+                target.leasedMessages().forEach((messageId, leasedAt) -> {
+                    if (leasedAt <= threshold) {
+                        due.computeIfAbsent(leaseSeconds, k -> new HashMap<>())
+                                .computeIfAbsent(target, k -> new ArrayList<>()).add(messageId);
+                    }
+                });
+            }
+            due.forEach(this::renew);
+        } finally {
+            scheduleRenew(renewIntervalMillis());
+        }
+    }
+
+    private void renew(long leaseSeconds, Map<Target, List<String>> byTarget) {
+        List<String> messageIds = new ArrayList<>();
+        byTarget.values().forEach(messageIds::addAll);
+        try {
+            int count = delayedMessageService.renewLeases(messageIds, LocalDateTime.now().plusSeconds(leaseSeconds));
+            long renewedAt = System.currentTimeMillis();
+            byTarget.forEach((target, ids) -> ids.forEach(messageId -> target.leasedMessages().replace(messageId, renewedAt)));
+            renewed.add(count);
+            logger.debug("续约处理中消息，leaseSeconds: {}, count: {}, renewed: {}", leaseSeconds, messageIds.size(), count);
+        } catch (Exception e) {
+            logger.error("续约处理中消息失败，leaseSeconds: {}, count: {}", leaseSeconds, messageIds.size(), e);
+        }
+    }
+
+    /**
+     * 回收租约已过期的处理中消息（处理节点宕机或任务异常中断）：所有主题一次查询，分页条件恢复为未处理后按主题交给队列写回。
+     * 多个节点同时回收同一条消息时会重复写入，由处理时的抢占/状态检查过滤
+     */
+    private synchronized void reapExpiredLeases() {
+        if (!running || targets.isEmpty()) {
+            return;
+        }
+        try {
+            LocalDateTime now = LocalDateTime.now();
+            List<DelayedMessage> messages;
+            do {
+                messages = delayedMessageService.findExpiredLeases(new ArrayList<>(targets.keySet()), now, reaperBatchSize);
+                reaperQueries.increment();
+                if (messages.isEmpty()) {
+                    break;
+                }
+                List<String> messageIds = new ArrayList<>(messages.size());
+                Map<String, List<DelayedMessage>> byTopic = new HashMap<>();
+                for (DelayedMessage message : messages) {
+                    messageIds.add(message.getMessageId());
+                    byTopic.computeIfAbsent(message.getTopic(), k -> new ArrayList<>()).add(message);
+                }
+                delayedMessageService.releaseExpiredLeases(messageIds, now);
+                byTopic.forEach(this::requeue);
+                reaped.add(messages.size());
+            } while (messages.size() == reaperBatchSize && running);
+        } catch (Exception e) {
+            logger.error("回收租约过期消息异常", e);
+        }
+    }
+
+    private void requeue(String topic, List<DelayedMessage> messages) {
+        Target target = targets.get(topic);
+        if (target == null) {
+            // 查询后主题已注销：消息已恢复为未处理，由该主题下次启动恢复写回
+            logger.warn("回收的消息所属主题已注销，topic: {}, count: {}", topic, messages.size());
+            return;
+        }
+        try {
+            target.requeue(messages);
+        } catch (Exception e) {
+            logger.error("写回租约过期消息失败，topic: {}, count: {}", topic, messages.size(), e);
+        }
+    }
+
+    /**
+     * 定时刷新各队列的写后缓冲，刷新失败不影响其他队列和后续刷新
+     */
+    private void flushStatusBuffers() {
+        for (Target target : targets.values()) {
+            StatusWriteBehindBuffer buffer = target.statusBuffer();
+            if (buffer == null) {
+                continue;
+            }
+            try {
+                buffer.flush();
+            } catch (Exception e) {
+                logger.error("刷新状态写后缓冲异常，topic: {}", target.getTopic(), e);
+            }
+        }
+    }
+}
@@ -0,0 +1,255 @@
+package com.wdwlx.service;
+
+import com.wdwlx.config.QueueProcessorExecutor;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.HistogramSnapshot;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * 单个延时队列的Micrometer指标，所有指标以 queue 标签区分队列，通过 /actuator/metrics 暴露
+ */
+public class DelayedQueueMetrics {
+
+    private static final String PREFIX = "delayed.queue.";
+
+    private final Counter enqueued;
+
+    /**
+     * 到期到派发的延迟（派发时间 - expireTime）
+     */
+    private final Timer dispatchLag;
+
+    private final Counter dispatchedEarly;
+
+    private final Timer lockWait;
+
+    private final Timer dbLookup;
+
+    private final Timer dbClaim;
+
+    private final Timer handler;
+
+    private final Counter processedSuccess;
+
+    private final Counter processedFailure;
+
+    private final Counter retried;
+
+    private final Counter deadLettered;
+
+    private final Counter reaped;
+
+    private final Counter cancelled;
+
+    private final Counter rescheduled;
+
+    private final Counter dedupeCacheHit;
+
+    private final Counter dedupeCacheMiss;
+
+    private final MeterRegistry registry;
+
+    private final String queueName;
+
+    public DelayedQueueMetrics(MeterRegistry registry, String queueName, Supplier<QueueProcessorExecutor> executor) {
+        this.registry = registry;
+        this.queueName = queueName;
+        this.enqueued = Counter.builder(PREFIX + "enqueued")
+                .description("写入延时队列的消息数")
+                .tag("queue", queueName)
+                .register(registry);
+        this.dispatchLag = Timer.builder(PREFIX + "dispatch.lag")
+                .description("消息到期到开始派发的延迟")
+                .tag("queue", queueName)
+                .publishPercentiles(0.5, 0.9, 0.99)
+                .publishPercentileHistogram()
+                .register(registry);
+        this.dispatchedEarly = Counter.builder(PREFIX + "dispatch.early")
+                .description("早于过期时间派发的消息数")
+                .tag("queue", queueName)
+                .register(registry);
+        this.lockWait = Timer.builder(PREFIX + "lock.wait")
+                .description("获取消息分布式锁的等待时间")
+                .tag("queue", queueName)
+                .register(registry);
+        this.dbLookup = Timer.builder(PREFIX + "db.lookup")
+                .description("按消息ID查询数据库的耗时")
+                .tag("queue", queueName)
+                .register(registry);
+        this.dbClaim = Timer.builder(PREFIX + "db.claim")
+                .description("抢占消息（条件状态更新）的耗时")
+                .tag("queue", queueName)
+                .register(registry);
+        this.handler = Timer.builder(PREFIX + "handler")
+                .description("业务处理逻辑耗时")
+                .tag("queue", queueName)
+                .publishPercentiles(0.5, 0.9, 0.99)
+                .publishPercentileHistogram()
+                .register(registry);
+        this.processedSuccess = Counter.builder(PREFIX + "processed")
+                .description("处理完成的消息数")
+                .tag("queue", queueName)
+                .tag("result", "success")
+                .register(registry);
+        this.processedFailure = Counter.builder(PREFIX + "processed")
+                .description("处理完成的消息数")
+                .tag("queue", queueName)
+                .tag("result", "failure")
+                .register(registry);
+        this.retried = Counter.builder(PREFIX + "retried")
+                .description("处理失败后按退避时间重新写入延时队列的消息数")
+                .tag("queue", queueName)
+                .register(registry);
+        this.deadLettered = Counter.builder(PREFIX + "dead.lettered")
+                .description("超过最大尝试次数转入死信队列的消息数")
+                .tag("queue", queueName)
+                .register(registry);
+        this.reaped = Counter.builder(PREFIX + "lease.reaped")
+                .description("租约过期后被回收重新派发的处理中消息数")
+                .tag("queue", queueName)
+                .register(registry);
+        this.cancelled = Counter.builder(PREFIX + "cancelled")
+                .description("到期前被取消的消息数")
+                .tag("queue", queueName)
+                .register(registry);
+        this.rescheduled = Counter.builder(PREFIX + "rescheduled")
+                .description("到期前被修改过期时间的消息数")
+                .tag("queue", queueName)
+                .register(registry);
+        this.dedupeCacheHit = Counter.builder(PREFIX + "dedupe.near.cache")
+                .description("去重本地近端缓存查询次数")
+                .tag("queue", queueName)
+                .tag("result", "hit")
+                .register(registry);
+        this.dedupeCacheMiss = Counter.builder(PREFIX + "dedupe.near.cache")
+                .description("去重本地近端缓存查询次数")
+                .tag("queue", queueName)
+                .tag("result", "miss")
+                .register(registry);
+        Gauge.builder(PREFIX + "executor.active", executor, e -> e.get() == null ? 0 : e.get().getActiveCount())
+                .description("处理执行器正在处理的任务数")
+                .tag("queue", queueName)
+                .register(registry);
+        Gauge.builder(PREFIX + "executor.queued", executor, e -> e.get() == null ? 0 : e.get().getQueueSize())
+                .description("处理执行器等待处理的任务数")
+                .tag("queue", queueName)
+                .register(registry);
+        Gauge.builder(PREFIX + "executor.available", executor, e -> e.get() == null ? 0 : e.get().availableSlots())
+                .description("处理执行器剩余可接收的任务数")
+                .tag("queue", queueName)
+                .register(registry);
+    }
+
+    /**
+     * 移除本队列的所有指标，运行时注销的主题不再上报，重新注册时按新的执行器重建
+     */
+    public void close() {
+        for (Meter meter : registry.getMeters()) {
+            if (meter.getId().getName().startsWith(PREFIX) && queueName.equals(meter.getId().getTag("queue"))) {
+                registry.remove(meter);
+            }
+        }
+    }
+
+    public void recordEnqueued(int count) {
+        enqueued.increment(count);
+    }
+
+    /**
+     * 记录到期到派发的延迟
+     *
+     * @param lagMillis 派发时间 - expireTime，负数表示提前派发
+     */
+    public void recordDispatchLag(long lagMillis) {
+        if (lagMillis < 0) {
+            dispatchedEarly.increment();
+            lagMillis = 0;
+        }
+        dispatchLag.record(lagMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public Timer lockWait() {
+        return lockWait;
+    }
+
+    public Timer dbLookup() {
+        return dbLookup;
+    }
+
+    public Timer dbClaim() {
+        return dbClaim;
+    }
+
+    public void recordHandler(long nanos, boolean success) {
+        handler.record(nanos, TimeUnit.NANOSECONDS);
+        (success ? processedSuccess : processedFailure).increment();
+    }
+
+    public void recordRetried() {
+        retried.increment();
+    }
+
+    public void recordDeadLettered() {
+        deadLettered.increment();
+    }
+
+    public void recordReaped(int count) {
+        reaped.increment(count);
+    }
+
+    public void recordCancelled() {
+        cancelled.increment();
+    }
+
+    public void recordRescheduled() {
+        rescheduled.increment();
+    }
+
+    public void recordDedupeCache(boolean hit) {
+        (hit ? dedupeCacheHit : dedupeCacheMiss).increment();
+    }
+
+    /**
+     * 获取指标摘要，用于队列统计信息
+     */
+    public Map<String, Object> snapshot() {
+        Map<String, Object> snapshot = new LinkedHashMap<>();
+        snapshot.put("enqueued", (long) enqueued.count());
+        snapshot.put("processedSuccess", (long) processedSuccess.count());
+        snapshot.put("processedFailure", (long) processedFailure.count());
+        snapshot.put("retried", (long) retried.count());
+        snapshot.put("deadLettered", (long) deadLettered.count());
+        snapshot.put("leaseReaped", (long) reaped.count());
+        snapshot.put("cancelled", (long) cancelled.count());
+        snapshot.put("rescheduled", (long) rescheduled.count());
+        snapshot.put("dedupeCacheHits", (long) dedupeCacheHit.count());
+        snapshot.put("dedupeCacheMisses", (long) dedupeCacheMiss.count());
+        snapshot.put("dispatchLagMs", timerSnapshot(dispatchLag));
+        snapshot.put("handlerMs", timerSnapshot(handler));
+        snapshot.put("lockWaitMeanMs", lockWait.mean(TimeUnit.MILLISECONDS));
+        snapshot.put("dbLookupMeanMs", dbLookup.mean(TimeUnit.MILLISECONDS));
+        snapshot.put("dbClaimMeanMs", dbClaim.mean(TimeUnit.MILLISECONDS));
+        return snapshot;
+    }
+
+    private static Map<String, Object> timerSnapshot(Timer timer) {
+        HistogramSnapshot histogram = timer.takeSnapshot();
+        Map<String, Object> snapshot = new LinkedHashMap<>();
+        snapshot.put("count", histogram.count());
+        snapshot.put("mean", histogram.mean(TimeUnit.MILLISECONDS));
+        for (ValueAtPercentile percentile : histogram.percentileValues()) {
+            snapshot.put("p" + Math.round(percentile.percentile() * 100), percentile.value(TimeUnit.MILLISECONDS));
+        }
+        snapshot.put("max", histogram.max(TimeUnit.MILLISECONDS));
+        return snapshot;
+    }
+}
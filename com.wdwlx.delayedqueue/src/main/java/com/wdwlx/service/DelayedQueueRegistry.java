@@ -0,0 +1,237 @@
+package com.wdwlx.service;
+
+import com.wdwlx.entity.DelayedTopicConfig;
+import com.wdwlx.util.DedupeNearCache;
+import com.wdwlx.util.RotatingBloomFilter;
+import jakarta.annotation.PreDestroy;
+import org.redisson.api.RedissonClient;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.AutowireCapableBeanFactory;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+
+/**
+ * 主题注册表：主题 → 队列服务，路由为一次哈希查找
+ * <p>
+ * 继承 {@link AbstractDelayedQueueService} 的bean启动后按主题登记；其余主题以 {@link DelayedMessageHandler}
+ * 注册，可在 delayed.queue.topics 下配置（handler 为处理逻辑的bean名称），也可运行时调用 {@link #register}。
+ * 注册的主题不是Spring bean，检查由共享派发器完成，去重共用一个布隆过滤器和近端缓存（去重键带主题前缀），
+ * 租约续约、回收和状态写后缓冲刷新由共享维护任务完成，增加主题不再增加定时任务、布隆过滤器和发布订阅
+ **/
+@Component
+public class DelayedQueueRegistry implements SmartInitializingSingleton {
+
+    private static final Logger logger = LoggerFactory.getLogger(DelayedQueueRegistry.class);
+
+    // 注册主题共用的去重组件名称
+    private static final String SHARED_DEDUPE_NAME = "delayed_queue_topics";
+
+    @Autowired
+    private AutowireCapableBeanFactory beanFactory;
+
+    @Autowired
+    private Environment environment;
+
+    @Autowired
+    private List<AbstractDelayedQueueService> beanServices;
+
+    // 以下依赖仅用于保证注册表先于它们销毁，注册的主题在销毁时仍可写回状态和取消检查
+    @Autowired
+    private RedissonClient redissonClient;
+
+    @Autowired
+    private DelayedMessageService delayedMessageService;
+
+    @Autowired
+    private DelayedQueueDispatcher dispatcher;
+
+    @Autowired
+    private DelayedQueueHousekeeper housekeeper;
+
+    @Autowired
+    @Qualifier("delayedQueueListenerExecutor")
+    private ScheduledExecutorService listenerExecutor;
+
+    // 注册主题是否共用一个去重布隆过滤器和近端缓存，关闭时每个去重主题独立创建
+    @Value("${delayed.queue.registry.shared-dedupe:true}")
+    private boolean sharedDedupe;
+
+    // 共用布隆过滤器单个时间窗口内预计写入的消息数（所有注册主题合计）
+    @Value("${delayed.queue.registry.bloom-filter-size:1000000}")
+    private long sharedBloomFilterSize;
+
+    @Value("${delayed.queue.bloom.false-probability:0.01}")
+    private double bloomFalseProbability;
+
+    @Value("${delayed.queue.bloom.window-hours:24}")
+    private long bloomWindowHours;
+
+    @Value("${delayed.queue.bloom.generations:2}")
+    private int bloomGenerations;
+
+    @Value("${delayed.queue.bloom.local-mirror:true}")
+    private boolean bloomLocalMirror;
+
+    @Value("${delayed.queue.dedupe.near-cache.enabled:true}")
+    private boolean dedupeNearCacheEnabled;
+
+    @Value("${delayed.queue.dedupe.near-cache.capacity:10000}")
+    private int dedupeNearCacheCapacity;
+
+    @Value("${delayed.queue.dedupe.near-cache.ttl-seconds:300}")
+    private long dedupeNearCacheTtlSeconds;
+
+    private final Map<String, AbstractDelayedQueueService> services = new ConcurrentHashMap<>();
+
+    // 运行时注册的主题，注销和销毁时由注册表关闭
+    private final Set<String> registeredTopics = ConcurrentHashMap.newKeySet();
+
+    // delayed.queue.topics 下的主题配置
+    private Map<String, DelayedTopicConfig> topicConfigs = Collections.emptyMap();
+
+    private RotatingBloomFilter bloomFilter;
+
+    private DedupeNearCache dedupeNearCache;
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        for (AbstractDelayedQueueService service : beanServices) {
+            if (services.putIfAbsent(service.getTopic(), service) != null) {
+                throw new IllegalStateException("主题重复: " + service.getTopic());
+            }
+        }
+        topicConfigs = Binder.get(environment)
+                .bind("delayed.queue.topics", Bindable.mapOf(String.class, DelayedTopicConfig.class))
+                .orElse(Collections.emptyMap());
+        for (Map.Entry<String, DelayedTopicConfig> entry : topicConfigs.entrySet()) {
+            DelayedTopicConfig config = entry.getValue();
+            if (config.getTopic() == null) {
+                config.setTopic(entry.getKey());
+            }
+            if (config.getHandler() != null) {
+                register(config, beanFactory.getBean(config.getHandler(), DelayedMessageHandler.class));
+            }
+        }
+        logger.info("主题注册表初始化完成，bean队列: {}, 注册主题: {}", beanServices.size(), registeredTopics.size());
+    }
+
+    /**
+     * 注册主题，delayed.queue.topics 下有该主题的配置时使用配置，否则使用默认配置
+     */
+    public AbstractDelayedQueueService register(String topic, DelayedMessageHandler handler) {
+        DelayedTopicConfig config = topicConfigs.get(topic);
+        return register(config != null ? config : new DelayedTopicConfig(topic), handler);
+    }
+
+    /**
+     * 按配置注册主题：创建队列服务并完成依赖注入和初始化（恢复未处理消息），
+     * 主题或队列名已被占用时抛出 IllegalArgumentException
+     */
+    public synchronized AbstractDelayedQueueService register(DelayedTopicConfig config, DelayedMessageHandler handler) {
+        String topic = config.getTopic();
+        if (topic == null || topic.isEmpty()) {
+            throw new IllegalArgumentException("主题不能为空");
+        }
+        if (services.containsKey(topic)) {
+            throw new IllegalArgumentException("主题已注册: " + topic);
+        }
+        for (AbstractDelayedQueueService service : services.values()) {
+            if (service.getQueueName().equals(config.resolveQueueName())) {
+                throw new IllegalArgumentException("队列名已被主题 " + service.getTopic() + " 使用: " + config.resolveQueueName());
+            }
+        }
+        if (config.isDedupe()) {
+            ensureSharedDedupe();
+        }
+        TopicDelayedQueueService service = new TopicDelayedQueueService(config, handler, bloomFilter, dedupeNearCache);
+        beanFactory.autowireBean(service);
+        try {
+            beanFactory.initializeBean(service, config.resolveQueueName());
+        } catch (RuntimeException e) {
+            service.destroy();
+            throw e;
+        }
+        services.put(topic, service);
+        registeredTopics.add(topic);
+        logger.info("注册主题: {}, queue: {}", topic, config.resolveQueueName());
+        return service;
+    }
+
+    /**
+     * 注销运行时注册的主题：停止检查并等待处理中的消息完成，未处理的消息保留在Redis和数据库中，重新注册后继续派发
+     *
+     * @return 主题不是运行时注册的（不存在或为bean队列）时返回 false
+     */
+    public synchronized boolean unregister(String topic) {
+        if (!registeredTopics.remove(topic)) {
+            return false;
+        }
+        AbstractDelayedQueueService service = services.remove(topic);
+        service.destroy();
+        logger.info("注销主题: {}", topic);
+        return true;
+    }
+
+    /**
+     * 主题对应的队列服务，未注册时返回 null
+     */
+    public AbstractDelayedQueueService get(String topic) {
+        return topic == null ? null : services.get(topic);
+    }
+
+    public Collection<AbstractDelayedQueueService> getServices() {
+        return Collections.unmodifiableCollection(services.values());
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("topics", services.size());
+        stats.put("registeredTopics", new ArrayList<>(registeredTopics));
+        stats.put("sharedDedupe", bloomFilter != null);
+        return stats;
+    }
+
+    @PreDestroy
+    public synchronized void destroy() {
+        for (String topic : new ArrayList<>(registeredTopics)) {
+            unregister(topic);
+        }
+        if (bloomFilter != null) {
+            bloomFilter.close();
+        }
+        if (dedupeNearCache != null) {
+            dedupeNearCache.close();
+        }
+    }
+
+    private void ensureSharedDedupe() {
+        if (!sharedDedupe || bloomFilter != null) {
+            return;
+        }
+        bloomFilter = new RotatingBloomFilter(redissonClient, SHARED_DEDUPE_NAME, sharedBloomFilterSize, bloomFalseProbability,
+                Duration.ofHours(bloomWindowHours), bloomGenerations, bloomLocalMirror);
+        bloomFilter.start();
+        if (dedupeNearCacheEnabled) {
+            dedupeNearCache = new DedupeNearCache(redissonClient, SHARED_DEDUPE_NAME, dedupeNearCacheCapacity, Duration.ofSeconds(dedupeNearCacheTtlSeconds));
+            dedupeNearCache.start();
+        }
+    }
+}
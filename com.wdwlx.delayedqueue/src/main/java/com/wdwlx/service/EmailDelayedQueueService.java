@@ -19,11 +19,26 @@ public class EmailDelayedQueueService extends AbstractDelayedQueueService {
         return 100_000;
     }
 
+    @Override
+    protected int getProcessorConcurrency() {
+        return 5;
+    }
+
+    @Override
+    protected int getProcessorQueueCapacity() {
+        return 200;
+    }
+
     @Override
     protected String getQueueName() {
         return "email_delayed_queue";
     }
 
+    @Override
+    protected String getTopic() {
+        return "email";
+    }
+
     @Override
     protected boolean repeatedMessage() {
         return false;
@@ -0,0 +1,579 @@
+package com.wdwlx.service;
+
+import com.wdwlx.entity.DelayedMessage;
+import com.wdwlx.util.MessageJournal;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * 基于本地消息日志（{@link MessageJournal}）的消息存储，delayed.queue.store=journal 时替代MySQL存储
+ * <p>
+ * 所有消息的最新版本保存在内存索引中（消息ID、主题+bizId、主题+未处理状态按id排序、处理中消息按租约到期时间排序），查询不访问磁盘；
+ * 每次变更追加一条消息快照，条件更新在同一把锁内判断并追加，语义与MySQL存储的条件UPDATE一致，写入方等待组提交刷盘后返回。
+ * 已写满段中有效记录的总占比低于阈值时，压缩任务从最旧的段开始把仍有效的消息重新追加到当前段后删除该段，
+ * 超过保留时长的终态消息（已处理、死信、已取消）在压缩时丢弃
+ * <p>
+ * 日志只在本机，适用于单节点部署：多个节点共用Redis队列时各节点读不到其他节点写入的消息
+ **/
+@Service
+@ConditionalOnProperty(name = "delayed.queue.store", havingValue = "journal")
+public class JournalDelayedMessageService implements DelayedMessageService {
+
+    private static final Logger logger = LoggerFactory.getLogger(JournalDelayedMessageService.class);
+
+    @Autowired
+    @Qualifier("delayedQueueListenerExecutor")
+    private ScheduledExecutorService listenerExecutor;
+
+    // 日志目录
+    @Value("${delayed.queue.journal.dir:./data/journal}")
+    private String journalDir;
+
+    // 单段文件大小
+    @Value("${delayed.queue.journal.segment-size-mb:64}")
+    private int segmentSizeMb;
+
+    // 写入方是否等待刷盘（组提交），关闭时按刷盘间隔异步刷盘，宕机可能丢失最近一个间隔内的写入
+    @Value("${delayed.queue.journal.sync-writes:true}")
+    private boolean syncWrites;
+
+    @Value("${delayed.queue.journal.flush-interval-millis:100}")
+    private long flushIntervalMillis;
+
+    // 压缩任务执行间隔
+    @Value("${delayed.queue.journal.compaction-interval-seconds:60}")
+    private long compactionIntervalSeconds;
+
+    // 已写满段中有效记录的总占比低于该值时压缩
+    @Value("${delayed.queue.journal.compaction-threshold:0.5}")
+    private double compactionThreshold;
+
+    // 终态消息的保留时长，期间仍参与bizId去重查询
+    @Value("${delayed.queue.journal.retention-hours:24}")
+    private long retentionHours;
+
+    private MessageJournal journal;
+
+    private final Object lock = new Object();
+
+    // 消息ID → 最新版本
+    private final Map<String, Entry> messages = new ConcurrentHashMap<>();
+
+    // 主题:bizId → 消息ID
+    private final Map<String, Set<String>> bizIndex = new ConcurrentHashMap<>();
+
+    // 主题:状态 → (id → 消息ID)，只索引未处理(0)，供分页恢复使用
+    private final Map<String, ConcurrentSkipListMap<Long, String>> statusIndex = new ConcurrentHashMap<>();
+
+    // (租约到期时间, id) → 消息ID，只索引有租约的处理中(2)消息，租约回收从最早到期的一端读取，不扫描处理中消息
+    private final ConcurrentSkipListMap<LeaseKey, String> leaseIndex = new ConcurrentSkipListMap<>();
+
+    private long maxId;
+
+    private ScheduledFuture<?> compactionFuture;
+
+    @PostConstruct
+    public void init() throws IOException {
+        journal = new MessageJournal(Paths.get(journalDir), segmentSizeMb * 1024 * 1024, syncWrites, flushIntervalMillis);
+        journal.open(new MessageJournal.ReplayHandler() {
+            @Override
+            public void onRecord(int segment, String messageId, DelayedMessage message) {
+                if (message == null) {
+                    remove(messageId);
+                } else {
+                    put(message, segment);
+                    maxId = Math.max(maxId, message.getId());
+                }
+            }
+
+            @Override
+            public void onIdMark(long markedId) {
+                // 压缩可能丢弃了最大id的终态消息，以标记为准
+                maxId = Math.max(maxId, markedId);
+            }
+        });
+        logger.info("消息日志加载完成，dir: {}, messages: {}, maxId: {}", journalDir, messages.size(), maxId);
+        compactionFuture = listenerExecutor.scheduleWithFixedDelay(this::compact, compactionIntervalSeconds, compactionIntervalSeconds, TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (compactionFuture != null) {
+            compactionFuture.cancel(false);
+        }
+        synchronized (lock) {
+            journal.close();
+        }
+    }
+
+    @Override
+    public boolean save(DelayedMessage message) {
+        saveAll(Collections.singletonList(message));
+        return true;
+    }
+
+    @Override
+    public boolean saveAll(List<DelayedMessage> messages) {
+        if (messages.isEmpty()) {
+            return true;
+        }
+        long seq;
+        synchronized (lock) {
+            // 与唯一索引一致：任一消息ID已存在时整批不写入
+            Set<String> messageIds = new HashSet<>();
+            for (DelayedMessage message : messages) {
+                if (this.messages.containsKey(message.getMessageId()) || !messageIds.add(message.getMessageId())) {
+                    throw new DuplicateKeyException("消息ID已存在: " + message.getMessageId());
+                }
+            }
+            seq = 0;
+            for (DelayedMessage message : messages) {
+                message.setId(++maxId);
+                if (message.getStatus() == null) {
+                    message.setStatus(0);
+                }
+                if (message.getAttempts() == null) {
+                    message.setAttempts(0);
+                }
+                seq = append(copyOf(message));
+            }
+        }
+        journal.sync(seq);
+        return true;
+    }
+
+    @Override
+    public DelayedMessage findByMessageId(String messageId) {
+        Entry entry = messageId == null ? null : messages.get(messageId);
+        return entry == null ? null : copyOf(entry.message);
+    }
+
+    @Override
+    public List<DelayedMessage> findUnprocessedMessages(String topic, long lastId, int limit) {
+        return findByStatus(topic, 0, lastId, limit);
+    }
+
+    @Override
+    public boolean updateStatus(String messageId, int status) {
+        return update(messageId, message -> true, message -> {
+            message.setStatus(status);
+            message.setProcessTime(LocalDateTime.now());
+        });
+    }
+
+    @Override
+    public int markProcessed(Collection<String> messageIds) {
+        LocalDateTime now = LocalDateTime.now();
+        return updateAll(messageIds, message -> message.getStatus() == 2, message -> {
+            message.setStatus(1);
+            message.setProcessTime(now);
+        });
+    }
+
+    @Override
+    public boolean scheduleRetry(String messageId, int attempts, LocalDateTime retryTime) {
+        return update(messageId, message -> message.getStatus() == 2, message -> {
+            message.setStatus(0);
+            message.setAttempts(attempts);
+            message.setExpireTime(retryTime);
+            message.setProcessTime(LocalDateTime.now());
+        });
+    }
+
+    @Override
+    public boolean markDead(String messageId, int attempts) {
+        return update(messageId, message -> message.getStatus() == 2, message -> {
+            message.setStatus(3);
+            message.setAttempts(attempts);
+            message.setProcessTime(LocalDateTime.now());
+        });
+    }
+
+    @Override
+    public boolean claim(String messageId, LocalDateTime dueTime, LocalDateTime leaseExpireTime) {
+        return update(messageId, message -> message.getStatus() == 0 && !message.getExpireTime().isAfter(dueTime), message -> {
+            message.setStatus(2);
+            message.setLeaseExpireTime(leaseExpireTime);
+            message.setProcessTime(LocalDateTime.now());
+        });
+    }
+
+    @Override
+    public boolean acquireLease(String messageId, LocalDateTime dueTime, LocalDateTime leaseExpireTime) {
+        return update(messageId, message -> (message.getStatus() == 0 || message.getStatus() == 2) && !message.getExpireTime().isAfter(dueTime), message -> {
+            message.setStatus(2);
+            message.setLeaseExpireTime(leaseExpireTime);
+            message.setProcessTime(LocalDateTime.now());
+        });
+    }
+
+    @Override
+    public boolean cancel(String messageId, String topic) {
+        return update(messageId, message -> topic.equals(message.getTopic()) && message.getStatus() == 0, message -> {
+            message.setStatus(4);
+            message.setProcessTime(LocalDateTime.now());
+        });
+    }
+
+    @Override
+    public boolean reschedule(String messageId, String topic, LocalDateTime expireTime) {
+        return update(messageId, message -> topic.equals(message.getTopic()) && message.getStatus() == 0,
+                message -> message.setExpireTime(expireTime));
+    }
+
+    @Override
+    public int renewLeases(Collection<String> messageIds, LocalDateTime leaseExpireTime) {
+        return updateAll(messageIds, message -> message.getStatus() == 2, message -> message.setLeaseExpireTime(leaseExpireTime));
+    }
+
+    @Override
+    public List<DelayedMessage> findExpiredLeases(Collection<String> topics, LocalDateTime now, int limit) {
+        List<DelayedMessage> expired = new ArrayList<>();
+        if (topics.isEmpty()) {
+            return expired;
+        }
+        Set<String> topicSet = topics instanceof Set ? (Set<String>) topics : new HashSet<>(topics);
+        // 到期时间早于 now 的键都在 (now, 最小id) 之前
+        for (String messageId : leaseIndex.headMap(new LeaseKey(now, Long.MIN_VALUE)).values()) {
+            Entry entry = messages.get(messageId);
+            // 索引与最新版本之间可能有并发变更，以最新版本为准
+            if (entry == null || entry.message.getStatus() != 2 || !topicSet.contains(entry.message.getTopic())
+                    || entry.message.getLeaseExpireTime() == null || !entry.message.getLeaseExpireTime().isBefore(now)) {
+                continue;
+            }
+            expired.add(copyOf(entry.message));
+            if (expired.size() >= limit) {
+                break;
+            }
+        }
+        return expired;
+    }
+
+    @Override
+    public int releaseExpiredLeases(Collection<String> messageIds, LocalDateTime now) {
+        return updateAll(messageIds,
+                message -> message.getStatus() == 2 && message.getLeaseExpireTime() != null && message.getLeaseExpireTime().isBefore(now),
+                message -> {
+                    message.setStatus(0);
+                    message.setLeaseExpireTime(null);
+                });
+    }
+
+    @Override
+    public boolean deleteByMessageId(String messageId) {
+        long seq;
+        synchronized (lock) {
+            if (!messages.containsKey(messageId)) {
+                return false;
+            }
+            seq = journal.appendDelete(messageId);
+            remove(messageId);
+        }
+        journal.sync(seq);
+        return true;
+    }
+
+    @Override
+    public List<DelayedMessage> findByBizId(String bizId, String topic) {
+        return findByBizIds(Collections.singletonList(bizId), topic);
+    }
+
+    @Override
+    public List<DelayedMessage> findByBizIds(Collection<String> bizIds, String topic) {
+        if (bizIds == null || bizIds.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<DelayedMessage> result = new ArrayList<>();
+        for (String bizId : bizIds) {
+            Set<String> messageIds = bizIndex.get(topic + ":" + bizId);
+            if (messageIds == null) {
+                continue;
+            }
+            for (String messageId : messageIds) {
+                DelayedMessage message = findByMessageId(messageId);
+                if (message != null) {
+                    result.add(message);
+                }
+            }
+        }
+        return result;
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>(journal.getStats());
+        stats.put("messages", messages.size());
+        return stats;
+    }
+
+    /**
+     * 条件更新单条消息：当前版本满足条件时追加修改后的快照，等待刷盘后返回
+     */
+    private boolean update(String messageId, Predicate<DelayedMessage> condition, Consumer<DelayedMessage> change) {
+        return messageId != null && updateAll(Collections.singletonList(messageId), condition, change) > 0;
+    }
+
+    /**
+     * 批量条件更新，同一批次共用一次刷盘
+     *
+     * @return 更新的条数
+     */
+    private int updateAll(Collection<String> messageIds, Predicate<DelayedMessage> condition, Consumer<DelayedMessage> change) {
+        if (messageIds == null || messageIds.isEmpty()) {
+            return 0;
+        }
+        int updated = 0;
+        long seq = 0;
+        synchronized (lock) {
+            for (String messageId : messageIds) {
+                Entry entry = messages.get(messageId);
+                if (entry == null || !condition.test(entry.message)) {
+                    continue;
+                }
+                DelayedMessage next = copyOf(entry.message);
+                change.accept(next);
+                seq = append(next);
+                updated++;
+            }
+        }
+        if (updated > 0) {
+            journal.sync(seq);
+        }
+        return updated;
+    }
+
+    private List<DelayedMessage> findByStatus(String topic, int status, long lastId, int limit) {
+        ConcurrentSkipListMap<Long, String> ids = statusIndex.get(topic + ":" + status);
+        if (ids == null) {
+            return new ArrayList<>();
+        }
+        List<DelayedMessage> result = new ArrayList<>();
+        for (String messageId : ids.tailMap(lastId, false).values()) {
+            Entry entry = messages.get(messageId);
+            // 索引与最新版本之间可能有并发变更，以最新版本为准
+            if (entry == null || entry.message.getStatus() != status) {
+                continue;
+            }
+            result.add(copyOf(entry.message));
+            if (result.size() >= limit) {
+                break;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 追加快照并更新索引，调用方持有 lock
+     */
+    private long append(DelayedMessage message) {
+        long seq = journal.append(message);
+        put(message, journal.activeSegment());
+        return seq;
+    }
+
+    private void put(DelayedMessage message, int segment) {
+        Entry previous = messages.put(message.getMessageId(), new Entry(message, segment));
+        if (previous != null) {
+            unindex(previous.message);
+        }
+        if (message.getBizId() != null) {
+            bizIndex.computeIfAbsent(message.getTopic() + ":" + message.getBizId(), k -> ConcurrentHashMap.newKeySet()).add(message.getMessageId());
+        }
+        if (isIndexedStatus(message.getStatus())) {
+            statusIndex.computeIfAbsent(message.getTopic() + ":" + message.getStatus(), k -> new ConcurrentSkipListMap<>())
+                    .put(message.getId(), message.getMessageId());
+        }
+        if (isLeased(message)) {
+            leaseIndex.put(new LeaseKey(message.getLeaseExpireTime(), message.getId()), message.getMessageId());
+        }
+    }
+
+    private void remove(String messageId) {
+        Entry previous = messages.remove(messageId);
+        if (previous == null) {
+            return;
+        }
+        unindex(previous.message);
+        if (previous.message.getBizId() != null) {
+            String bizKey = previous.message.getTopic() + ":" + previous.message.getBizId();
+            Set<String> messageIds = bizIndex.get(bizKey);
+            if (messageIds != null) {
+                messageIds.remove(messageId);
+                if (messageIds.isEmpty()) {
+                    bizIndex.remove(bizKey);
+                }
+            }
+        }
+    }
+
+    private void unindex(DelayedMessage message) {
+        if (isIndexedStatus(message.getStatus())) {
+            ConcurrentSkipListMap<Long, String> ids = statusIndex.get(message.getTopic() + ":" + message.getStatus());
+            if (ids != null) {
+                ids.remove(message.getId());
+            }
+        }
+        if (isLeased(message)) {
+            leaseIndex.remove(new LeaseKey(message.getLeaseExpireTime(), message.getId()));
+        }
+    }
+
+    private static boolean isIndexedStatus(Integer status) {
+        return status != null && status == 0;
+    }
+
+    private static boolean isLeased(DelayedMessage message) {
+        return message.getStatus() != null && message.getStatus() == 2 && message.getLeaseExpireTime() != null;
+    }
+
+    /**
+     * 压缩：已写满段中有效记录的总占比低于阈值时，从最旧的段开始逐段重新追加仍有效的消息、丢弃过了保留时长的终态消息，
+     * 刷盘后删除该段。只删除最旧的段，被删除段中的旧版本记录不会在回放时覆盖更新的版本；
+     * 按总占比而不是单段占比判断，仍有大量未到期消息的旧段不会阻塞其后已基本失效的段
+     */
+    private void compact() {
+        try {
+            LocalDateTime cutoff = LocalDateTime.now().minusHours(retentionHours);
+            Map<Integer, Integer> liveCounts = new HashMap<>();
+            for (Entry entry : messages.values()) {
+                if (!isExpired(entry.message, cutoff)) {
+                    liveCounts.merge(entry.segment, 1, Integer::sum);
+                }
+            }
+            List<Integer> sealed = journal.sealedSegments();
+            long sealedLive = 0;
+            long sealedRecords = 0;
+            for (Integer segment : sealed) {
+                sealedLive += liveCounts.getOrDefault(segment, 0);
+                sealedRecords += journal.recordCount(segment);
+            }
+            for (Integer segment : sealed) {
+                if (sealedRecords == 0 || sealedLive >= sealedRecords * compactionThreshold) {
+                    break;
+                }
+                sealedLive -= liveCounts.getOrDefault(segment, 0);
+                sealedRecords -= journal.recordCount(segment);
+                compactSegment(segment, cutoff);
+            }
+        } catch (Exception e) {
+            logger.error("消息日志压缩异常", e);
+        }
+    }
+
+    private void compactSegment(int segment, LocalDateTime cutoff) throws IOException {
+        int records = journal.recordCount(segment);
+        int rewritten = 0;
+        int dropped = 0;
+        synchronized (lock) {
+            for (Entry entry : new ArrayList<>(messages.values())) {
+                if (entry.segment != segment) {
+                    continue;
+                }
+                if (isExpired(entry.message, cutoff)) {
+                    remove(entry.message.getMessageId());
+                    dropped++;
+                } else {
+                    append(entry.message);
+                    rewritten++;
+                }
+            }
+            // 丢弃的记录中可能有最大id的消息，记录高水位后旧段才能删除
+            journal.appendIdMark(maxId);
+        }
+        // 重新追加的记录落盘后才能删除旧段
+        journal.force();
+        journal.deleteSegment(segment);
+        logger.info("压缩消息日志段, segment: {}, records: {}, rewritten: {}, dropped: {}", segment, records, rewritten, dropped);
+    }
+
+    /**
+     * 超过保留时长的终态消息
+     */
+    private static boolean isExpired(DelayedMessage message, LocalDateTime cutoff) {
+        return isTerminal(message) && (message.getProcessTime() == null || message.getProcessTime().isBefore(cutoff));
+    }
+
+    private static boolean isTerminal(DelayedMessage message) {
+        Integer status = message.getStatus();
+        return status != null && (status == 1 || status == 3 || status == 4);
+    }
+
+    private static DelayedMessage copyOf(DelayedMessage message) {
+        DelayedMessage copy = new DelayedMessage();
+        copy.setId(message.getId());
+        copy.setMessageId(message.getMessageId());
+        copy.setBizId(message.getBizId());
+        copy.setContent(message.getContent());
+        copy.setCreateTime(message.getCreateTime());
+        copy.setProcessTime(message.getProcessTime());
+        copy.setExpireTime(message.getExpireTime());
+        copy.setStatus(message.getStatus());
+        copy.setLeaseExpireTime(message.getLeaseExpireTime());
+        copy.setAttempts(message.getAttempts());
+        copy.setTopic(message.getTopic());
+        return copy;
+    }
+
+    /**
+     * 消息的最新版本及其记录所在的段，版本创建后不再修改
+     */
+    private static final class Entry {
+
+        private final DelayedMessage message;
+
+        private final int segment;
+
+        Entry(DelayedMessage message, int segment) {
+            this.message = message;
+            this.segment = segment;
+        }
+    }
+
+    /**
+     * 租约索引的键，按到期时间排序，到期时间相同时按id区分
+     */
+    private static final class LeaseKey implements Comparable<LeaseKey> {
+
+        private final LocalDateTime expireTime;
+
+        private final long id;
+
+        LeaseKey(LocalDateTime expireTime, long id) {
+            this.expireTime = expireTime;
+            this.id = id;
+        }
+
+        @Override
+        public int compareTo(LeaseKey other) {
+            int result = expireTime.compareTo(other.expireTime);
+            return result != 0 ? result : Long.compare(id, other.id);
+        }
+    }
+}
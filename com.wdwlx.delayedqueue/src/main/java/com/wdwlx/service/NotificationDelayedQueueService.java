@@ -13,6 +13,11 @@ public class NotificationDelayedQueueService extends AbstractDelayedQueueService
         return "notification_delayed_queue";
     }
 
+    @Override
+    protected String getTopic() {
+        return "notification";
+    }
+
     @Override
     protected long getCheckInterval() {
         return 100;
@@ -24,6 +29,16 @@ public class NotificationDelayedQueueService extends AbstractDelayedQueueService
         return 100_000;
     }
 
+    @Override
+    protected int getProcessorConcurrency() {
+        return 10;
+    }
+
+    @Override
+    protected int getProcessorQueueCapacity() {
+        return 500;
+    }
+
     @Override
     protected boolean repeatedMessage() {
         return false;
@@ -13,6 +13,11 @@ public class OrderDelayedQueueService extends AbstractDelayedQueueService {
         return "order_delayed_queue";
     }
 
+    @Override
+    protected String getTopic() {
+        return "order";
+    }
+
     @Override
     protected long getCheckInterval() {
         return 100;
@@ -24,6 +29,16 @@ public class OrderDelayedQueueService extends AbstractDelayedQueueService {
         return 100_000;
     }
 
+    @Override
+    protected int getProcessorConcurrency() {
+        return 20;
+    }
+
+    @Override
+    protected int getProcessorQueueCapacity() {
+        return 1000;
+    }
+
     @Override
     protected void handleMessage(DelayedMessage message) throws Exception {
         // 实现订单相关的延时处理逻辑
@@ -0,0 +1,141 @@
+package com.wdwlx.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntSupplier;
+
+/**
+ * 终态状态更新的写后缓冲：处理成功的消息ID先进入缓冲区，按批量大小或最长等待时间合并为一条
+ * UPDATE ... WHERE message_id IN (...) AND status = 2 写入数据库
+ * <p>
+ * 写入方拿到的future在所在批次提交后才完成，处理任务等待它完成后才结束（锁模式下才释放分布式锁），
+ * 因此任务结束时状态已持久化，重复条目不会因为读到处理中状态而被再次处理。
+ * 缓冲中的条目数达到正在处理的任务数时立即刷新：所有任务都在等待时不再空等定时触发。
+ * 定时刷新由 {@link DelayedQueueHousekeeper} 统一调用 {@link #flush()}，缓冲本身不创建定时任务
+ **/
+public class StatusWriteBehindBuffer {
+
+    private static final Logger logger = LoggerFactory.getLogger(StatusWriteBehindBuffer.class);
+
+    private final DelayedMessageService delayedMessageService;
+
+    private final String name;
+
+    private final int batchSize;
+
+    private final IntSupplier inFlight;
+
+    private final Object lock = new Object();
+
+    private List<Pending> pending = new ArrayList<>();
+
+    private final LongAdder flushes = new LongAdder();
+
+    private final LongAdder flushedMessages = new LongAdder();
+
+    private final LongAdder unmatchedMessages = new LongAdder();
+
+    /**
+     * @param delayedMessageService 消息存储
+     * @param name                  缓冲名称，用于日志
+     * @param batchSize             单条UPDATE最多合并的消息数，同时是缓冲区容量
+     * @param inFlight              正在处理的任务数，缓冲条目数达到该值时立即刷新
+     */
+    public StatusWriteBehindBuffer(DelayedMessageService delayedMessageService, String name, int batchSize, IntSupplier inFlight) {
+        this.delayedMessageService = delayedMessageService;
+        this.name = name;
+        this.batchSize = Math.max(1, batchSize);
+        this.inFlight = inFlight;
+    }
+
+    /**
+     * 登记处理完成（2 → 1），返回的future在所在批次提交后完成，批次失败时异常完成
+     */
+    public CompletableFuture<Void> markProcessed(String messageId) {
+        Pending entry = new Pending(messageId);
+        List<Pending> full = null;
+        synchronized (lock) {
+            pending.add(entry);
+            if (pending.size() >= batchSize || pending.size() >= inFlight.getAsInt()) {
+                full = swap();
+            }
+        }
+        // 达到批量大小的批次由写入线程直接提交，不等待定时刷新
+        if (full != null) {
+            write(full);
+        }
+        return entry.future;
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("batchSize", batchSize);
+        stats.put("flushes", flushes.sum());
+        stats.put("flushedMessages", flushedMessages.sum());
+        stats.put("unmatchedMessages", unmatchedMessages.sum());
+        return stats;
+    }
+
+    /**
+     * 写入缓冲中的全部条目，由定时刷新和队列关闭时调用
+     */
+    public void flush() {
+        List<Pending> batch;
+        synchronized (lock) {
+            if (pending.isEmpty()) {
+                return;
+            }
+            batch = swap();
+        }
+        write(batch);
+    }
+
+    private List<Pending> swap() {
+        List<Pending> batch = pending;
+        pending = new ArrayList<>(Math.min(batchSize, 64));
+        return batch;
+    }
+
+    private void write(List<Pending> batch) {
+        List<String> messageIds = new ArrayList<>(batch.size());
+        for (Pending entry : batch) {
+            messageIds.add(entry.messageId);
+        }
+        try {
+            int updated = delayedMessageService.markProcessed(messageIds);
+            flushes.increment();
+            flushedMessages.add(batch.size());
+            if (updated < batch.size()) {
+                // 状态已不是处理中（被其他节点处理完成或已转入死信），与逐条更新时一样不再改写
+                unmatchedMessages.add(batch.size() - updated);
+                logger.warn("批量更新处理状态部分未匹配，name: {}, 批次: {}, 更新: {}", name, batch.size(), updated);
+            }
+            for (Pending entry : batch) {
+                entry.future.complete(null);
+            }
+        } catch (Exception e) {
+            logger.error("批量更新处理状态失败，name: {}, 批次: {}", name, batch.size(), e);
+            for (Pending entry : batch) {
+                entry.future.completeExceptionally(e);
+            }
+        }
+    }
+
+    private static final class Pending {
+
+        private final String messageId;
+
+        private final CompletableFuture<Void> future = new CompletableFuture<>();
+
+        Pending(String messageId) {
+            this.messageId = messageId;
+        }
+    }
+}
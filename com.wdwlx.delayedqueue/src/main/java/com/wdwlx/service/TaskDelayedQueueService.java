@@ -13,6 +13,11 @@ public class TaskDelayedQueueService extends AbstractDelayedQueueService {
         return "task_delayed_queue";
     }
 
+    @Override
+    protected String getTopic() {
+        return "task";
+    }
+
     @Override
     protected long getCheckInterval() {
         return 100;
@@ -24,6 +29,16 @@ public class TaskDelayedQueueService extends AbstractDelayedQueueService {
         return 100_000;
     }
 
+    @Override
+    protected int getProcessorConcurrency() {
+        return 10;
+    }
+
+    @Override
+    protected int getProcessorQueueCapacity() {
+        return 1000;
+    }
+
     @Override
     protected boolean repeatedMessage() {
         return false;
@@ -42,6 +57,6 @@ public class TaskDelayedQueueService extends AbstractDelayedQueueService {
 
     @Override
     protected boolean shouldProcessBacklogMessages() {
-        return false; // 任务队列不需要处理积压消息
+        return false; // 任务队列的积压消息经调度集合搬运
     }
 }
@@ -0,0 +1,85 @@
+package com.wdwlx.service;
+
+import com.wdwlx.entity.DelayedMessage;
+import com.wdwlx.entity.DelayedTopicConfig;
+import com.wdwlx.util.DedupeNearCache;
+import com.wdwlx.util.RotatingBloomFilter;
+
+/**
+ * 由 {@link DelayedQueueRegistry} 按主题配置创建的队列，不注册为Spring bean，
+ * 处理逻辑为注册时传入的 {@link DelayedMessageHandler}，去重组件由所有注册主题共用
+ **/
+class TopicDelayedQueueService extends AbstractDelayedQueueService {
+
+    private final DelayedTopicConfig config;
+
+    private final DelayedMessageHandler handler;
+
+    private final RotatingBloomFilter bloomFilter;
+
+    private final DedupeNearCache dedupeNearCache;
+
+    TopicDelayedQueueService(DelayedTopicConfig config, DelayedMessageHandler handler,
+                             RotatingBloomFilter bloomFilter, DedupeNearCache dedupeNearCache) {
+        this.config = config;
+        this.handler = handler;
+        this.bloomFilter = bloomFilter;
+        this.dedupeNearCache = dedupeNearCache;
+    }
+
+    @Override
+    protected String getQueueName() {
+        return config.resolveQueueName();
+    }
+
+    @Override
+    protected String getTopic() {
+        return config.getTopic();
+    }
+
+    @Override
+    protected void handleMessage(DelayedMessage message) throws Exception {
+        handler.handle(message);
+    }
+
+    @Override
+    protected boolean shouldProcessBacklogMessages() {
+        return config.isProcessBacklog();
+    }
+
+    @Override
+    protected boolean repeatedMessage() {
+        return !config.isDedupe();
+    }
+
+    @Override
+    protected long getCheckInterval() {
+        return config.getCheckInterval();
+    }
+
+    @Override
+    protected long getBloomFilterSize() {
+        // 仅在未共用去重组件时生效
+        return 100_000;
+    }
+
+    @Override
+    protected int getProcessorConcurrency() {
+        return config.getConcurrency() != null ? config.getConcurrency() : super.getProcessorConcurrency();
+    }
+
+    @Override
+    protected int getProcessorQueueCapacity() {
+        return config.getQueueCapacity() != null ? config.getQueueCapacity() : super.getProcessorQueueCapacity();
+    }
+
+    @Override
+    protected RotatingBloomFilter sharedBloomFilter() {
+        return bloomFilter;
+    }
+
+    @Override
+    protected DedupeNearCache sharedDedupeNearCache() {
+        return dedupeNearCache;
+    }
+}
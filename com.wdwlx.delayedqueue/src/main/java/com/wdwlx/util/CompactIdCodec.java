@@ -0,0 +1,97 @@
+package com.wdwlx.util;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import org.redisson.client.codec.BaseCodec;
+import org.redisson.client.codec.Codec;
+import org.redisson.client.handler.State;
+import org.redisson.client.protocol.Decoder;
+import org.redisson.client.protocol.Encoder;
+
+import java.io.IOException;
+
+/**
+ * 延时队列条目编解码：数字消息ID写为定长8字节long，其余条目（内联消息等）交给原编解码器
+ * <p>
+ * 解码时按长度区分：8字节视为紧凑ID，其余交给原编解码器，因此同一队列中新旧两种格式可以共存，
+ * 开启或关闭紧凑写入都无需迁移已有条目（原编解码器序列化的19位ID和内联JSON都远长于8字节）
+ **/
+public class CompactIdCodec extends BaseCodec {
+
+    private static final int COMPACT_ID_BYTES = Long.BYTES;
+
+    private final Codec fallback;
+
+    private final boolean compactWrites;
+
+    private final Encoder encoder = new Encoder() {
+        @Override
+        public ByteBuf encode(Object in) throws IOException {
+            if (compactWrites && in instanceof String) {
+                Long id = parseId((String) in);
+                if (id != null) {
+                    ByteBuf out = ByteBufAllocator.DEFAULT.buffer(COMPACT_ID_BYTES);
+                    out.writeLong(id);
+                    return out;
+                }
+            }
+            return fallback.getValueEncoder().encode(in);
+        }
+    };
+
+    private final Decoder<Object> decoder = new Decoder<Object>() {
+        @Override
+        public Object decode(ByteBuf buf, State state) throws IOException {
+            if (buf.readableBytes() == COMPACT_ID_BYTES) {
+                return Long.toString(buf.readLong());
+            }
+            return fallback.getValueDecoder().decode(buf, state);
+        }
+    };
+
+    /**
+     * @param fallback      原编解码器，用于非ID条目以及已有条目的解码
+     * @param compactWrites 是否将数字ID写为8字节，关闭时写入格式与原编解码器一致，仅保留紧凑条目的解码能力
+     */
+    public CompactIdCodec(Codec fallback, boolean compactWrites) {
+        this.fallback = fallback;
+        this.compactWrites = compactWrites;
+    }
+
+    /**
+     * 解析为long，仅接受与 Long.toString 结果一致的规范十进制形式，保证解码后与原字符串相同
+     */
+    private static Long parseId(String value) {
+        int length = value.length();
+        if (length == 0 || length > 20) {
+            return null;
+        }
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if ((c < '0' || c > '9') && !(i == 0 && c == '-' && length > 1)) {
+                return null;
+            }
+        }
+        try {
+            long id = Long.parseLong(value);
+            return Long.toString(id).equals(value) ? id : null;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public Decoder<Object> getValueDecoder() {
+        return decoder;
+    }
+
+    @Override
+    public Encoder getValueEncoder() {
+        return encoder;
+    }
+
+    @Override
+    public ClassLoader getClassLoader() {
+        return fallback.getClassLoader();
+    }
+}
@@ -0,0 +1,94 @@
+package com.wdwlx.util;
+
+import cn.hutool.cache.CacheUtil;
+import cn.hutool.cache.impl.LRUCache;
+import org.redisson.api.RTopic;
+import org.redisson.api.RedissonClient;
+import org.redisson.api.listener.StatusListener;
+import org.redisson.client.codec.StringCodec;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+
+/**
+ * 去重结果的本地近端缓存，位于Redis去重缓存（delayed_msg_cache:）之前
+ * <p>
+ * 只缓存"消息已存在"的判定，容量按LRU淘汰，条目自写入起按TTL过期。
+ * 判定失效时（如入队失败回滚了数据库记录）通过发布订阅通知所有节点删除对应条目；
+ * 订阅重建时清空缓存，避免断线期间错过的失效通知导致误判
+ **/
+public class DedupeNearCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(DedupeNearCache.class);
+
+    private final String name;
+
+    private final LRUCache<String, String> cache;
+
+    private final RTopic topic;
+
+    private int messageListenerId = -1;
+
+    private int statusListenerId = -1;
+
+    /**
+     * @param redissonClient Redisson客户端
+     * @param name           缓存名称，失效通知通道为 delayed_msg_cache_channel:{name}
+     * @param capacity       最大条目数
+     * @param ttl            条目存活时间
+     */
+    public DedupeNearCache(RedissonClient redissonClient, String name, int capacity, Duration ttl) {
+        this.name = name;
+        this.cache = CacheUtil.newLRUCache(capacity, ttl.toMillis());
+        this.topic = redissonClient.getTopic(RedisKeys.dedupeCacheChannel(name), StringCodec.INSTANCE);
+    }
+
+    public void start() {
+        messageListenerId = topic.addListener(String.class, (channel, key) -> cache.remove(key));
+        statusListenerId = topic.addListener(new StatusListener() {
+            @Override
+            public void onSubscribe(String channel) {
+                cache.clear();
+            }
+
+            @Override
+            public void onUnsubscribe(String channel) {
+            }
+        });
+    }
+
+    public void close() {
+        if (messageListenerId != -1) {
+            topic.removeListener(messageListenerId, statusListenerId);
+        }
+        cache.clear();
+    }
+
+    /**
+     * 获取缓存的判定，过期时间自写入起计算，读取不续期
+     */
+    public String get(String key) {
+        return cache.get(key, false);
+    }
+
+    public void put(String key, String value) {
+        cache.put(key, value);
+    }
+
+    /**
+     * 删除本地条目并通知其他节点
+     */
+    public void invalidate(String key) {
+        cache.remove(key);
+        try {
+            topic.publish(key);
+        } catch (Exception e) {
+            logger.warn("发布去重缓存失效通知失败，name: {}, key: {}", name, key, e);
+        }
+    }
+
+    public int size() {
+        return cache.size();
+    }
+}
@@ -0,0 +1,83 @@
+package com.wdwlx.util;
+
+import com.alibaba.fastjson.JSONObject;
+import com.wdwlx.entity.DelayedMessage;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+
+/**
+ * 延时队列条目编解码：条目可以是纯消息ID，也可以是内联了消息内容的紧凑JSON
+ * <p>
+ * 内联格式字段顺序固定，保证同一条消息编码结果一致，从而可以在队列中按值查找
+ **/
+public final class DelayedMessageCodec {
+
+    private static final String MESSAGE_ID = "i";
+    private static final String CONTENT = "c";
+    private static final String TOPIC = "t";
+    private static final String BIZ_ID = "b";
+    private static final String EXPIRE_TIME = "e";
+    private static final String ATTEMPTS = "a";
+
+    private DelayedMessageCodec() {
+    }
+
+    /**
+     * 编码为内联条目
+     */
+    public static String encode(DelayedMessage message) {
+        JSONObject json = new JSONObject(true);
+        json.put(MESSAGE_ID, message.getMessageId());
+        json.put(CONTENT, message.getContent());
+        json.put(TOPIC, message.getTopic());
+        json.put(BIZ_ID, message.getBizId());
+        if (message.getExpireTime() != null) {
+            json.put(EXPIRE_TIME, message.getExpireTime().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli());
+        }
+        // 首次写入不带失败次数，与重试前的条目格式一致
+        if (message.getAttempts() != null && message.getAttempts() > 0) {
+            json.put(ATTEMPTS, message.getAttempts());
+        }
+        return json.toJSONString();
+    }
+
+    /**
+     * 是否为内联条目
+     */
+    public static boolean isInline(String entry) {
+        return entry != null && entry.startsWith("{");
+    }
+
+    /**
+     * 解码内联条目，纯消息ID条目返回null
+     */
+    public static DelayedMessage decode(String entry) {
+        if (!isInline(entry)) {
+            return null;
+        }
+        JSONObject json = JSONObject.parseObject(entry);
+        DelayedMessage message = new DelayedMessage();
+        message.setMessageId(json.getString(MESSAGE_ID));
+        message.setContent(json.getString(CONTENT));
+        message.setTopic(json.getString(TOPIC));
+        message.setBizId(json.getString(BIZ_ID));
+        Long expireTime = json.getLong(EXPIRE_TIME);
+        if (expireTime != null) {
+            message.setExpireTime(LocalDateTime.ofInstant(Instant.ofEpochMilli(expireTime), ZoneId.systemDefault()));
+        }
+        message.setAttempts(json.getIntValue(ATTEMPTS));
+        return message;
+    }
+
+    /**
+     * 获取条目对应的消息ID
+     */
+    public static String messageIdOf(String entry) {
+        if (!isInline(entry)) {
+            return entry;
+        }
+        return JSONObject.parseObject(entry).getString(MESSAGE_ID);
+    }
+}
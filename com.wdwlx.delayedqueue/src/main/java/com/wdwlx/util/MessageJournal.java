@@ -0,0 +1,464 @@
+package com.wdwlx.util;
+
+import com.wdwlx.entity.DelayedMessage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * 消息日志：按固定大小分段的追加写文件，每段以内存映射方式写入，记录为消息的完整快照，同一消息以最后一条记录为准
+ * <p>
+ * 记录格式：长度(int) + CRC32(int) + 类型(byte) + 内容，长度为0或校验失败处即为该段数据的末尾（未写完的尾部记录被丢弃）。
+ * 类型为消息快照、删除或id高水位标记，标记记录由使用方在丢弃记录（压缩）时追加，回放时据此恢复已分配的最大id。
+ * 组提交：写入方追加后等待刷盘线程的下一次 force，同一时间窗口内的写入共用一次刷盘；关闭同步写入时按间隔刷盘，写入方不等待
+ * <p>
+ * 写入（append）由调用方串行化，刷盘和段管理方法可并发调用
+ **/
+public class MessageJournal {
+
+    private static final Logger logger = LoggerFactory.getLogger(MessageJournal.class);
+
+    private static final String SEGMENT_SUFFIX = ".seg";
+
+    private static final int HEADER_SIZE = 8;
+
+    private static final byte TYPE_PUT = 1;
+
+    private static final byte TYPE_DELETE = 2;
+
+    private static final byte TYPE_ID_MARK = 3;
+
+    private static final long NULL_TIME = Long.MIN_VALUE;
+
+    /**
+     * 回放日志的回调
+     */
+    public interface ReplayHandler {
+
+        /**
+         * @param segment 记录所在的段号
+         * @param message 消息快照，删除记录为 null
+         */
+        void onRecord(int segment, String messageId, DelayedMessage message);
+
+        /**
+         * @param maxId 标记写入时已分配的最大id
+         */
+        default void onIdMark(long maxId) {
+        }
+    }
+
+    private final Path dir;
+
+    private final int segmentSize;
+
+    private final boolean syncWrites;
+
+    private final long flushIntervalMillis;
+
+    // 段号 → 记录数，含当前写入段
+    private final TreeMap<Integer, Integer> recordCounts = new TreeMap<>();
+
+    private final Object flushLock = new Object();
+
+    private int activeSegment;
+
+    private FileChannel activeChannel;
+
+    private volatile MappedByteBuffer activeBuffer;
+
+    private int writePosition;
+
+    // 已追加的记录序号与已刷盘的记录序号
+    private volatile long appendedSeq;
+
+    private volatile long forcedSeq;
+
+    private volatile boolean running;
+
+    private Thread flusher;
+
+    /**
+     * @param dir                 日志目录
+     * @param segmentSize         单段文件大小（字节），单条记录不能超过该大小
+     * @param syncWrites          写入方是否等待刷盘（组提交）
+     * @param flushIntervalMillis 不等待刷盘时的刷盘间隔
+     */
+    public MessageJournal(Path dir, int segmentSize, boolean syncWrites, long flushIntervalMillis) {
+        this.dir = dir;
+        this.segmentSize = segmentSize;
+        this.syncWrites = syncWrites;
+        this.flushIntervalMillis = Math.max(1, flushIntervalMillis);
+    }
+
+    /**
+     * 按段号顺序回放所有记录，打开最后一段继续写入并启动刷盘线程
+     */
+    public void open(ReplayHandler handler) throws IOException {
+        Files.createDirectories(dir);
+        List<Integer> segments = new ArrayList<>();
+        try (Stream<Path> files = Files.list(dir)) {
+            files.map(path -> path.getFileName().toString())
+                    .filter(name -> name.endsWith(SEGMENT_SUFFIX))
+                    .forEach(name -> segments.add(Integer.parseInt(name.substring(0, name.length() - SEGMENT_SUFFIX.length()))));
+        }
+        segments.sort(null);
+        int end = 0;
+        for (int i = 0; i < segments.size(); i++) {
+            end = replay(segments.get(i), handler, i == segments.size() - 1);
+        }
+        if (segments.isEmpty()) {
+            openSegment(1, 0);
+        } else {
+            openSegment(segments.get(segments.size() - 1), end);
+        }
+        running = true;
+        flusher = new Thread(this::flushLoop, "DelayedQueueJournalFlusher");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    /**
+     * 刷盘并停止刷盘线程
+     */
+    public void close() {
+        running = false;
+        if (flusher != null) {
+            synchronized (flushLock) {
+                flushLock.notifyAll();
+            }
+            try {
+                flusher.join(TimeUnit.SECONDS.toMillis(5));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        force();
+        try {
+            activeChannel.close();
+        } catch (IOException e) {
+            logger.warn("关闭消息日志段失败, segment: {}", activeSegment, e);
+        }
+    }
+
+    /**
+     * 追加消息快照，返回记录序号；当前段剩余空间不足时先刷盘并切换到新段
+     */
+    public long append(DelayedMessage message) {
+        return write(TYPE_PUT, encode(message));
+    }
+
+    /**
+     * 追加删除记录
+     */
+    public long appendDelete(String messageId) {
+        return write(TYPE_DELETE, messageId.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * 追加id高水位标记：压缩丢弃了最大id的消息后，回放仍能恢复已分配的最大id，重启后不会重复分配
+     */
+    public long appendIdMark(long maxId) {
+        return write(TYPE_ID_MARK, ByteBuffer.allocate(Long.BYTES).putLong(maxId).array());
+    }
+
+    /**
+     * 最近一次追加的记录所在的段号
+     */
+    public int activeSegment() {
+        return activeSegment;
+    }
+
+    /**
+     * 同步写入时等待 seq 及之前的记录刷盘，多个写入方共用一次 force
+     */
+    public void sync(long seq) {
+        if (!syncWrites) {
+            return;
+        }
+        await(seq);
+    }
+
+    /**
+     * 立即刷盘当前写入段，不受同步写入配置影响
+     */
+    public void force() {
+        long target = appendedSeq;
+        MappedByteBuffer buffer = activeBuffer;
+        if (buffer != null) {
+            buffer.force();
+        }
+        synchronized (flushLock) {
+            forcedSeq = Math.max(forcedSeq, target);
+            flushLock.notifyAll();
+        }
+    }
+
+    /**
+     * 已写满的段号，从旧到新
+     */
+    public synchronized List<Integer> sealedSegments() {
+        return new ArrayList<>(recordCounts.headMap(activeSegment).keySet());
+    }
+
+    public synchronized int recordCount(int segment) {
+        return recordCounts.getOrDefault(segment, 0);
+    }
+
+    /**
+     * 删除已写满的段，调用方需保证段内仍有效的记录已重新追加并刷盘
+     */
+    public void deleteSegment(int segment) throws IOException {
+        synchronized (this) {
+            if (segment >= activeSegment) {
+                throw new IllegalArgumentException("不能删除当前写入段: " + segment);
+            }
+            recordCounts.remove(segment);
+        }
+        Files.deleteIfExists(segmentPath(segment));
+    }
+
+    public synchronized Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("dir", dir.toAbsolutePath().toString());
+        stats.put("segments", recordCounts.size());
+        stats.put("activeSegment", activeSegment);
+        stats.put("activeSegmentBytes", writePosition);
+        stats.put("records", recordCounts.values().stream().mapToLong(Integer::longValue).sum());
+        stats.put("unforcedRecords", appendedSeq - forcedSeq);
+        return stats;
+    }
+
+    private synchronized long write(byte type, byte[] payload) {
+        int length = payload.length + 1;
+        if (HEADER_SIZE + length > segmentSize) {
+            throw new IllegalArgumentException("消息日志记录超过段大小: " + (HEADER_SIZE + length));
+        }
+        if (writePosition + HEADER_SIZE + length > segmentSize) {
+            roll();
+        }
+        CRC32 crc = new CRC32();
+        crc.update(type);
+        crc.update(payload);
+        MappedByteBuffer buffer = activeBuffer;
+        // 先写内容再写长度，长度非0时记录已完整写入页缓存
+        buffer.putInt(writePosition + 4, (int) crc.getValue());
+        buffer.put(writePosition + HEADER_SIZE, type);
+        buffer.put(writePosition + HEADER_SIZE + 1, payload);
+        buffer.putInt(writePosition, length);
+        writePosition += HEADER_SIZE + length;
+        recordCounts.merge(activeSegment, 1, Integer::sum);
+        long seq = appendedSeq + 1;
+        appendedSeq = seq;
+        if (syncWrites) {
+            synchronized (flushLock) {
+                flushLock.notifyAll();
+            }
+        }
+        return seq;
+    }
+
+    private void roll() {
+        // 切换前刷盘旧段，已追加的记录都已持久化
+        force();
+        try {
+            activeChannel.close();
+            openSegment(activeSegment + 1, 0);
+        } catch (IOException e) {
+            throw new UncheckedIOException("切换消息日志段失败", e);
+        }
+        logger.info("消息日志切换到新段: {}", activeSegment);
+    }
+
+    private synchronized void openSegment(int segment, int position) throws IOException {
+        activeChannel = FileChannel.open(segmentPath(segment), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        activeBuffer = activeChannel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+        activeSegment = segment;
+        writePosition = position;
+        recordCounts.putIfAbsent(segment, 0);
+    }
+
+    private void await(long seq) {
+        synchronized (flushLock) {
+            // 追加时已唤醒刷盘线程，等待方之间不互相唤醒
+            while (forcedSeq < seq && running) {
+                try {
+                    flushLock.wait(flushIntervalMillis);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * 刷盘线程：有未刷盘的记录时立即 force，刷盘期间到达的写入合并到下一次
+     */
+    private void flushLoop() {
+        while (running) {
+            synchronized (flushLock) {
+                if (appendedSeq <= forcedSeq) {
+                    try {
+                        flushLock.wait(flushIntervalMillis);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                }
+            }
+            if (appendedSeq > forcedSeq) {
+                try {
+                    force();
+                } catch (Exception e) {
+                    logger.error("消息日志刷盘失败", e);
+                }
+            }
+        }
+    }
+
+    /**
+     * 回放一段，返回有效数据的末尾位置
+     */
+    private int replay(int segment, ReplayHandler handler, boolean last) throws IOException {
+        Path path = segmentPath(segment);
+        int count = 0;
+        int position = 0;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            int size = buffer.limit();
+            while (position + HEADER_SIZE <= size) {
+                int length = buffer.getInt(position);
+                if (length <= 0 || position + HEADER_SIZE + length > size) {
+                    break;
+                }
+                byte[] record = new byte[length];
+                buffer.get(position + HEADER_SIZE, record);
+                CRC32 crc = new CRC32();
+                crc.update(record);
+                if ((int) crc.getValue() != buffer.getInt(position + 4)) {
+                    if (!last) {
+                        logger.warn("消息日志段校验失败，丢弃该段剩余记录, segment: {}, position: {}", segment, position);
+                    }
+                    break;
+                }
+                ByteBuffer data = ByteBuffer.wrap(record, 1, length - 1);
+                if (record[0] == TYPE_DELETE) {
+                    handler.onRecord(segment, new String(record, 1, length - 1, StandardCharsets.UTF_8), null);
+                } else if (record[0] == TYPE_ID_MARK) {
+                    handler.onIdMark(data.getLong());
+                } else {
+                    DelayedMessage message = decode(data);
+                    handler.onRecord(segment, message.getMessageId(), message);
+                }
+                position += HEADER_SIZE + length;
+                count++;
+            }
+        }
+        synchronized (this) {
+            recordCounts.put(segment, count);
+        }
+        logger.info("回放消息日志段, segment: {}, records: {}", segment, count);
+        return position;
+    }
+
+    private Path segmentPath(int segment) {
+        return dir.resolve(String.format("%010d%s", segment, SEGMENT_SUFFIX));
+    }
+
+    private static byte[] encode(DelayedMessage message) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeLong(message.getId() == null ? 0 : message.getId());
+            writeString(out, message.getMessageId());
+            writeString(out, message.getBizId());
+            writeString(out, message.getContent());
+            writeString(out, message.getTopic());
+            writeTime(out, message.getCreateTime());
+            writeTime(out, message.getProcessTime());
+            writeTime(out, message.getExpireTime());
+            writeTime(out, message.getLeaseExpireTime());
+            out.writeInt(message.getStatus() == null ? 0 : message.getStatus());
+            out.writeInt(message.getAttempts() == null ? 0 : message.getAttempts());
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static DelayedMessage decode(ByteBuffer data) {
+        DelayedMessage message = new DelayedMessage();
+        message.setId(data.getLong());
+        message.setMessageId(readString(data));
+        message.setBizId(readString(data));
+        message.setContent(readString(data));
+        message.setTopic(readString(data));
+        message.setCreateTime(readTime(data));
+        message.setProcessTime(readTime(data));
+        message.setExpireTime(readTime(data));
+        message.setLeaseExpireTime(readTime(data));
+        message.setStatus(data.getInt());
+        message.setAttempts(data.getInt());
+        return message;
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer data) {
+        int length = data.getInt();
+        if (length < 0) {
+            return null;
+        }
+        String value = new String(data.array(), data.arrayOffset() + data.position(), length, StandardCharsets.UTF_8);
+        data.position(data.position() + length);
+        return value;
+    }
+
+    // LocalDateTime 按UTC换算为秒和纳秒，与时区无关且不丢精度
+    private static void writeTime(DataOutputStream out, LocalDateTime time) throws IOException {
+        if (time == null) {
+            out.writeLong(NULL_TIME);
+            return;
+        }
+        out.writeLong(time.toEpochSecond(ZoneOffset.UTC));
+        out.writeInt(time.getNano());
+    }
+
+    private static LocalDateTime readTime(ByteBuffer data) {
+        long seconds = data.getLong();
+        if (seconds == NULL_TIME) {
+            return null;
+        }
+        return LocalDateTime.ofEpochSecond(seconds, data.getInt(), ZoneOffset.UTC);
+    }
+}
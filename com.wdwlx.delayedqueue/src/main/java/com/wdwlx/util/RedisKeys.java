@@ -0,0 +1,129 @@
+package com.wdwlx.util;
+
+/**
+ * 延时队列使用的Redis键和通道名称
+ * <p>
+ * 集群模式下同一条命令或Lua脚本涉及的多个键必须位于同一个槽，按 {hashtag} 约定分组：
+ * <ul>
+ *     <li>队列：调度集合、待确认集合与就绪队列在同一脚本中搬运，RDelayedQueue 的到期时间集合、写入顺序列表同理，
+ *     这些键以 {队列名} 为hashtag，与就绪队列（键名即队列名）同槽；分片队列名自带 {队列名:分片} hashtag</li>
+ *     <li>布隆过滤器：同一队列的各代位图以 {队列名} 为hashtag，一次批量查询落在同一节点</li>
+ *     <li>处理锁、去重缓存：按消息/业务ID一键一值，没有多键操作，不加队列级hashtag，
+ *     让高频的单键读写分散到所有槽而不是集中在队列所在节点；键名保持不变，滚动升级期间新旧节点互斥不受影响</li>
+ * </ul>
+ **/
+public final class RedisKeys {
+
+    private static final String DELAY_QUEUE_TIMEOUT_PREFIX = "redisson_delay_queue_timeout:";
+
+    private static final String DELAY_QUEUE_PREFIX = "redisson_delay_queue:";
+
+    private static final String SCHEDULE_PREFIX = "delayed_queue_schedule:";
+
+    private static final String INFLIGHT_PREFIX = "delayed_queue_inflight:";
+
+    private static final String SCHEDULE_CHANNEL_PREFIX = "delayed_queue_schedule_channel:";
+
+    private static final String DEAD_LETTER_PREFIX = "delayed_queue_dead_letter:";
+
+    private static final String PROCESSOR_LOCK_PREFIX = "delayed_queue_processor_lock:";
+
+    private static final String DEDUPE_CACHE_PREFIX = "delayed_msg_cache:";
+
+    private static final String DEDUPE_CACHE_CHANNEL_PREFIX = "delayed_msg_cache_channel:";
+
+    private static final String BLOOM_PREFIX = "delayed_queue_bloom:";
+
+    private static final String BLOOM_CHANNEL_PREFIX = "delayed_queue_bloom_channel:";
+
+    private static final String BLOOM_REFRESH_PREFIX = "delayed_queue_bloom_refresh:";
+
+    private RedisKeys() {
+    }
+
+    /**
+     * 分片队列名，{队列名:分片序号} 整体作为hashtag，各分片分布到不同槽
+     */
+    public static String shardQueue(String queueName, int shard) {
+        return "{" + queueName + ":" + shard + "}";
+    }
+
+    /**
+     * RDelayedQueue 内部的到期时间有序集合
+     */
+    public static String delayQueueTimeout(String queueName) {
+        return DELAY_QUEUE_TIMEOUT_PREFIX + hashTag(queueName);
+    }
+
+    /**
+     * RDelayedQueue 内部按写入顺序的列表
+     */
+    public static String delayQueue(String queueName) {
+        return DELAY_QUEUE_PREFIX + hashTag(queueName);
+    }
+
+    /**
+     * 队列的调度集合：成员为队列条目，score 为到期时间戳，按成员直接删除/修改到期时间
+     */
+    public static String scheduleSet(String queueName) {
+        return SCHEDULE_PREFIX + hashTag(queueName);
+    }
+
+    /**
+     * 队列的待确认集合：已从就绪队列取出、尚未处理到可持久化结果的条目，score 为确认截止时间，超时后由搬运脚本放回就绪队列
+     */
+    public static String inflightSet(String queueName) {
+        return INFLIGHT_PREFIX + hashTag(queueName);
+    }
+
+    /**
+     * 推送模式下队列的调度通知通道，写入调度集合的节点发布更早的到期时间，各节点据此提前搬运
+     */
+    public static String scheduleChannel(String queueName) {
+        return SCHEDULE_CHANNEL_PREFIX + hashTag(queueName);
+    }
+
+    /**
+     * 队列的死信列表，超过最大尝试次数的消息条目
+     */
+    public static String deadLetterQueue(String queueName) {
+        return DEAD_LETTER_PREFIX + hashTag(queueName);
+    }
+
+    public static String processorLock(String queueName, String messageId) {
+        return PROCESSOR_LOCK_PREFIX + queueName + ":" + messageId;
+    }
+
+    /**
+     * 去重缓存，checkKey 为 topic:bizId
+     */
+    public static String dedupeCache(String checkKey) {
+        return DEDUPE_CACHE_PREFIX + checkKey;
+    }
+
+    public static String dedupeCacheChannel(String name) {
+        return DEDUPE_CACHE_CHANNEL_PREFIX + hashTag(name);
+    }
+
+    public static String bloomGeneration(String name, long window) {
+        return BLOOM_PREFIX + hashTag(name) + ":" + window;
+    }
+
+    public static String bloomChannel(String name) {
+        return BLOOM_CHANNEL_PREFIX + hashTag(name);
+    }
+
+    /**
+     * 布隆过滤器进入新一代后回写未处理消息的标记，每个队列每代一个，抢到的节点负责回写
+     */
+    public static String bloomRefresh(String queueName, long window) {
+        return BLOOM_REFRESH_PREFIX + hashTag(queueName) + ":" + window;
+    }
+
+    /**
+     * 名称已带hashtag（如分片队列）时原样使用，与Redisson生成内部键名的规则一致
+     */
+    private static String hashTag(String name) {
+        return name.contains("{") ? name : "{" + name + "}";
+    }
+}
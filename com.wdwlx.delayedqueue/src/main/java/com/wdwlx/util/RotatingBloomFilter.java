@@ -0,0 +1,382 @@
+package com.wdwlx.util;
+
+import cn.hutool.core.lang.hash.MurmurHash;
+import org.redisson.api.RBatch;
+import org.redisson.api.RBitSetAsync;
+import org.redisson.api.RFuture;
+import org.redisson.api.RTopic;
+import org.redisson.api.RedissonClient;
+import org.redisson.api.listener.StatusListener;
+import org.redisson.client.codec.StringCodec;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * 按时间窗口轮换的布隆过滤器
+ * <p>
+ * 每个时间窗口一代，位图保存在Redis（SETBIT/GETBIT），写入当前代，查询覆盖最近 generations 代，
+ * 旧代随TTL过期，误判率不会随时间无限增长。容量按单个窗口的预计写入量计算。
+ * 键只保留 window x (generations + 1)，等待时间更长的键需要由使用方在新一代开始后重新写入（见 {@link #millisUntilNextWindow}）。
+ * <p>
+ * 开启本地镜像时每个节点在堆内保存各代位图的副本：本节点写入直接更新，其他节点的写入通过发布订阅同步，
+ * 订阅建立（含重连）和新一代开始时从Redis全量加载。镜像的位只会是Redis的子集，因此查询完全在本地完成：
+ * 命中必然为真，未命中仅在其他节点的写入尚未同步到达的毫秒级窗口内可能不准
+ **/
+public class RotatingBloomFilter {
+
+    private static final Logger logger = LoggerFactory.getLogger(RotatingBloomFilter.class);
+
+    private final RedissonClient redissonClient;
+
+    private final String name;
+
+    private final long windowMillis;
+
+    private final int generations;
+
+    private final int bitSize;
+
+    private final int hashIterations;
+
+    private final boolean localMirror;
+
+    private final RTopic topic;
+
+    // 计算窗口序号的时钟，各节点按系统时间对齐
+    private final LongSupplier clock;
+
+    /**
+     * 窗口序号 → 本地镜像
+     */
+    private final Map<Long, LocalBits> mirrors = new ConcurrentHashMap<>();
+
+    private final LongAdder localLookups = new LongAdder();
+
+    private final LongAdder remoteLookups = new LongAdder();
+
+    private int messageListenerId = -1;
+
+    private int statusListenerId = -1;
+
+    /**
+     * @param redissonClient     Redisson客户端
+     * @param name               过滤器名称，各代的键为 delayed_queue_bloom:{name}:窗口序号
+     * @param expectedInsertions 单个时间窗口内预计写入数
+     * @param falseProbability   期望误判率
+     * @param window             时间窗口长度
+     * @param generations        查询覆盖的代数（含当前代），至少为1
+     * @param localMirror        是否开启本地镜像
+     */
+    public RotatingBloomFilter(RedissonClient redissonClient, String name, long expectedInsertions, double falseProbability,
+                               Duration window, int generations, boolean localMirror) {
+        this(redissonClient, name, expectedInsertions, falseProbability, window, generations, localMirror, System::currentTimeMillis);
+    }
+
+    /**
+     * 指定时钟，包内可见供测试窗口轮换使用
+     */
+    RotatingBloomFilter(RedissonClient redissonClient, String name, long expectedInsertions, double falseProbability,
+                        Duration window, int generations, boolean localMirror, LongSupplier clock) {
+        if (expectedInsertions <= 0) {
+            throw new IllegalArgumentException("expectedInsertions must be greater than 0");
+        }
+        if (falseProbability <= 0 || falseProbability >= 1) {
+            throw new IllegalArgumentException("falseProbability must be between 0 and 1");
+        }
+        if (generations < 1) {
+            throw new IllegalArgumentException("generations must be at least 1");
+        }
+        this.redissonClient = redissonClient;
+        this.name = name;
+        this.windowMillis = window.toMillis();
+        this.generations = generations;
+        this.bitSize = optimalNumOfBits(expectedInsertions, falseProbability);
+        this.hashIterations = optimalNumOfHashFunctions(expectedInsertions, bitSize);
+        this.localMirror = localMirror;
+        this.topic = redissonClient.getTopic(channelName(), StringCodec.INSTANCE);
+        this.clock = clock;
+    }
+
+    /**
+     * 订阅其他节点的写入并加载当前各代的本地镜像
+     */
+    public void start() {
+        if (!localMirror) {
+            return;
+        }
+        messageListenerId = topic.addListener(String.class, (channel, message) -> applyRemoteAdd(message));
+        // 订阅建立（含断线重连）后全量加载，补齐订阅中断期间错过的写入
+        statusListenerId = topic.addListener(new StatusListener() {
+            @Override
+            public void onSubscribe(String channel) {
+                reloadMirrors();
+            }
+
+            @Override
+            public void onUnsubscribe(String channel) {
+            }
+        });
+        reloadMirrors();
+    }
+
+    public void close() {
+        if (messageListenerId != -1) {
+            topic.removeListener(messageListenerId, statusListenerId);
+        }
+        mirrors.clear();
+    }
+
+    public boolean contains(String key) {
+        long[] positions = positions(key);
+        long current = currentWindow();
+        if (localMirror) {
+            localLookups.increment();
+            for (long window = current; window > current - generations; window--) {
+                if (mirror(window).containsAll(positions)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        // 未开启本地镜像：所有代的GETBIT在一次往返中完成
+        remoteLookups.increment();
+        RBatch batch = redissonClient.createBatch();
+        List<List<RFuture<Boolean>>> futures = new ArrayList<>(generations);
+        for (long window = current; window > current - generations; window--) {
+            RBitSetAsync bitSet = batch.getBitSet(generationName(window));
+            List<RFuture<Boolean>> bits = new ArrayList<>(positions.length);
+            for (long position : positions) {
+                bits.add(bitSet.getAsync(position));
+            }
+            futures.add(bits);
+        }
+        batch.execute();
+        for (List<RFuture<Boolean>> bits : futures) {
+            boolean all = true;
+            for (RFuture<Boolean> bit : bits) {
+                if (!bit.getNow()) {
+                    all = false;
+                    break;
+                }
+            }
+            if (all) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public void add(String key) {
+        addAll(Collections.singletonList(key));
+    }
+
+    /**
+     * 写入当前代：SETBIT、续期和镜像同步消息在一次往返中完成
+     */
+    public void addAll(Collection<String> keys) {
+        if (keys.isEmpty()) {
+            return;
+        }
+        long window = currentWindow();
+        String generationName = generationName(window);
+        RBatch batch = redissonClient.createBatch();
+        RBitSetAsync bitSet = batch.getBitSet(generationName);
+        StringBuilder message = localMirror ? new StringBuilder().append(window) : null;
+        List<long[]> allPositions = new ArrayList<>(keys.size());
+        for (String key : keys) {
+            long[] positions = positions(key);
+            allPositions.add(positions);
+            for (long position : positions) {
+                bitSet.setAsync(position);
+                if (message != null) {
+                    message.append(',').append(position);
+                }
+            }
+        }
+        // 代的存活时间覆盖其作为查询窗口的全部时长
+        bitSet.expireAsync(windowMillis * (generations + 1), TimeUnit.MILLISECONDS);
+        if (message != null) {
+            batch.getTopic(channelName(), StringCodec.INSTANCE).publishAsync(message.toString());
+        }
+        batch.execute();
+
+        if (localMirror) {
+            LocalBits mirror = mirror(window);
+            for (long[] positions : allPositions) {
+                mirror.setAll(positions);
+            }
+        }
+    }
+
+    /**
+     * 当前代的窗口序号，各节点按系统时间对齐
+     */
+    public long currentWindow() {
+        return clock.getAsLong() / windowMillis;
+    }
+
+    /**
+     * 距下一代开始的毫秒数
+     */
+    public long millisUntilNextWindow() {
+        return windowMillis - clock.getAsLong() % windowMillis;
+    }
+
+    public long getWindowMillis() {
+        return windowMillis;
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("bitSize", bitSize);
+        stats.put("hashIterations", hashIterations);
+        stats.put("windowMillis", windowMillis);
+        stats.put("generations", generations);
+        stats.put("localMirror", localMirror);
+        stats.put("mirroredGenerations", mirrors.size());
+        stats.put("localLookups", localLookups.sum());
+        stats.put("remoteLookups", remoteLookups.sum());
+        return stats;
+    }
+
+    /**
+     * 应用其他节点的写入，消息格式：窗口序号,位置1,位置2,...；包内可见供测试使用
+     */
+    void applyRemoteAdd(String message) {
+        try {
+            String[] parts = message.split(",");
+            long window = Long.parseLong(parts[0]);
+            if (window <= currentWindow() - generations) {
+                return;
+            }
+            long[] positions = new long[parts.length - 1];
+            for (int i = 1; i < parts.length; i++) {
+                positions[i - 1] = Long.parseLong(parts[i]);
+            }
+            mirror(window).setAll(positions);
+        } catch (RuntimeException e) {
+            logger.warn("同步布隆过滤器写入失败，name: {}", name, e);
+        }
+    }
+
+    /**
+     * 从Redis全量加载各代镜像，与已有的位按或合并，不会丢失加载期间的写入；包内可见供测试使用
+     */
+    void reloadMirrors() {
+        long current = currentWindow();
+        for (long window = current; window > current - generations; window--) {
+            loadInto(window, mirrors.computeIfAbsent(window, w -> new LocalBits(bitSize)));
+        }
+    }
+
+    private LocalBits mirror(long window) {
+        LocalBits mirror = mirrors.get(window);
+        if (mirror != null) {
+            return mirror;
+        }
+        LocalBits created = new LocalBits(bitSize);
+        mirror = mirrors.putIfAbsent(window, created);
+        if (mirror != null) {
+            return mirror;
+        }
+        // 新一代开始：其他节点可能已写入，加载一次；同时丢弃已过查询窗口的旧代
+        loadInto(window, created);
+        mirrors.keySet().removeIf(w -> w <= currentWindow() - generations);
+        return created;
+    }
+
+    private void loadInto(long window, LocalBits mirror) {
+        try {
+            mirror.or(redissonClient.getBitSet(generationName(window)).asBitSet());
+        } catch (Exception e) {
+            logger.warn("加载布隆过滤器镜像失败，name: {}, window: {}", name, window, e);
+        }
+    }
+
+    /**
+     * 键的 hashIterations 个位位置，MurmurHash3 128位结果做双重哈希；包内可见供测试使用
+     */
+    long[] positions(String key) {
+        long[] hash = MurmurHash.hash128(key.getBytes(StandardCharsets.UTF_8));
+        long[] positions = new long[hashIterations];
+        long combined = hash[0];
+        for (int i = 0; i < hashIterations; i++) {
+            positions[i] = Math.floorMod(combined, (long) bitSize);
+            combined += hash[1];
+        }
+        return positions;
+    }
+
+    private String generationName(long window) {
+        return RedisKeys.bloomGeneration(name, window);
+    }
+
+    private String channelName() {
+        return RedisKeys.bloomChannel(name);
+    }
+
+    private static int optimalNumOfBits(long n, double p) {
+        long bits = (long) Math.ceil(-n * Math.log(p) / (Math.log(2) * Math.log(2)));
+        return (int) Math.min(Math.max(bits, 64), Integer.MAX_VALUE);
+    }
+
+    private static int optimalNumOfHashFunctions(long n, long m) {
+        return Math.max(1, (int) Math.round((double) m / n * Math.log(2)));
+    }
+
+    /**
+     * 线程安全的本地位图，只支持置位
+     */
+    private static final class LocalBits {
+
+        private final AtomicLongArray words;
+
+        LocalBits(int bitSize) {
+            this.words = new AtomicLongArray((bitSize + 63) >>> 6);
+        }
+
+        boolean containsAll(long[] positions) {
+            for (long position : positions) {
+                if ((words.get((int) (position >>> 6)) & (1L << position)) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        void setAll(long[] positions) {
+            for (long position : positions) {
+                long mask = 1L << position;
+                int index = (int) (position >>> 6);
+                if ((words.get(index) & mask) == 0) {
+                    words.getAndAccumulate(index, mask, (a, b) -> a | b);
+                }
+            }
+        }
+
+        void or(BitSet bits) {
+            long[] loaded = bits.toLongArray();
+            for (int i = 0; i < loaded.length && i < words.length(); i++) {
+                if (loaded[i] != 0) {
+                    words.getAndAccumulate(i, loaded[i], (a, b) -> a | b);
+                }
+            }
+        }
+    }
+}
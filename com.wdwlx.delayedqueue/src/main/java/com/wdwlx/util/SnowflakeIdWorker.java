@@ -1,8 +1,12 @@
 package com.wdwlx.util;
 
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
 
 /**
  * 雪花算法生成id工具类
+ * <p>
+ * 通过CAS更新打包的时间戳与序列实现无锁发号；毫秒内序列用尽时借用未来毫秒而不是自旋等待，可容忍时钟小幅回退
  **/
 public class SnowflakeIdWorker {
     /**
@@ -41,20 +45,28 @@ public class SnowflakeIdWorker {
      */
     private final long sequenceMask = -1L ^ (-1L << sequenceBits);
 
+    /**
+     * 默认允许状态时间戳领先系统时钟的毫秒数
+     */
+    private static final long DEFAULT_MAX_DRIFT_MILLIS = 1000L;
+
     /**
      * 工作机器ID(0~1024)
      */
     private long workerId;
 
     /**
-     * 毫秒内序列(0~4095)
+     * 状态时间戳最多领先系统时钟的毫秒数。
+     * 序列溢出时借用未来的毫秒、时钟小幅回退时沿用上次的时间戳，两者都使状态领先时钟；
+     * 借用达到上限时等待时钟追上，时钟回退超过上限时拒绝生成
      */
-    private long sequence = 0L;
+    private final long maxDriftMillis;
 
     /**
-     * 上次生成ID的时间截
+     * 上次生成ID的 (时间截 - twepoch) &lt;&lt; 12 | 毫秒内序列，通过CAS更新。
+     * 序列+1溢出时自然进位到时间戳，即借用下一毫秒
      */
-    private long lastTimestamp = -1L;
+    private final AtomicLong state = new AtomicLong(-1L);
 
     //==============================Constructors=====================================
 
@@ -64,63 +76,64 @@ public class SnowflakeIdWorker {
      * @param workerId 工作ID (0~1023)
      */
     public SnowflakeIdWorker(long workerId) {
+        this(workerId, DEFAULT_MAX_DRIFT_MILLIS);
+    }
+
+    /**
+     * 构造函数
+     *
+     * @param workerId       工作ID (0~1023)
+     * @param maxDriftMillis 状态时间戳最多领先系统时钟的毫秒数
+     */
+    public SnowflakeIdWorker(long workerId, long maxDriftMillis) {
         if (workerId > maxWorkerId || workerId < 0) {
             throw new IllegalArgumentException(String.format("workerId can't be greater than %d or less than 0", maxWorkerId));
         }
+        if (maxDriftMillis < 0) {
+            throw new IllegalArgumentException("maxDriftMillis can't be less than 0");
+        }
         this.workerId = workerId;
+        this.maxDriftMillis = maxDriftMillis;
     }
 
     // ==============================Methods==========================================
 
     /**
-     * 获得下一个ID (该方法是线程安全的)
+     * 获得下一个ID (该方法是线程安全的，无锁)
      *
      * @return SnowflakeId
      */
-    public synchronized long nextId() {
-        long timestamp = timeGen();
-        //如果当前时间小于上一次ID生成的时间戳，说明系统时钟回退过这个时候应当抛出异常
-        if (timestamp < lastTimestamp) {
-            throw new RuntimeException(
-                    String.format("Clock moved backwards.  Refusing to generate id for %d milliseconds", lastTimestamp - timestamp));
-        }
-
-        //如果是同一时间生成的，则进行毫秒内序列
-        if (lastTimestamp == timestamp) {
-            //如果毫秒相同，则从0递增生成序列号
-            sequence = (sequence + 1) & sequenceMask;
-            //毫秒内序列溢出
-            if (sequence == 0) {
-                //阻塞到下一个毫秒,获得新的时间戳
-                timestamp = tilNextMillis(lastTimestamp);
+    public long nextId() {
+        while (true) {
+            //先读状态再读时钟，保证时钟读数不早于状态对应的写入，避免线程被挂起后用过期读数误判回退
+            long current = state.get();
+            long timestamp = timeGen() - twepoch;
+            long lastTimestamp = current >> sequenceBits;
+            long next;
+            if (timestamp > lastTimestamp) {
+                //时间戳改变，毫秒内序列重置
+                next = timestamp << sequenceBits;
+            } else {
+                //同一毫秒、已借用未来毫秒或时钟小幅回退：沿用上次的时间戳递增序列
+                long drift = lastTimestamp - timestamp;
+                if (drift > maxDriftMillis) {
+                    throw new RuntimeException(
+                            String.format("Clock moved backwards.  Refusing to generate id for %d milliseconds", drift));
+                }
+                if ((current & sequenceMask) == sequenceMask && drift >= maxDriftMillis) {
+                    //再借用一毫秒会超过上限，等待时钟追上
+                    LockSupport.parkNanos(100_000L);
+                    continue;
+                }
+                next = current + 1;
+            }
+            if (state.compareAndSet(current, next)) {
+                //移位并通过或运算拼到一起组成64位的ID
+                return ((next >> sequenceBits) << timestampLeftShift) //
+                        | (workerId << workerIdShift) //
+                        | (next & sequenceMask);
             }
         }
-        //时间戳改变，毫秒内序列重置
-        else {
-            sequence = 0L;
-        }
-
-        //上次生成ID的时间截
-        lastTimestamp = timestamp;
-
-        //移位并通过或运算拼到一起组成64位的ID
-        return ((timestamp - twepoch) << timestampLeftShift) //
-                | (workerId << workerIdShift) //
-                | sequence;
-    }
-
-    /**
-     * 阻塞到下一个毫秒，直到获得新的时间戳
-     *
-     * @param lastTimestamp 上次生成ID的时间截
-     * @return 当前时间戳
-     */
-    protected long tilNextMillis(long lastTimestamp) {
-        long timestamp = timeGen();
-        while (timestamp <= lastTimestamp) {
-            timestamp = timeGen();
-        }
-        return timestamp;
     }
 
     /**
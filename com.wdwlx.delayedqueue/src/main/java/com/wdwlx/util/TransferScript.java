@@ -0,0 +1,134 @@
+package com.wdwlx.util;
+
+import org.redisson.client.codec.BaseCodec;
+import org.redisson.client.codec.Codec;
+import org.redisson.client.codec.StringCodec;
+import org.redisson.client.protocol.Decoder;
+import org.redisson.client.protocol.Encoder;
+
+import java.util.List;
+
+/**
+ * 到期条目搬运脚本，一次调用处理多个队列（集群模式下须位于同一槽位）：
+ * 每个队列先把待确认集合中超过确认截止时间的条目放回就绪队列，再把调度集合中已到期的条目搬入就绪队列，
+ * 升级前写入 RDelayedQueue 的条目同样按到期时间搬入，最后从就绪队列头部最多取出 limit 条随结果返回，
+ * 取出的条目同时以确认截止时间写入待确认集合，处理节点确认（ZREM）前宕机或结果未送达时不会丢失
+ * <p>
+ * KEYS：每个队列5个键，调度集合、就绪队列、RDelayedQueue 到期时间集合、RDelayedQueue 写入顺序列表、待确认集合；
+ * ARGV：当前时间戳、单个队列单次搬运上限、确认截止时间，以及每个队列的取出上限（0表示只搬运不取出，负数表示跳过该队列）；
+ * 返回：每个队列依次为取出的条目列表、剩余条目与待确认条目中最早的到期/截止时间（没有时为-1）
+ **/
+public final class TransferScript {
+
+    public static final String SCRIPT =
+            "local now = tonumber(ARGV[1]); "
+                    + "local result = {}; "
+                    + "for q = 1, #KEYS / 5 do "
+                    + "local schedule, ready, legacyTimeout, legacyList, inflight = KEYS[q * 5 - 4], KEYS[q * 5 - 3], KEYS[q * 5 - 2], KEYS[q * 5 - 1], KEYS[q * 5]; "
+                    + "local limit = tonumber(ARGV[q + 3]); "
+                    + "local entries = {}; "
+                    + "if limit >= 0 then "
+                    // 超过确认截止时间的条目放回就绪队列头部，优先于新到期的条目重新取出
+                    + "local expired = redis.call('zrangebyscore', inflight, '-inf', now, 'limit', 0, ARGV[2]); "
+                    + "for i = 1, #expired, 1000 do "
+                    + "local last = math.min(i + 999, #expired); "
+                    + "redis.call('lpush', ready, unpack(expired, i, last)); "
+                    + "redis.call('zrem', inflight, unpack(expired, i, last)); "
+                    + "end; "
+                    + "end; "
+                    // 先读取最早的到期时间，没有到期条目的队列不做范围查询
+                    + "local nextDue = redis.call('zrange', schedule, 0, 0, 'withscores')[2]; "
+                    + "local legacyDue = redis.call('zrange', legacyTimeout, 0, 0, 'withscores')[2]; "
+                    + "if limit >= 0 then "
+                    + "if nextDue and tonumber(nextDue) <= now then "
+                    + "local due = redis.call('zrangebyscore', schedule, '-inf', now, 'limit', 0, ARGV[2]); "
+                    + "for i = 1, #due, 1000 do "
+                    + "local last = math.min(i + 999, #due); "
+                    + "redis.call('rpush', ready, unpack(due, i, last)); "
+                    + "redis.call('zrem', schedule, unpack(due, i, last)); "
+                    + "end; "
+                    + "nextDue = redis.call('zrange', schedule, 0, 0, 'withscores')[2]; "
+                    + "end; "
+                    // RDelayedQueue 的成员为 struct.pack('dLc0', 随机数, 长度, 条目)，与Redisson自身的搬运脚本一致
+                    + "if legacyDue and tonumber(legacyDue) <= now then "
+                    + "local legacy = redis.call('zrangebyscore', legacyTimeout, 0, now, 'limit', 0, ARGV[2]); "
+                    + "for i, v in ipairs(legacy) do "
+                    + "local randomId, value = struct.unpack('dLc0', v); "
+                    + "redis.call('rpush', ready, value); "
+                    + "redis.call('lrem', legacyList, 1, v); "
+                    + "redis.call('zrem', legacyTimeout, v); "
+                    + "end; "
+                    + "legacyDue = redis.call('zrange', legacyTimeout, 0, 0, 'withscores')[2]; "
+                    + "end; "
+                    + "if limit > 0 then "
+                    + "entries = redis.call('lrange', ready, 0, limit - 1); "
+                    + "if #entries > 0 then "
+                    + "redis.call('ltrim', ready, #entries, -1); "
+                    + "for i = 1, #entries, 500 do "
+                    + "local members = {}; "
+                    + "for j = i, math.min(i + 499, #entries) do members[#members + 1] = ARGV[3]; members[#members + 1] = entries[j]; end; "
+                    + "redis.call('zadd', inflight, unpack(members)); "
+                    + "end; "
+                    + "end; "
+                    + "end; "
+                    + "end; "
+                    + "if legacyDue and (not nextDue or tonumber(legacyDue) < tonumber(nextDue)) then nextDue = legacyDue; end; "
+                    + "local ackDue = redis.call('zrange', inflight, 0, 0, 'withscores')[2]; "
+                    + "if ackDue and (not nextDue or tonumber(ackDue) < tonumber(nextDue)) then nextDue = ackDue; end; "
+                    + "result[q * 2 - 1] = entries; "
+                    + "result[q * 2] = nextDue and tonumber(nextDue) or -1; "
+                    + "end; "
+                    + "return result;";
+
+    private TransferScript() {
+    }
+
+    /**
+     * 追加一个队列的5个键
+     */
+    public static void addKeys(List<Object> keys, String queueName) {
+        keys.add(RedisKeys.scheduleSet(queueName));
+        keys.add(queueName);
+        keys.add(RedisKeys.delayQueueTimeout(queueName));
+        keys.add(RedisKeys.delayQueue(queueName));
+        keys.add(RedisKeys.inflightSet(queueName));
+    }
+
+    /**
+     * 脚本使用的编解码器：参数按字符串写入，返回的条目按队列编解码器读取
+     */
+    public static Codec codec(Codec entryCodec) {
+        return new BaseCodec() {
+            @Override
+            public Decoder<Object> getValueDecoder() {
+                return entryCodec.getValueDecoder();
+            }
+
+            @Override
+            public Encoder getValueEncoder() {
+                return StringCodec.INSTANCE.getValueEncoder();
+            }
+
+            @Override
+            public ClassLoader getClassLoader() {
+                return entryCodec.getClassLoader();
+            }
+        };
+    }
+
+    /**
+     * 第 index 个队列（从0开始）取出的条目
+     */
+    @SuppressWarnings("unchecked")
+    public static List<String> entries(List<Object> result, int index) {
+        return (List<String>) (List<?>) result.get(index * 2);
+    }
+
+    /**
+     * 第 index 个队列（从0开始）剩余条目中最早的到期时间，没有时返回 Long.MAX_VALUE
+     */
+    public static long nextDue(List<Object> result, int index) {
+        long nextDue = ((Number) result.get(index * 2 + 1)).longValue();
+        return nextDue < 0 ? Long.MAX_VALUE : nextDue;
+    }
+}
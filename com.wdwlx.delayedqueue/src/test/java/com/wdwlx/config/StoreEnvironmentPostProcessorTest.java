@@ -0,0 +1,58 @@
+package com.wdwlx.config;
+
+import com.wdwlx.repository.DelayedMessageRepository;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+
+import javax.sql.DataSource;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 按存储类型加载数据源：journal 存储不创建数据源、不扫描Mapper，不配置 JDBC URL 也能启动
+ */
+class StoreEnvironmentPostProcessorTest {
+
+    @Test
+    void journalStoreBootsWithoutDataSource() {
+        try (ConfigurableApplicationContext context = run("--delayed.queue.store=journal", "--spring.datasource.url=",
+                "--spring.autoconfigure.exclude=org.springframework.boot.autoconfigure.cache.CacheAutoConfiguration")) {
+            assertThat(context.getBeanNamesForType(DataSource.class)).isEmpty();
+            assertThat(context.getBeanNamesForType(SqlSessionFactory.class)).isEmpty();
+            assertThat(context.getBeanNamesForType(DelayedMessageRepository.class)).isEmpty();
+            // 已配置的排除项保留
+            assertThat(context.getEnvironment().getProperty("spring.autoconfigure.exclude"))
+                    .contains("CacheAutoConfiguration", "DataSourceAutoConfiguration", "MybatisPlusAutoConfiguration");
+        }
+    }
+
+    @Test
+    void mysqlStoreLoadsDataSourceAndMapper() {
+        try (ConfigurableApplicationContext context = run("--delayed.queue.store=mysql",
+                "--spring.datasource.url=jdbc:h2:mem:store_selection;MODE=MySQL", "--spring.datasource.driverClassName=org.h2.Driver",
+                "--spring.datasource.username=sa", "--spring.datasource.password=")) {
+            assertThat(context.getBeanNamesForType(DataSource.class)).hasSize(1);
+            assertThat(context.getBeanNamesForType(SqlSessionFactory.class)).hasSize(1);
+            assertThat(context.getBeanNamesForType(DelayedMessageRepository.class)).hasSize(1);
+        }
+    }
+
+    private static ConfigurableApplicationContext run(String... args) {
+        return new SpringApplicationBuilder(StoreConfig.class).web(WebApplicationType.NONE).run(args);
+    }
+
+    /**
+     * 只加载自动配置和Mapper扫描，不扫描队列组件
+     */
+    @Configuration
+    @EnableAutoConfiguration
+    @Import(MysqlStoreConfig.class)
+    static class StoreConfig {
+    }
+}
@@ -0,0 +1,95 @@
+package com.wdwlx.service;
+
+import com.wdwlx.entity.DelayedMessage;
+import com.wdwlx.util.EmbeddedRedis;
+import com.wdwlx.util.RotatingBloomFilter;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.redisson.api.RedissonClient;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * 布隆过滤器进入新一代后回写未处理消息的bizId，每代只由一个节点扫描
+ */
+class BloomFilterRefreshTest {
+
+    private static EmbeddedRedis redis;
+
+    private static RedissonClient redissonClient;
+
+    private final DelayedMessageService store = mock(DelayedMessageService.class);
+
+    private final ScheduledExecutorService listenerExecutor = mock(ScheduledExecutorService.class);
+
+    @BeforeAll
+    static void startRedis() throws IOException {
+        redis = EmbeddedRedis.start();
+        redissonClient = redis.client();
+    }
+
+    @AfterAll
+    static void stopRedis() throws IOException {
+        if (redis != null) {
+            redis.close();
+        }
+    }
+
+    @Test
+    void pendingBizIdsAreCarriedIntoTheNewGenerationOnce() {
+        // 只查询当前代：回写前新一代中没有任何键
+        RotatingBloomFilter filter = new RotatingBloomFilter(redissonClient, "refresh_test", 10_000, 0.01,
+                Duration.ofDays(1), 1, false);
+        when(store.findUnprocessedMessages("task", 0, 2)).thenReturn(List.of(message(1, "biz-1"), message(2, "biz-2")));
+        when(store.findUnprocessedMessages("task", 2, 2)).thenReturn(List.of(message(3, "biz-3")));
+        assertThat(filter.contains("task:biz-1")).isFalse();
+
+        ReflectionTestUtils.invokeMethod(node(filter), "refreshBloomFilter");
+
+        assertThat(filter.contains("task:biz-1")).isTrue();
+        assertThat(filter.contains("task:biz-2")).isTrue();
+        assertThat(filter.contains("task:biz-3")).isTrue();
+        assertThat(filter.contains("task:biz-4")).isFalse();
+
+        // 同一代的其他节点抢不到标记，不再扫描
+        ReflectionTestUtils.invokeMethod(node(filter), "refreshBloomFilter");
+        verify(store, times(2)).findUnprocessedMessages(eq("task"), anyLong(), anyInt());
+        // 两个节点都按下一代的开始时间重新调度
+        verify(listenerExecutor, times(2)).schedule(any(Runnable.class), anyLong(), eq(TimeUnit.MILLISECONDS));
+    }
+
+    private AbstractDelayedQueueService node(RotatingBloomFilter filter) {
+        TaskDelayedQueueService service = new TaskDelayedQueueService();
+        ReflectionTestUtils.setField(service, "redissonClient", redissonClient);
+        ReflectionTestUtils.setField(service, "delayedMessageService", store);
+        ReflectionTestUtils.setField(service, "recoveryPageSize", 2);
+        ReflectionTestUtils.setField(service, "bloomFilter", filter);
+        // 停止监听后不再翻页，定时任务不实际执行
+        ReflectionTestUtils.setField(service, "isListening", true);
+        ReflectionTestUtils.setField(service, "listenerExecutor", listenerExecutor);
+        return service;
+    }
+
+    private static DelayedMessage message(long id, String bizId) {
+        DelayedMessage message = new DelayedMessage("m-" + id, "content", LocalDateTime.now().plusDays(3), "task", bizId);
+        message.setId(id);
+        return message;
+    }
+}
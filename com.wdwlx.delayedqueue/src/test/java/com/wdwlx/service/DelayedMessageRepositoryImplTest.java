@@ -0,0 +1,45 @@
+package com.wdwlx.service;
+
+import com.baomidou.mybatisplus.autoconfigure.MybatisPlusAutoConfiguration;
+import org.mybatis.spring.annotation.MapperScan;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.SpringBootConfiguration;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceAutoConfiguration;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceTransactionManagerAutoConfiguration;
+import org.springframework.boot.autoconfigure.sql.init.SqlInitializationAutoConfiguration;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+
+/**
+ * MySQL存储的契约测试，H2（MySQL 兼容模式）执行同一组条件SQL
+ */
+@SpringBootTest(classes = DelayedMessageRepositoryImplTest.StoreConfig.class, properties = {
+        "spring.datasource.url=jdbc:h2:mem:delayed_message_store;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1",
+        "spring.datasource.driverClassName=org.h2.Driver",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.sql.init.mode=always",
+        "spring.sql.init.schema-locations=classpath:delayed-message-schema.sql"
+})
+class DelayedMessageRepositoryImplTest extends DelayedMessageServiceContractTest {
+
+    @Autowired
+    private DelayedMessageService delayedMessageService;
+
+    @Override
+    protected DelayedMessageService store() {
+        return delayedMessageService;
+    }
+
+    /**
+     * 只加载数据源和MyBatis-Plus，不依赖Redis
+     */
+    @SpringBootConfiguration
+    @ImportAutoConfiguration({DataSourceAutoConfiguration.class, DataSourceTransactionManagerAutoConfiguration.class,
+            SqlInitializationAutoConfiguration.class, MybatisPlusAutoConfiguration.class})
+    @MapperScan(basePackages = {"com.wdwlx.repository"})
+    @Import(DelayedMessageRepositoryImpl.class)
+    static class StoreConfig {
+    }
+}
@@ -0,0 +1,333 @@
+package com.wdwlx.service;
+
+import com.wdwlx.entity.DelayedMessage;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DuplicateKeyException;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * 消息存储的契约测试：MySQL存储（H2）与本地日志存储执行同一组用例，条件更新的语义必须一致
+ * <p>
+ * 每个用例使用独立的主题，存储可以在用例之间共用
+ */
+abstract class DelayedMessageServiceContractTest {
+
+    protected String topic;
+
+    protected LocalDateTime now;
+
+    protected abstract DelayedMessageService store();
+
+    @BeforeEach
+    void newTopic() {
+        topic = "contract_" + UUID.randomUUID().toString().replace("-", "").substring(0, 12);
+        // 与数据库 datetime(3) 精度一致
+        now = LocalDateTime.now().truncatedTo(ChronoUnit.MILLIS);
+    }
+
+    @Test
+    void saveAssignsIdAndRoundTrips() {
+        DelayedMessage message = message("biz-1", now.plusMinutes(5));
+        assertThat(store().save(message)).isTrue();
+        assertThat(message.getId()).isNotNull();
+
+        DelayedMessage found = store().findByMessageId(message.getMessageId());
+        assertThat(found.getId()).isEqualTo(message.getId());
+        assertThat(found.getContent()).isEqualTo(message.getContent());
+        assertThat(found.getTopic()).isEqualTo(topic);
+        assertThat(found.getBizId()).isEqualTo("biz-1");
+        assertThat(found.getExpireTime()).isEqualTo(message.getExpireTime());
+        assertThat(found.getStatus()).isEqualTo(0);
+        assertThat(found.getAttempts()).isEqualTo(0);
+        assertThat(store().findByMessageId("missing-" + UUID.randomUUID())).isNull();
+        assertThat(store().findByMessageId(null)).isNull();
+    }
+
+    @Test
+    void duplicateMessageIdIsRejected() {
+        DelayedMessage message = message("biz-1", now.plusMinutes(5));
+        store().save(message);
+
+        DelayedMessage duplicate = message("biz-2", now.plusMinutes(5));
+        duplicate.setMessageId(message.getMessageId());
+        assertThatThrownBy(() -> store().save(duplicate)).isInstanceOf(DuplicateKeyException.class);
+        assertThat(store().findByMessageId(message.getMessageId()).getBizId()).isEqualTo("biz-1");
+    }
+
+    @Test
+    void saveAllAssignsIncreasingIds() {
+        List<DelayedMessage> messages = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            messages.add(message("biz-" + i, now.plusMinutes(i)));
+        }
+        assertThat(store().saveAll(messages)).isTrue();
+        assertThat(store().saveAll(new ArrayList<>())).isTrue();
+        for (int i = 1; i < messages.size(); i++) {
+            assertThat(messages.get(i).getId()).isGreaterThan(messages.get(i - 1).getId());
+        }
+        assertThat(store().findByBizIds(Arrays.asList("biz-0", "biz-3", "biz-9"), topic))
+                .extracting(DelayedMessage::getBizId)
+                .containsExactlyInAnyOrder("biz-0", "biz-3");
+        assertThat(store().findByBizId("biz-4", topic)).hasSize(1);
+        assertThat(store().findByBizId("biz-4", topic + "_other")).isEmpty();
+    }
+
+    @Test
+    void claimOnlyTakesDuePendingMessages() {
+        DelayedMessage due = saved("due", now.minusSeconds(1));
+        DelayedMessage notDue = saved("not-due", now.plusMinutes(5));
+
+        assertThat(store().claim(notDue.getMessageId(), now, now.plusSeconds(30))).isFalse();
+        assertThat(store().claim(due.getMessageId(), now, now.plusSeconds(30))).isTrue();
+        // 已处理中，第二次抢占失败
+        assertThat(store().claim(due.getMessageId(), now, now.plusSeconds(30))).isFalse();
+        assertThat(store().claim("missing-" + UUID.randomUUID(), now, now.plusSeconds(30))).isFalse();
+
+        DelayedMessage claimed = store().findByMessageId(due.getMessageId());
+        assertThat(claimed.getStatus()).isEqualTo(2);
+        assertThat(claimed.getLeaseExpireTime()).isEqualTo(now.plusSeconds(30));
+        assertThat(store().findByMessageId(notDue.getMessageId()).getStatus()).isEqualTo(0);
+    }
+
+    @Test
+    void acquireLeaseTakesPendingOrProcessingButNotFinished() {
+        DelayedMessage pending = saved("pending", now.minusSeconds(1));
+        DelayedMessage processing = saved("processing", now.minusSeconds(1));
+        DelayedMessage processed = saved("processed", now.minusSeconds(1));
+        DelayedMessage notDue = saved("not-due", now.plusMinutes(5));
+        store().claim(processing.getMessageId(), now, now.plusSeconds(30));
+        store().claim(processed.getMessageId(), now, now.plusSeconds(30));
+        store().markProcessed(List.of(processed.getMessageId()));
+
+        assertThat(store().acquireLease(pending.getMessageId(), now, now.plusSeconds(60))).isTrue();
+        assertThat(store().acquireLease(processing.getMessageId(), now, now.plusSeconds(60))).isTrue();
+        assertThat(store().acquireLease(processed.getMessageId(), now, now.plusSeconds(60))).isFalse();
+        assertThat(store().acquireLease(notDue.getMessageId(), now, now.plusSeconds(60))).isFalse();
+        assertThat(store().findByMessageId(processing.getMessageId()).getLeaseExpireTime()).isEqualTo(now.plusSeconds(60));
+    }
+
+    @Test
+    void markProcessedOnlyUpdatesProcessingMessages() {
+        DelayedMessage a = saved("a", now.minusSeconds(1));
+        DelayedMessage b = saved("b", now.minusSeconds(1));
+        DelayedMessage pending = saved("pending", now.minusSeconds(1));
+        store().claim(a.getMessageId(), now, now.plusSeconds(30));
+        store().claim(b.getMessageId(), now, now.plusSeconds(30));
+
+        assertThat(store().markProcessed(List.of(a.getMessageId(), b.getMessageId(), pending.getMessageId()))).isEqualTo(2);
+        // 重复提交不再命中
+        assertThat(store().markProcessed(List.of(a.getMessageId()))).isEqualTo(0);
+        assertThat(store().markProcessed(List.of())).isEqualTo(0);
+
+        assertThat(store().findByMessageId(a.getMessageId()).getStatus()).isEqualTo(1);
+        assertThat(store().findByMessageId(a.getMessageId()).getProcessTime()).isNotNull();
+        assertThat(store().findByMessageId(pending.getMessageId()).getStatus()).isEqualTo(0);
+    }
+
+    @Test
+    void scheduleRetryOnlyReleasesProcessingMessages() {
+        DelayedMessage processing = saved("processing", now.minusSeconds(1));
+        DelayedMessage pending = saved("pending", now.minusSeconds(1));
+        store().claim(processing.getMessageId(), now, now.plusSeconds(30));
+        LocalDateTime retryTime = now.plusSeconds(10);
+
+        assertThat(store().scheduleRetry(processing.getMessageId(), 1, retryTime)).isTrue();
+        assertThat(store().scheduleRetry(pending.getMessageId(), 1, retryTime)).isFalse();
+        // 已恢复为未处理，第二次安排重试失败
+        assertThat(store().scheduleRetry(processing.getMessageId(), 2, retryTime)).isFalse();
+
+        DelayedMessage retried = store().findByMessageId(processing.getMessageId());
+        assertThat(retried.getStatus()).isEqualTo(0);
+        assertThat(retried.getAttempts()).isEqualTo(1);
+        assertThat(retried.getExpireTime()).isEqualTo(retryTime);
+        // 重试时间未到，按旧的到期时间抢占失败
+        assertThat(store().claim(processing.getMessageId(), now, now.plusSeconds(30))).isFalse();
+        assertThat(store().claim(processing.getMessageId(), retryTime, now.plusSeconds(30))).isTrue();
+    }
+
+    @Test
+    void markDeadAndUpdateStatus() {
+        DelayedMessage dead = saved("dead", now.minusSeconds(1));
+        DelayedMessage pending = saved("pending", now.minusSeconds(1));
+        DelayedMessage cancelled = saved("cancelled", now.plusMinutes(5));
+        DelayedMessage done = saved("done", now.minusSeconds(1));
+        store().claim(dead.getMessageId(), now, now.plusSeconds(30));
+        store().cancel(cancelled.getMessageId(), topic);
+
+        // 只有处理中的消息可以转入死信
+        assertThat(store().markDead(pending.getMessageId(), 5)).isFalse();
+        assertThat(store().markDead(cancelled.getMessageId(), 5)).isFalse();
+        assertThat(store().markDead("missing-" + UUID.randomUUID(), 5)).isFalse();
+        assertThat(store().markDead(dead.getMessageId(), 5)).isTrue();
+        assertThat(store().markDead(dead.getMessageId(), 6)).isFalse();
+        assertThat(store().updateStatus(done.getMessageId(), 1)).isTrue();
+        assertThat(store().updateStatus("missing-" + UUID.randomUUID(), 1)).isFalse();
+
+        assertThat(store().findByMessageId(dead.getMessageId()).getStatus()).isEqualTo(3);
+        assertThat(store().findByMessageId(dead.getMessageId()).getAttempts()).isEqualTo(5);
+        assertThat(store().findByMessageId(pending.getMessageId()).getStatus()).isZero();
+        assertThat(store().findByMessageId(cancelled.getMessageId()).getStatus()).isEqualTo(4);
+        assertThat(store().findByMessageId(done.getMessageId()).getStatus()).isEqualTo(1);
+        assertThat(store().claim(dead.getMessageId(), now, now.plusSeconds(30))).isFalse();
+    }
+
+    @Test
+    void cancelOnlyHitsPendingMessagesOfTheTopic() {
+        DelayedMessage pending = saved("pending", now.plusMinutes(5));
+        DelayedMessage processing = saved("processing", now.minusSeconds(1));
+        store().claim(processing.getMessageId(), now, now.plusSeconds(30));
+
+        assertThat(store().cancel(pending.getMessageId(), topic + "_other")).isFalse();
+        assertThat(store().cancel(processing.getMessageId(), topic)).isFalse();
+        assertThat(store().cancel("missing-" + UUID.randomUUID(), topic)).isFalse();
+        assertThat(store().cancel(pending.getMessageId(), topic)).isTrue();
+        assertThat(store().cancel(pending.getMessageId(), topic)).isFalse();
+
+        assertThat(store().findByMessageId(pending.getMessageId()).getStatus()).isEqualTo(4);
+        // 已取消的消息不能再被抢占、改期
+        assertThat(store().claim(pending.getMessageId(), now.plusMinutes(10), now.plusMinutes(11))).isFalse();
+        assertThat(store().reschedule(pending.getMessageId(), topic, now.plusMinutes(1))).isFalse();
+    }
+
+    @Test
+    void rescheduleOnlyHitsPendingMessagesOfTheTopic() {
+        DelayedMessage pending = saved("pending", now.minusSeconds(1));
+        DelayedMessage processing = saved("processing", now.minusSeconds(1));
+        store().claim(processing.getMessageId(), now, now.plusSeconds(30));
+        LocalDateTime later = now.plusMinutes(10);
+
+        assertThat(store().reschedule(pending.getMessageId(), topic + "_other", later)).isFalse();
+        assertThat(store().reschedule(processing.getMessageId(), topic, later)).isFalse();
+        assertThat(store().reschedule(pending.getMessageId(), topic, later)).isTrue();
+
+        assertThat(store().findByMessageId(pending.getMessageId()).getExpireTime()).isEqualTo(later);
+        // 改期后旧的到期时间不能再抢占
+        assertThat(store().claim(pending.getMessageId(), now, now.plusSeconds(30))).isFalse();
+        assertThat(store().findByMessageId(processing.getMessageId()).getExpireTime()).isEqualTo(now.minusSeconds(1));
+    }
+
+    @Test
+    void unprocessedMessagesArePagedByIdWithinTheTopic() {
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < 7; i++) {
+            // 已到期和未到期的都要返回
+            DelayedMessage message = saved("biz-" + i, i % 2 == 0 ? now.minusMinutes(i) : now.plusMinutes(i));
+            expected.add(message.getMessageId());
+        }
+        DelayedMessage processing = saved("processing", now.minusSeconds(1));
+        DelayedMessage cancelled = saved("cancelled", now.plusMinutes(1));
+        store().claim(processing.getMessageId(), now, now.plusSeconds(30));
+        store().cancel(cancelled.getMessageId(), topic);
+        DelayedMessage other = message("other", now.minusSeconds(1));
+        other.setTopic(topic + "_other");
+        store().save(other);
+
+        List<String> paged = new ArrayList<>();
+        long lastId = 0;
+        List<DelayedMessage> page;
+        do {
+            page = store().findUnprocessedMessages(topic, lastId, 3);
+            assertThat(page.size()).isLessThanOrEqualTo(3);
+            for (DelayedMessage message : page) {
+                assertThat(message.getId()).isGreaterThan(lastId);
+                lastId = message.getId();
+                paged.add(message.getMessageId());
+            }
+        } while (page.size() == 3);
+
+        assertThat(paged).containsExactlyElementsOf(expected);
+    }
+
+    @Test
+    void expiredLeasesAreFoundRenewedAndReleased() {
+        DelayedMessage expired1 = saved("expired-1", now.minusSeconds(10));
+        DelayedMessage expired2 = saved("expired-2", now.minusSeconds(10));
+        DelayedMessage live = saved("live", now.minusSeconds(10));
+        store().claim(expired2.getMessageId(), now, now.minusSeconds(2));
+        store().claim(expired1.getMessageId(), now, now.minusSeconds(5));
+        store().claim(live.getMessageId(), now, now.plusSeconds(30));
+
+        List<DelayedMessage> found = store().findExpiredLeases(List.of(topic), now, 10);
+        // 按租约到期时间排序
+        assertThat(found).extracting(DelayedMessage::getMessageId)
+                .containsExactly(expired1.getMessageId(), expired2.getMessageId());
+        assertThat(store().findExpiredLeases(List.of(topic), now, 1)).hasSize(1);
+        assertThat(store().findExpiredLeases(List.of(topic + "_other"), now, 10)).isEmpty();
+        assertThat(store().findExpiredLeases(List.of(), now, 10)).isEmpty();
+
+        // 续约后不再过期
+        assertThat(store().renewLeases(List.of(expired2.getMessageId()), now.plusSeconds(30))).isEqualTo(1);
+        assertThat(store().findExpiredLeases(List.of(topic), now, 10)).extracting(DelayedMessage::getMessageId)
+                .containsExactly(expired1.getMessageId());
+
+        List<String> all = List.of(expired1.getMessageId(), expired2.getMessageId(), live.getMessageId());
+        assertThat(store().releaseExpiredLeases(all, now)).isEqualTo(1);
+        assertThat(store().findByMessageId(expired1.getMessageId()).getStatus()).isEqualTo(0);
+        assertThat(store().findByMessageId(expired1.getMessageId()).getLeaseExpireTime()).isNull();
+        assertThat(store().findByMessageId(expired2.getMessageId()).getStatus()).isEqualTo(2);
+        assertThat(store().findByMessageId(live.getMessageId()).getStatus()).isEqualTo(2);
+        // 已释放的消息不能再续约
+        assertThat(store().renewLeases(List.of(expired1.getMessageId()), now.plusSeconds(30))).isEqualTo(0);
+        assertThat(store().releaseExpiredLeases(List.of(), now)).isEqualTo(0);
+        assertThat(store().renewLeases(List.of(), now)).isEqualTo(0);
+    }
+
+    @Test
+    void expiredLeasesOfSeveralTopicsAreFoundInOneQuery() {
+        String otherTopic = topic + "_other";
+        DelayedMessage mine = saved("mine", now.minusSeconds(10));
+        DelayedMessage other = message("other", now.minusSeconds(10));
+        other.setTopic(otherTopic);
+        store().save(other);
+        DelayedMessage unregistered = message("unregistered", now.minusSeconds(10));
+        unregistered.setTopic(topic + "_unregistered");
+        store().save(unregistered);
+        store().claim(mine.getMessageId(), now, now.minusSeconds(2));
+        store().claim(other.getMessageId(), now, now.minusSeconds(5));
+        store().claim(unregistered.getMessageId(), now, now.minusSeconds(8));
+
+        // 多个主题合并排序，不包含未查询的主题
+        assertThat(store().findExpiredLeases(List.of(topic, otherTopic), now, 10)).extracting(DelayedMessage::getMessageId)
+                .containsExactly(other.getMessageId(), mine.getMessageId());
+        assertThat(store().findExpiredLeases(List.of(topic, otherTopic), now, 1)).extracting(DelayedMessage::getMessageId)
+                .containsExactly(other.getMessageId());
+    }
+
+    @Test
+    void deleteByMessageId() {
+        DelayedMessage message = saved("biz-1", now.plusMinutes(5));
+
+        assertThat(store().deleteByMessageId(message.getMessageId())).isTrue();
+        assertThat(store().deleteByMessageId(message.getMessageId())).isFalse();
+        assertThat(store().findByMessageId(message.getMessageId())).isNull();
+        assertThat(store().findByBizId("biz-1", topic)).isEmpty();
+        assertThat(store().findUnprocessedMessages(topic, 0, 10)).isEmpty();
+    }
+
+    protected DelayedMessage saved(String bizId, LocalDateTime expireTime) {
+        DelayedMessage message = message(bizId, expireTime);
+        store().save(message);
+        return message;
+    }
+
+    protected DelayedMessage message(String bizId, LocalDateTime expireTime) {
+        DelayedMessage message = new DelayedMessage(UUID.randomUUID().toString(), "content-" + bizId, expireTime, topic, bizId);
+        message.setStatus(0);
+        return message;
+    }
+
+    protected static List<String> messageIds(List<DelayedMessage> messages) {
+        return messages.stream().map(DelayedMessage::getMessageId).collect(Collectors.toList());
+    }
+}
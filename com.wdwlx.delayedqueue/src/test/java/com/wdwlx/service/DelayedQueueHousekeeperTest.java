@@ -0,0 +1,173 @@
+package com.wdwlx.service;
+
+import com.wdwlx.entity.DelayedMessage;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * 共享维护任务：所有主题一次回收查询并按主题写回，续约按租约时长合并，写后缓冲统一刷新
+ */
+class DelayedQueueHousekeeperTest {
+
+    private final DelayedMessageService store = mock(DelayedMessageService.class);
+
+    private final DelayedQueueHousekeeper housekeeper = new DelayedQueueHousekeeper();
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(housekeeper, "delayedMessageService", store);
+        // 定时任务不实际执行，由用例直接触发
+        ReflectionTestUtils.setField(housekeeper, "listenerExecutor", mock(ScheduledExecutorService.class));
+        ReflectionTestUtils.setField(housekeeper, "defaultLeaseSeconds", 60L);
+        ReflectionTestUtils.setField(housekeeper, "reaperBatchSize", 2);
+    }
+
+    @Test
+    void oneReaperQueryCoversAllTopicsAndRequeuesByTopic() {
+        FakeTarget orders = register("orders", 60);
+        FakeTarget emails = register("emails", 60);
+        DelayedMessage order1 = message("o1", "orders");
+        DelayedMessage email1 = message("e1", "emails");
+        DelayedMessage order2 = message("o2", "orders");
+        when(store.findExpiredLeases(anyCollection(), any(), eq(2)))
+                .thenReturn(List.of(order1, email1))
+                .thenReturn(List.of(order2))
+                .thenReturn(List.of());
+
+        ReflectionTestUtils.invokeMethod(housekeeper, "reapExpiredLeases");
+
+        // 满页后继续翻页，不满一页时结束
+        verify(store, times(2)).findExpiredLeases(argThat(topics -> topics.size() == 2
+                && topics.containsAll(List.of("orders", "emails"))), any(), eq(2));
+        verify(store).releaseExpiredLeases(eq(List.of("o1", "e1")), any());
+        verify(store).releaseExpiredLeases(eq(List.of("o2")), any());
+        assertThat(orders.requeued).containsExactly(order1, order2);
+        assertThat(emails.requeued).containsExactly(email1);
+        assertThat(housekeeper.getStats()).containsEntry("reaped", 3L).containsEntry("reaperQueries", 2L);
+    }
+
+    @Test
+    void unregisteredTopicsAreNotQueried() {
+        FakeTarget orders = register("orders", 60);
+        housekeeper.unregister(orders);
+
+        ReflectionTestUtils.invokeMethod(housekeeper, "reapExpiredLeases");
+
+        verify(store, times(0)).findExpiredLeases(anyCollection(), any(), anyInt());
+    }
+
+    @Test
+    void renewalsAreMergedPerLeaseDuration() {
+        long now = System.currentTimeMillis();
+        FakeTarget orders = register("orders", 30);
+        FakeTarget emails = register("emails", 30);
+        FakeTarget reports = register("reports", 90);
+        orders.leased.put("o1", now - 20_000);
+        // 持有未超过租约的三分之一，本次不续约
+        orders.leased.put("o2", now);
+        emails.leased.put("e1", now - 20_000);
+        reports.leased.put("r1", now - 40_000);
+        when(store.renewLeases(anyCollection(), any())).thenAnswer(invocation -> ((Collection<?>) invocation.getArgument(0)).size());
+
+        ReflectionTestUtils.invokeMethod(housekeeper, "renewLeases");
+
+        verify(store, times(2)).renewLeases(anyCollection(), any(LocalDateTime.class));
+        verify(store).renewLeases(argThat(ids -> ids.size() == 2 && ids.containsAll(List.of("o1", "e1"))), any());
+        verify(store).renewLeases(eq(List.of("r1")), any());
+        assertThat(orders.leased.get("o1")).isGreaterThanOrEqualTo(now);
+        assertThat(reports.leased.get("r1")).isGreaterThanOrEqualTo(now);
+        // 续约间隔取最短租约的三分之一
+        assertThat(housekeeper.getStats()).containsEntry("renewIntervalMillis", 10_000L).containsEntry("renewed", 3L);
+    }
+
+    @Test
+    void statusBuffersAreFlushedTogether() {
+        FakeTarget orders = register("orders", 60);
+        FakeTarget emails = register("emails", 60);
+        register("reports", 60);
+        orders.buffer = new StatusWriteBehindBuffer(store, "orders", 100, () -> 100);
+        emails.buffer = new StatusWriteBehindBuffer(store, "emails", 100, () -> 100);
+        orders.buffer.markProcessed("o1");
+        emails.buffer.markProcessed("e1");
+
+        ReflectionTestUtils.invokeMethod(housekeeper, "flushStatusBuffers");
+
+        verify(store).markProcessed(List.of("o1"));
+        verify(store).markProcessed(List.of("e1"));
+    }
+
+    private FakeTarget register(String topic, long leaseSeconds) {
+        FakeTarget target = new FakeTarget(topic, leaseSeconds);
+        housekeeper.register(target);
+        return target;
+    }
+
+    private static DelayedMessage message(String messageId, String topic) {
+        DelayedMessage message = new DelayedMessage(messageId, "content", LocalDateTime.now(), topic, "biz-" + messageId);
+        message.setStatus(2);
+        return message;
+    }
+
+    private static final class FakeTarget implements DelayedQueueHousekeeper.Target {
+
+        private final String topic;
+
+        private final long leaseSeconds;
+
+        private final Map<String, Long> leased = new ConcurrentHashMap<>();
+
+        private final List<DelayedMessage> requeued = new ArrayList<>();
+
+        private StatusWriteBehindBuffer buffer;
+
+        FakeTarget(String topic, long leaseSeconds) {
+            this.topic = topic;
+            this.leaseSeconds = leaseSeconds;
+        }
+
+        @Override
+        public String getTopic() {
+            return topic;
+        }
+
+        @Override
+        public long getLeaseSeconds() {
+            return leaseSeconds;
+        }
+
+        @Override
+        public Map<String, Long> leasedMessages() {
+            return leased;
+        }
+
+        @Override
+        public void requeue(List<DelayedMessage> messages) {
+            requeued.addAll(messages);
+        }
+
+        @Override
+        public StatusWriteBehindBuffer statusBuffer() {
+            return buffer;
+        }
+    }
+}
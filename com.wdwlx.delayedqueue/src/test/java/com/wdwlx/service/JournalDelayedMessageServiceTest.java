@@ -0,0 +1,163 @@
+package com.wdwlx.service;
+
+import com.wdwlx.entity.DelayedMessage;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 本地日志存储的契约测试，另验证重启回放与压缩
+ */
+class JournalDelayedMessageServiceTest extends DelayedMessageServiceContractTest {
+
+    private static ScheduledExecutorService listenerExecutor;
+
+    @TempDir
+    Path journalDir;
+
+    private JournalDelayedMessageService journalStore;
+
+    @BeforeAll
+    static void startExecutor() {
+        listenerExecutor = Executors.newSingleThreadScheduledExecutor();
+    }
+
+    @AfterAll
+    static void stopExecutor() {
+        listenerExecutor.shutdownNow();
+    }
+
+    @BeforeEach
+    void open() throws IOException {
+        journalStore = open(0.5, 24);
+    }
+
+    @AfterEach
+    void close() {
+        journalStore.destroy();
+    }
+
+    @Override
+    protected DelayedMessageService store() {
+        return journalStore;
+    }
+
+    @Test
+    void restartReplaysLatestVersions() throws IOException {
+        DelayedMessage pending = saved("pending", now.plusMinutes(5));
+        DelayedMessage processing = saved("processing", now.minusSeconds(1));
+        DelayedMessage deleted = saved("deleted", now.plusMinutes(5));
+        store().claim(processing.getMessageId(), now, now.plusSeconds(30));
+        store().reschedule(pending.getMessageId(), topic, now.plusMinutes(10));
+        store().deleteByMessageId(deleted.getMessageId());
+
+        restart(0.5, 24);
+
+        assertThat(store().findByMessageId(pending.getMessageId()).getExpireTime()).isEqualTo(now.plusMinutes(10));
+        assertThat(store().findByMessageId(processing.getMessageId()).getStatus()).isEqualTo(2);
+        assertThat(store().findByMessageId(deleted.getMessageId())).isNull();
+        assertThat(messageIds(store().findUnprocessedMessages(topic, 0, 10))).containsExactly(pending.getMessageId());
+        assertThat(messageIds(store().findExpiredLeases(List.of(topic), now.plusMinutes(1), 10))).containsExactly(processing.getMessageId());
+        DelayedMessage next = saved("next", now.plusMinutes(5));
+        assertThat(next.getId()).isGreaterThan(deleted.getId());
+    }
+
+    @Test
+    void leaseIndexFollowsEveryLeaseChange() {
+        DelayedMessage reacquired = saved("reacquired", now.minusSeconds(10));
+        DelayedMessage processed = saved("processed", now.minusSeconds(10));
+        DelayedMessage dead = saved("dead", now.minusSeconds(10));
+        DelayedMessage expired = saved("expired", now.minusSeconds(10));
+        for (DelayedMessage message : List.of(reacquired, processed, dead, expired)) {
+            store().claim(message.getMessageId(), now, now.minusSeconds(5));
+        }
+
+        // 重新取得租约后按新的到期时间排序，旧的索引项不再命中
+        store().acquireLease(reacquired.getMessageId(), now, now.minusSeconds(1));
+        store().markProcessed(List.of(processed.getMessageId()));
+        store().markDead(dead.getMessageId(), 5);
+
+        assertThat(messageIds(store().findExpiredLeases(List.of(topic), now, 10)))
+                .containsExactly(expired.getMessageId(), reacquired.getMessageId());
+        store().acquireLease(reacquired.getMessageId(), now, now.plusSeconds(30));
+        assertThat(messageIds(store().findExpiredLeases(List.of(topic), now, 10))).containsExactly(expired.getMessageId());
+        assertThat(messageIds(store().findExpiredLeases(List.of(topic), now.plusMinutes(1), 10)))
+                .containsExactly(expired.getMessageId(), reacquired.getMessageId());
+    }
+
+    @Test
+    void restartAfterCompactionKeepsPendingAndDoesNotReuseIds() throws Exception {
+        // 保留时长为0：压缩时丢弃所有终态消息
+        restart(0.5, 0);
+        String padding = "x".repeat(1024);
+        List<DelayedMessage> pending = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            DelayedMessage message = message("pending-" + i, now.plusMinutes(5));
+            message.setContent(padding);
+            store().save(message);
+            pending.add(message);
+        }
+        // id最大的消息处理完成，压缩后只剩高水位标记
+        DelayedMessage last = saved("last", now.minusSeconds(1));
+        store().claim(last.getMessageId(), now, now.plusSeconds(30));
+        store().markProcessed(List.of(last.getMessageId()));
+        Thread.sleep(5);
+
+        // 反复改期追加新版本，写满第一段（1MB）
+        for (int round = 1; round <= 6; round++) {
+            for (DelayedMessage message : pending) {
+                store().reschedule(message.getMessageId(), topic, now.plusMinutes(5 + round));
+            }
+        }
+        assertThat(journalSegments()).isGreaterThan(1);
+
+        ReflectionTestUtils.invokeMethod(journalStore, "compact");
+        assertThat(store().findByMessageId(last.getMessageId())).isNull();
+
+        restart(0.5, 0);
+
+        assertThat(store().findByMessageId(last.getMessageId())).isNull();
+        List<DelayedMessage> recovered = store().findUnprocessedMessages(topic, 0, 1000);
+        assertThat(messageIds(recovered)).containsExactlyElementsOf(messageIds(pending));
+        assertThat(recovered).allSatisfy(message -> assertThat(message.getExpireTime()).isEqualTo(now.plusMinutes(11)));
+        DelayedMessage next = saved("next", now.plusMinutes(5));
+        assertThat(next.getId()).isGreaterThan(last.getId());
+    }
+
+    private void restart(double compactionThreshold, long retentionHours) throws IOException {
+        journalStore.destroy();
+        journalStore = open(compactionThreshold, retentionHours);
+    }
+
+    private JournalDelayedMessageService open(double compactionThreshold, long retentionHours) throws IOException {
+        JournalDelayedMessageService service = new JournalDelayedMessageService();
+        ReflectionTestUtils.setField(service, "listenerExecutor", listenerExecutor);
+        ReflectionTestUtils.setField(service, "journalDir", journalDir.toString());
+        ReflectionTestUtils.setField(service, "segmentSizeMb", 1);
+        ReflectionTestUtils.setField(service, "syncWrites", true);
+        ReflectionTestUtils.setField(service, "flushIntervalMillis", 10L);
+        // 压缩由用例直接调用
+        ReflectionTestUtils.setField(service, "compactionIntervalSeconds", 3600L);
+        ReflectionTestUtils.setField(service, "compactionThreshold", compactionThreshold);
+        ReflectionTestUtils.setField(service, "retentionHours", retentionHours);
+        service.init();
+        return service;
+    }
+
+    private int journalSegments() {
+        return (Integer) journalStore.getStats().get("segments");
+    }
+}
@@ -0,0 +1,94 @@
+package com.wdwlx.util;
+
+import io.netty.buffer.ByteBuf;
+import org.junit.jupiter.api.Test;
+import org.redisson.client.codec.Codec;
+import org.redisson.codec.MarshallingCodec;
+
+import java.io.IOException;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 紧凑ID编解码：数字ID写为8字节，其余条目与原编解码器一致，两种格式可以混合解码
+ */
+class CompactIdCodecTest {
+
+    // Redisson 默认编解码器
+    private final Codec fallback = new MarshallingCodec();
+
+    private final CompactIdCodec compact = new CompactIdCodec(fallback, true);
+
+    @Test
+    void numericIdsRoundTripAsEightBytes() throws IOException {
+        long snowflakeId = new SnowflakeIdWorker(1).nextId();
+        for (String id : List.of(Long.toString(snowflakeId), "0", "1", "-1", "42",
+                Long.toString(Long.MAX_VALUE), Long.toString(Long.MIN_VALUE))) {
+            ByteBuf encoded = compact.getValueEncoder().encode(id);
+            try {
+                assertThat(encoded.readableBytes()).as(id).isEqualTo(Long.BYTES);
+                assertThat(encoded.getLong(encoded.readerIndex())).isEqualTo(Long.parseLong(id));
+                assertThat(compact.getValueDecoder().decode(encoded, null)).isEqualTo(id);
+            } finally {
+                encoded.release();
+            }
+        }
+    }
+
+    @Test
+    void nonCanonicalNumbersAndOtherEntriesUseTheFallback() throws IOException {
+        for (Object value : List.of("", "-", "007", "+1", "-0", "1.5", "1e3", " 1", "abc",
+                "9223372036854775808", "-9223372036854775809", "123456789012345678901",
+                "{\"messageId\":\"1\",\"content\":\"内联消息\"}", 42L)) {
+            assertThat(roundTrip(compact, value)).as(String.valueOf(value)).isEqualTo(value);
+            assertThat(encodedBytes(compact, value)).as(String.valueOf(value)).isEqualTo(encodedBytes(fallback, value));
+        }
+    }
+
+    @Test
+    void disabledCompactWritesKeepTheFallbackFormatButStillDecodeCompactEntries() throws IOException {
+        CompactIdCodec plain = new CompactIdCodec(fallback, false);
+        String id = Long.toString(new SnowflakeIdWorker(1).nextId());
+
+        assertThat(encodedBytes(plain, id)).isEqualTo(encodedBytes(fallback, id));
+        assertThat(roundTrip(plain, id)).isEqualTo(id);
+
+        // 开启期间写入的紧凑条目在关闭后仍能读出
+        ByteBuf compactEntry = compact.getValueEncoder().encode(id);
+        try {
+            assertThat(plain.getValueDecoder().decode(compactEntry, null)).isEqualTo(id);
+        } finally {
+            compactEntry.release();
+        }
+    }
+
+    @Test
+    void fallbackEncodedIdsAreNeverEightBytes() throws IOException {
+        // 按长度区分格式的前提：原编解码器写入的ID（含最短的ID）不会恰好是8字节
+        for (String id : List.of("1", "12345678", Long.toString(new SnowflakeIdWorker(1).nextId()))) {
+            assertThat(encodedBytes(fallback, id).length).as(id).isNotEqualTo(Long.BYTES);
+            assertThat(roundTrip(compact, id)).isEqualTo(id);
+        }
+    }
+
+    private static Object roundTrip(Codec codec, Object value) throws IOException {
+        ByteBuf encoded = codec.getValueEncoder().encode(value);
+        try {
+            return codec.getValueDecoder().decode(encoded, null);
+        } finally {
+            encoded.release();
+        }
+    }
+
+    private static byte[] encodedBytes(Codec codec, Object value) throws IOException {
+        ByteBuf encoded = codec.getValueEncoder().encode(value);
+        try {
+            byte[] bytes = new byte[encoded.readableBytes()];
+            encoded.getBytes(encoded.readerIndex(), bytes);
+            return bytes;
+        } finally {
+            encoded.release();
+        }
+    }
+}
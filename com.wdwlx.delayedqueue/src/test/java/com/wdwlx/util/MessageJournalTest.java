@@ -0,0 +1,191 @@
+package com.wdwlx.util;
+
+import com.wdwlx.entity.DelayedMessage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * 消息日志的回放、尾部截断和分段
+ */
+class MessageJournalTest {
+
+    private static final int SEGMENT_SIZE = 4096;
+
+    @TempDir
+    Path dir;
+
+    private MessageJournal journal;
+
+    @AfterEach
+    void close() {
+        if (journal != null) {
+            journal.close();
+        }
+    }
+
+    @Test
+    void replayKeepsLastVersionAppliesDeletesAndReportsIdMarks() throws IOException {
+        Replay first = reopen();
+        assertThat(first.messages).isEmpty();
+
+        LocalDateTime expireTime = LocalDateTime.of(2024, 5, 1, 12, 30, 15, 123456789);
+        journal.append(message(1, "m1", 0, expireTime));
+        journal.append(message(2, "m2", 0, expireTime));
+        journal.append(message(1, "m1", 2, expireTime.plusMinutes(1)));
+        journal.appendDelete("m2");
+        journal.appendIdMark(7);
+        journal.force();
+
+        Replay replay = reopen();
+
+        assertThat(replay.messages).containsOnlyKeys("m1");
+        DelayedMessage m1 = replay.messages.get("m1");
+        assertThat(m1.getId()).isEqualTo(1);
+        assertThat(m1.getStatus()).isEqualTo(2);
+        assertThat(m1.getAttempts()).isEqualTo(1);
+        assertThat(m1.getTopic()).isEqualTo("topic");
+        assertThat(m1.getBizId()).isEqualTo("biz-m1");
+        assertThat(m1.getContent()).isEqualTo("内容 m1");
+        assertThat(m1.getExpireTime()).isEqualTo(expireTime.plusMinutes(1));
+        assertThat(m1.getProcessTime()).isNull();
+        assertThat(replay.idMarks).containsExactly(7L);
+        assertThat(replay.records).isEqualTo(4);
+    }
+
+    @Test
+    void tornTailIsDiscardedAndOverwrittenByNextAppend() throws IOException {
+        reopen();
+        LocalDateTime expireTime = LocalDateTime.of(2024, 5, 1, 12, 0);
+        journal.append(message(1, "m1", 0, expireTime));
+        journal.append(message(2, "m2", 0, expireTime));
+        int end = activeSegmentBytes();
+        journal.close();
+
+        // 尾部写了长度但内容未写完：校验失败
+        writeAt(end, ByteBuffer.allocate(16).putInt(64).putInt(0x12345678).put((byte) 1).flip());
+        Replay crcBad = reopen();
+        assertThat(crcBad.messages).containsOnlyKeys("m1", "m2");
+        assertThat(activeSegmentBytes()).isEqualTo(end);
+        journal.close();
+
+        // 长度超出段文件
+        writeAt(end, ByteBuffer.allocate(4).putInt(SEGMENT_SIZE).flip());
+        Replay oversized = reopen();
+        assertThat(oversized.messages).containsOnlyKeys("m1", "m2");
+
+        // 新记录从有效数据末尾写入，覆盖截断的尾部
+        journal.append(message(3, "m3", 0, expireTime));
+        journal.force();
+        Replay replay = reopen();
+        assertThat(replay.messages).containsOnlyKeys("m1", "m2", "m3");
+        assertThat(replay.records).isEqualTo(3);
+    }
+
+    @Test
+    void fullSegmentRollsOverAndSealedSegmentsCanBeDeleted() throws IOException {
+        reopen();
+        String padding = "x".repeat(1000);
+        LocalDateTime expireTime = LocalDateTime.of(2024, 5, 1, 12, 0);
+        for (int i = 1; i <= 10; i++) {
+            DelayedMessage message = message(i, "m" + i, 0, expireTime);
+            message.setContent(padding);
+            journal.append(message);
+        }
+        List<Integer> sealed = journal.sealedSegments();
+        assertThat(sealed).isNotEmpty().doesNotContain(journal.activeSegment());
+        assertThat(journal.recordCount(sealed.get(0))).isPositive();
+        assertThatThrownBy(() -> journal.deleteSegment(journal.activeSegment()))
+                .isInstanceOf(IllegalArgumentException.class);
+
+        int dropped = journal.recordCount(sealed.get(0));
+        journal.deleteSegment(sealed.get(0));
+        journal.force();
+        Replay replay = reopen();
+
+        assertThat(replay.records).isEqualTo(10 - dropped);
+        assertThat(replay.messages).doesNotContainKey("m1").containsKey("m10");
+    }
+
+    @Test
+    void recordLargerThanSegmentIsRejected() throws IOException {
+        reopen();
+        DelayedMessage message = message(1, "m1", 0, LocalDateTime.of(2024, 5, 1, 12, 0));
+        message.setContent("x".repeat(SEGMENT_SIZE));
+
+        assertThatThrownBy(() -> journal.append(message)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private Replay reopen() throws IOException {
+        if (journal != null) {
+            journal.close();
+        }
+        Replay replay = new Replay();
+        journal = new MessageJournal(dir, SEGMENT_SIZE, false, 10);
+        journal.open(replay);
+        return replay;
+    }
+
+    private int activeSegmentBytes() {
+        return (Integer) journal.getStats().get("activeSegmentBytes");
+    }
+
+    private void writeAt(int position, ByteBuffer bytes) throws IOException {
+        Path segment = dir.resolve(String.format("%010d.seg", journal.activeSegment()));
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            channel.write(bytes, position);
+        }
+    }
+
+    private static DelayedMessage message(long id, String messageId, int status, LocalDateTime expireTime) {
+        DelayedMessage message = new DelayedMessage();
+        message.setId(id);
+        message.setMessageId(messageId);
+        message.setBizId("biz-" + messageId);
+        message.setContent("内容 " + messageId);
+        message.setTopic("topic");
+        message.setCreateTime(expireTime.minusMinutes(5));
+        message.setExpireTime(expireTime);
+        message.setStatus(status);
+        message.setAttempts(status == 0 ? 0 : 1);
+        return message;
+    }
+
+    private static final class Replay implements MessageJournal.ReplayHandler {
+
+        private final Map<String, DelayedMessage> messages = new LinkedHashMap<>();
+
+        private final List<Long> idMarks = new ArrayList<>();
+
+        private int records;
+
+        @Override
+        public void onRecord(int segment, String messageId, DelayedMessage message) {
+            records++;
+            if (message == null) {
+                messages.remove(messageId);
+            } else {
+                messages.put(messageId, message);
+            }
+        }
+
+        @Override
+        public void onIdMark(long maxId) {
+            idMarks.add(maxId);
+        }
+    }
+}
@@ -0,0 +1,186 @@
+package com.wdwlx.util;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.redisson.api.RedissonClient;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 布隆过滤器的窗口轮换、代的老化与本地镜像，在嵌入式 Redis 上执行，时钟由测试推进
+ */
+class RotatingBloomFilterGenerationTest {
+
+    private static final long WINDOW = Duration.ofHours(1).toMillis();
+
+    private static EmbeddedRedis redis;
+
+    private static RedissonClient redissonClient;
+
+    private final AtomicLong clock = new AtomicLong(100 * WINDOW);
+
+    private final List<RotatingBloomFilter> filters = new ArrayList<>();
+
+    @BeforeAll
+    static void startRedis() throws IOException {
+        redis = EmbeddedRedis.start();
+        redissonClient = redis.client();
+    }
+
+    @AfterAll
+    static void stopRedis() throws IOException {
+        if (redis != null) {
+            redis.close();
+        }
+    }
+
+    @BeforeEach
+    void flush() {
+        redissonClient.getKeys().flushall();
+    }
+
+    @AfterEach
+    void closeFilters() {
+        filters.forEach(RotatingBloomFilter::close);
+    }
+
+    @Test
+    void windowFollowsTheClock() {
+        RotatingBloomFilter filter = filter(2, false);
+        assertThat(filter.currentWindow()).isEqualTo(100);
+        assertThat(filter.millisUntilNextWindow()).isEqualTo(WINDOW);
+
+        clock.addAndGet(WINDOW / 4 * 3);
+        assertThat(filter.currentWindow()).isEqualTo(100);
+        assertThat(filter.millisUntilNextWindow()).isEqualTo(WINDOW / 4);
+
+        clock.addAndGet(WINDOW / 4);
+        assertThat(filter.currentWindow()).isEqualTo(101);
+    }
+
+    @Test
+    void keysAgeOutAfterTheQueriedGenerationsUnlessRewritten() {
+        RotatingBloomFilter filter = filter(2, false);
+        filter.add("pending");
+        filter.add("processed");
+        // 每代的存活时间覆盖其作为查询窗口的全部时长
+        assertThat(redissonClient.getBitSet(RedisKeys.bloomGeneration("test", 100)).remainTimeToLive())
+                .isBetween(3 * WINDOW - 60_000, 3 * WINDOW);
+
+        clock.addAndGet(WINDOW);
+        assertThat(filter.contains("pending")).isTrue();
+        assertThat(filter.contains("processed")).isTrue();
+        // 新一代开始后回写仍未处理的键
+        filter.add("pending");
+
+        clock.addAndGet(WINDOW);
+        assertThat(filter.contains("pending")).isTrue();
+        assertThat(filter.contains("processed")).isFalse();
+
+        clock.addAndGet(WINDOW);
+        assertThat(filter.contains("pending")).isFalse();
+    }
+
+    @Test
+    void mirrorsEvictGenerationsOutsideTheQueryWindow() {
+        RotatingBloomFilter filter = filter(2, true);
+        filter.add("old");
+        assertThat(filter.getStats().get("mirroredGenerations")).isEqualTo(2);
+
+        clock.addAndGet(2 * WINDOW);
+        // 查询时创建新一代镜像，同时丢弃 100 及更早的代
+        assertThat(filter.contains("old")).isFalse();
+        assertThat(filter.getStats().get("mirroredGenerations")).isEqualTo(2);
+        assertThat(filter.getStats().get("remoteLookups")).isEqualTo(0L);
+    }
+
+    @Test
+    void writesOfOtherNodesReachTheMirror() {
+        RotatingBloomFilter writer = filter(2, true);
+        RotatingBloomFilter reader = filter(2, true);
+        assertThat(reader.contains("biz-1")).isFalse();
+
+        writer.add("biz-1");
+
+        await(() -> reader.contains("biz-1"));
+    }
+
+    @Test
+    void remoteAddsOutsideTheQueryWindowAreIgnored() {
+        RotatingBloomFilter filter = filter(2, true);
+        long[] positions = filter.positions("late");
+
+        filter.applyRemoteAdd(message(98, positions));
+        filter.applyRemoteAdd("not-a-window,1");
+        assertThat(filter.contains("late")).isFalse();
+        assertThat(filter.getStats().get("mirroredGenerations")).isEqualTo(2);
+
+        // 上一代仍在查询窗口内
+        filter.applyRemoteAdd(message(99, positions));
+        assertThat(filter.contains("late")).isTrue();
+    }
+
+    @Test
+    void reloadMergesRedisBitsWithoutDroppingLocalOnes() {
+        RotatingBloomFilter filter = filter(2, true);
+        // 未开启镜像的节点直接写入Redis，不发布同步消息
+        filter(2, false).add("silent");
+        // 同步消息先于Redis中的位到达本节点
+        filter.applyRemoteAdd(message(100, filter.positions("in-flight")));
+        assertThat(filter.contains("silent")).isFalse();
+
+        filter.reloadMirrors();
+
+        assertThat(filter.contains("silent")).isTrue();
+        assertThat(filter.contains("in-flight")).isTrue();
+    }
+
+    @Test
+    void newGenerationMirrorLoadsWritesOfOtherNodes() {
+        RotatingBloomFilter filter = filter(2, true);
+        clock.addAndGet(WINDOW);
+        // 其他节点先进入新一代并写入，本节点首次查询新一代时加载
+        filter(2, false).add("early");
+
+        assertThat(filter.contains("early")).isTrue();
+    }
+
+    private RotatingBloomFilter filter(int generations, boolean localMirror) {
+        RotatingBloomFilter filter = new RotatingBloomFilter(redissonClient, "test", 10_000, 0.01,
+                Duration.ofMillis(WINDOW), generations, localMirror, clock::get);
+        filter.start();
+        filters.add(filter);
+        return filter;
+    }
+
+    private static String message(long window, long[] positions) {
+        StringBuilder message = new StringBuilder().append(window);
+        for (long position : positions) {
+            message.append(',').append(position);
+        }
+        return message.toString();
+    }
+
+    private static void await(BooleanSupplier condition) {
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (!condition.getAsBoolean()) {
+            assertThat(System.currentTimeMillis()).as("等待同步超时").isLessThan(deadline);
+            try {
+                Thread.sleep(10);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new AssertionError(e);
+            }
+        }
+    }
+}
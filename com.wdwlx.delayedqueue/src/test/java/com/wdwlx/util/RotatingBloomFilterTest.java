@@ -0,0 +1,100 @@
+package com.wdwlx.util;
+
+import org.junit.jupiter.api.Test;
+import org.redisson.api.RedissonClient;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+
+/**
+ * 布隆过滤器的容量计算与哈希位置，不访问Redis
+ */
+class RotatingBloomFilterTest {
+
+    private final RedissonClient redissonClient = mock(RedissonClient.class);
+
+    @Test
+    void sizingFollowsExpectedInsertionsAndFalseProbability() {
+        Map<String, Object> stats = filter(1_000_000, 0.01).getStats();
+        // m = -n·ln(p) / (ln2)^2，k = m/n·ln2
+        assertThat(stats.get("bitSize")).isEqualTo(9_585_059);
+        assertThat(stats.get("hashIterations")).isEqualTo(7);
+        assertThat(stats.get("windowMillis")).isEqualTo(Duration.ofHours(24).toMillis());
+        assertThat(stats.get("generations")).isEqualTo(2);
+
+        // 容量极小时位图至少64位
+        assertThat(filter(1, 0.5).getStats().get("bitSize")).isEqualTo(64);
+    }
+
+    @Test
+    void invalidArgumentsAreRejected() {
+        assertThatThrownBy(() -> filter(0, 0.01)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> filter(100, 0)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> filter(100, 1)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new RotatingBloomFilter(redissonClient, "test", 100, 0.01, Duration.ofHours(1), 0, false))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void positionsAreDeterministicAndWithinTheBitmap() {
+        RotatingBloomFilter filter = filter(10_000, 0.01);
+        int bitSize = (Integer) filter.getStats().get("bitSize");
+        int hashIterations = (Integer) filter.getStats().get("hashIterations");
+
+        for (String key : new String[]{"", "a", "order:123456789", "订单-42", "x".repeat(1000)}) {
+            long[] positions = filter.positions(key);
+            assertThat(positions).hasSize(hashIterations);
+            assertThat(Arrays.stream(positions).allMatch(position -> position >= 0 && position < bitSize)).isTrue();
+            assertThat(filter.positions(key)).isEqualTo(positions);
+            // 与实例无关：各节点对同一键计算出相同的位置
+            assertThat(filter(10_000, 0.01).positions(key)).isEqualTo(positions);
+        }
+    }
+
+    @Test
+    void falsePositiveRateStaysNearTheTarget() {
+        int insertions = 10_000;
+        RotatingBloomFilter filter = filter(insertions, 0.01);
+        int bitSize = (Integer) filter.getStats().get("bitSize");
+        BitSet bits = new BitSet(bitSize);
+        for (int i = 0; i < insertions; i++) {
+            for (long position : filter.positions("biz-" + i)) {
+                bits.set((int) position);
+            }
+        }
+        // 按最优参数写满一个窗口时约一半的位被置位
+        assertThat((double) bits.cardinality() / bitSize).isBetween(0.45, 0.55);
+
+        for (int i = 0; i < insertions; i++) {
+            assertThat(containsAll(bits, filter.positions("biz-" + i))).isTrue();
+        }
+        int probes = 100_000;
+        int falsePositives = 0;
+        for (int i = 0; i < probes; i++) {
+            if (containsAll(bits, filter.positions("other-" + i))) {
+                falsePositives++;
+            }
+        }
+        assertThat((double) falsePositives / probes).isLessThan(0.015);
+    }
+
+    private RotatingBloomFilter filter(long expectedInsertions, double falseProbability) {
+        return new RotatingBloomFilter(redissonClient, "test", expectedInsertions, falseProbability,
+                Duration.ofHours(24), 2, false);
+    }
+
+    private static boolean containsAll(BitSet bits, long[] positions) {
+        for (long position : positions) {
+            if (!bits.get((int) position)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,155 @@
+package com.wdwlx.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * 雪花算法发号：并发唯一、单调递增、序列溢出借用未来毫秒与时钟回退
+ */
+class SnowflakeIdWorkerTest {
+
+    private static final long TWEPOCH = 687888001020L;
+
+    private static final long START = 1_700_000_000_000L;
+
+    @Test
+    void concurrentIdsAreUniqueAndIncreasingPerThread() throws Exception {
+        SnowflakeIdWorker worker = new SnowflakeIdWorker(7);
+        int threads = 8;
+        int perThread = 50_000;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<long[]>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                futures.add(executor.submit(() -> {
+                    long[] ids = new long[perThread];
+                    for (int i = 0; i < perThread; i++) {
+                        ids[i] = worker.nextId();
+                    }
+                    return ids;
+                }));
+            }
+            Set<Long> all = new HashSet<>(threads * perThread * 2);
+            for (Future<long[]> future : futures) {
+                long[] ids = future.get(30, TimeUnit.SECONDS);
+                for (int i = 0; i < ids.length; i++) {
+                    if (i > 0) {
+                        assertThat(ids[i]).isGreaterThan(ids[i - 1]);
+                    }
+                    assertThat(workerId(ids[i])).isEqualTo(7);
+                    all.add(ids[i]);
+                }
+            }
+            assertThat(all).hasSize(threads * perThread);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void sequenceOverflowBorrowsTheNextMillisecond() {
+        ManualClockWorker worker = new ManualClockWorker(1, 1000);
+        long previous = -1;
+        for (int i = 0; i < 4096; i++) {
+            long id = worker.nextId();
+            assertThat(id).isGreaterThan(previous);
+            assertThat(timestamp(id)).isEqualTo(START);
+            previous = id;
+        }
+        long borrowed = worker.nextId();
+        assertThat(borrowed).isGreaterThan(previous);
+        assertThat(timestamp(borrowed)).isEqualTo(START + 1);
+        assertThat(sequence(borrowed)).isZero();
+
+        // 时钟追上后沿用借用的毫秒继续递增，之后按时钟重置序列
+        worker.now = START + 1;
+        assertThat(worker.nextId()).isEqualTo(borrowed + 1);
+        worker.now = START + 2;
+        long next = worker.nextId();
+        assertThat(timestamp(next)).isEqualTo(START + 2);
+        assertThat(sequence(next)).isZero();
+    }
+
+    @Test
+    void smallClockRollbackKeepsIdsIncreasing() {
+        ManualClockWorker worker = new ManualClockWorker(1, 1000);
+        long before = worker.nextId();
+        worker.now = START - 500;
+        long after = worker.nextId();
+
+        assertThat(after).isGreaterThan(before);
+        assertThat(timestamp(after)).isEqualTo(START);
+    }
+
+    @Test
+    void clockRollbackBeyondDriftIsRefused() {
+        ManualClockWorker worker = new ManualClockWorker(1, 1000);
+        worker.nextId();
+        worker.now = START - 1001;
+
+        assertThatThrownBy(worker::nextId).isInstanceOf(RuntimeException.class)
+                .hasMessageContaining("Clock moved backwards");
+    }
+
+    @Test
+    void borrowingAtTheDriftLimitWaitsForTheClock() throws Exception {
+        ManualClockWorker worker = new ManualClockWorker(1, 1);
+        // 当前毫秒与借用的一毫秒都用尽
+        for (int i = 0; i < 4096 * 2; i++) {
+            worker.nextId();
+        }
+        CompletableFuture<Long> waiting = CompletableFuture.supplyAsync(worker::nextId);
+        assertThatThrownBy(() -> waiting.get(100, TimeUnit.MILLISECONDS)).isInstanceOf(TimeoutException.class);
+
+        worker.now = START + 1;
+        long id = waiting.get(5, TimeUnit.SECONDS);
+        assertThat(timestamp(id)).isEqualTo(START + 2);
+        assertThat(sequence(id)).isZero();
+    }
+
+    @Test
+    void invalidArgumentsAreRejected() {
+        assertThatThrownBy(() -> new SnowflakeIdWorker(-1)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new SnowflakeIdWorker(1024)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new SnowflakeIdWorker(1, -1)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private static long timestamp(long id) {
+        return (id >>> 22) + TWEPOCH;
+    }
+
+    private static long workerId(long id) {
+        return (id >>> 12) & 1023;
+    }
+
+    private static long sequence(long id) {
+        return id & 4095;
+    }
+
+    private static final class ManualClockWorker extends SnowflakeIdWorker {
+
+        private volatile long now = START;
+
+        ManualClockWorker(long workerId, long maxDriftMillis) {
+            super(workerId, maxDriftMillis);
+        }
+
+        @Override
+        protected long timeGen() {
+            return now;
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package com.wdwlx.util;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.redisson.api.RScript;
+import org.redisson.api.RedissonClient;
+import org.redisson.client.codec.Codec;
+import org.redisson.client.codec.StringCodec;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 搬运脚本的到期搬运、取出与确认超时重新投递，在嵌入式 Redis 上执行
+ */
+class TransferScriptTest {
+
+    private static final long NOW = 1_000_000L;
+
+    private static final long ACK_TIMEOUT = 60_000L;
+
+    private static final Codec CODEC = TransferScript.codec(StringCodec.INSTANCE);
+
+    private static EmbeddedRedis redis;
+
+    private static RedissonClient redissonClient;
+
+    @BeforeAll
+    static void startRedis() throws IOException {
+        redis = EmbeddedRedis.start();
+        redissonClient = redis.client();
+    }
+
+    @AfterAll
+    static void stopRedis() throws IOException {
+        if (redis != null) {
+            redis.close();
+        }
+    }
+
+    @BeforeEach
+    void flush() {
+        redissonClient.getKeys().flushall();
+    }
+
+    @Test
+    void dueEntriesAreTransferredAndPulledEntriesAwaitAck() {
+        redissonClient.getScoredSortedSet(RedisKeys.scheduleSet("q"), StringCodec.INSTANCE).add(NOW - 1, "due");
+        redissonClient.getScoredSortedSet(RedisKeys.scheduleSet("q"), StringCodec.INSTANCE).add(NOW + 5_000, "later");
+        redissonClient.getList("q", StringCodec.INSTANCE).addAll(List.of("a", "b"));
+
+        List<Object> result = run(NOW, List.of("q"), 2);
+
+        assertThat(TransferScript.entries(result, 0)).containsExactly("a", "b");
+        assertThat(redissonClient.getList("q", StringCodec.INSTANCE).readAll()).containsExactly("due");
+        assertThat(redissonClient.getScoredSortedSet(RedisKeys.inflightSet("q"), StringCodec.INSTANCE).getScore("a"))
+                .isEqualTo((double) (NOW + ACK_TIMEOUT));
+        // 最早的到期时间是调度集合中剩余的条目，早于确认截止时间
+        assertThat(TransferScript.nextDue(result, 0)).isEqualTo(NOW + 5_000);
+
+        // 只搬运不取出时不写入待确认集合
+        run(NOW, List.of("q"), 0);
+        assertThat(redissonClient.getScoredSortedSet(RedisKeys.inflightSet("q"), StringCodec.INSTANCE).readAll())
+                .containsExactlyInAnyOrder("a", "b");
+    }
+
+    @Test
+    void entriesOfAFailedGroupReturnAfterTheAckTimeout() {
+        redissonClient.getList("q1", StringCodec.INSTANCE).addAll(List.of("a", "b"));
+        redissonClient.getList("q2", StringCodec.INSTANCE).add("c");
+
+        // 脚本已在服务端执行但结果未送达：取出的条目都未派发、未确认
+        List<Object> lost = run(NOW, List.of("q1", "q2"), 10, 10);
+        assertThat(TransferScript.entries(lost, 0)).containsExactly("a", "b");
+        assertThat(TransferScript.entries(lost, 1)).containsExactly("c");
+        assertThat(TransferScript.nextDue(lost, 0)).isEqualTo(NOW + ACK_TIMEOUT);
+
+        // 截止时间前不重新投递
+        List<Object> early = run(NOW + ACK_TIMEOUT - 1, List.of("q1", "q2"), 10, 10);
+        assertThat(TransferScript.entries(early, 0)).isEmpty();
+        assertThat(TransferScript.entries(early, 1)).isEmpty();
+
+        List<Object> redelivered = run(NOW + ACK_TIMEOUT, List.of("q1", "q2"), 10, 10);
+        assertThat(TransferScript.entries(redelivered, 0)).containsExactlyInAnyOrder("a", "b");
+        assertThat(TransferScript.entries(redelivered, 1)).containsExactly("c");
+    }
+
+    @Test
+    void ackedEntriesAreNotRedelivered() {
+        redissonClient.getList("q", StringCodec.INSTANCE).addAll(List.of("a", "b"));
+        run(NOW, List.of("q"), 10);
+
+        redissonClient.getScoredSortedSet(RedisKeys.inflightSet("q"), StringCodec.INSTANCE).remove("a");
+
+        List<Object> result = run(NOW + ACK_TIMEOUT, List.of("q"), 10);
+        assertThat(TransferScript.entries(result, 0)).containsExactly("b");
+    }
+
+    @Test
+    void pausedQueuesKeepTheirEntriesInFlight() {
+        redissonClient.getList("q", StringCodec.INSTANCE).add("a");
+        run(NOW, List.of("q"), 10);
+
+        List<Object> paused = run(NOW + ACK_TIMEOUT, List.of("q"), -1);
+        assertThat(TransferScript.entries(paused, 0)).isEmpty();
+        assertThat(redissonClient.getList("q", StringCodec.INSTANCE).readAll()).isEmpty();
+        assertThat(redissonClient.getScoredSortedSet(RedisKeys.inflightSet("q"), StringCodec.INSTANCE).readAll()).containsExactly("a");
+    }
+
+    private static List<Object> run(long now, List<String> queues, int... limits) {
+        List<Object> keys = new ArrayList<>();
+        Object[] args = new Object[queues.size() + 3];
+        args[0] = now;
+        args[1] = 1000;
+        args[2] = now + ACK_TIMEOUT;
+        for (int i = 0; i < queues.size(); i++) {
+            TransferScript.addKeys(keys, queues.get(i));
+            args[i + 3] = limits[i];
+        }
+        return redissonClient.getScript(CODEC).eval(RScript.Mode.READ_WRITE, TransferScript.SCRIPT, RScript.ReturnType.MULTI, keys, args);
+    }
+}